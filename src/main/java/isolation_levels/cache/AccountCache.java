@@ -0,0 +1,187 @@
+package isolation_levels.cache;
+
+import isolation_levels.dto.AccountDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded in-process cache of committed account state, keyed by account number.
+ * Entries expire after a fixed time to live, and the cache never holds more than
+ * the configured number of entries. When it is full, the entry inserted first is evicted;
+ * since every entry lives equally long, that is also the one that expires first. Insertion order
+ * is kept in a queue, so an eviction costs O(1) instead of a scan of the cache.
+ * <p>
+ * Every balance mutation evicts its account after the transaction commits. To prevent a
+ * read that started before such a commit from caching the old state afterwards, readers
+ * take a {@link #stamp(String) stamp} before they query the database and only cache the
+ * result if no eviction for the account happened in between. Of two cached states of the
+ * same account, the one with the higher version wins.
+ * <p>
+ * Cached DTOs are shared between callers and must not be modified.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+public class AccountCache {
+
+    private static final int STRIPES = 1024;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    // Entries in insertion order; entries that were replaced, evicted or expired stay queued until they are polled
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    @Autowired
+    public AccountCache(@Value("${isolation-levels.cache.accounts.max-size:10000}") int maxSize,
+                        @Value("${isolation-levels.cache.accounts.ttl:PT5S}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Returns the cached state of an account if it has not expired.
+     *
+     * @param accountNumber the account number
+     * @return an Optional containing the cached account DTO, or empty if it is not cached
+     */
+    public Optional<AccountDTO> get(String accountNumber) {
+        Entry entry = entries.get(accountNumber);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(accountNumber, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.account());
+    }
+
+    /**
+     * Returns the current invalidation stamp of an account.
+     * Must be called before the account is read from the database.
+     *
+     * @param accountNumber the account number
+     * @return the stamp to pass to {@link #put(AccountDTO, long)}
+     */
+    public long stamp(String accountNumber) {
+        return generations.get(stripe(accountNumber));
+    }
+
+    /**
+     * Caches the committed state of an account, unless the account was evicted since the stamp was taken
+     * or a newer version is already cached.
+     *
+     * @param account the account DTO read from the database
+     * @param stamp the stamp taken before the account was read
+     */
+    public void put(AccountDTO account, long stamp) {
+        String accountNumber = account.getAccountNumber();
+        if (generations.get(stripe(accountNumber)) != stamp) {
+            return;
+        }
+
+        Entry entry = new Entry(account, System.nanoTime() + ttlNanos);
+        Entry cached = entries.merge(accountNumber, entry, (current, candidate) ->
+                isNewer(candidate.account(), current.account()) ? candidate : current);
+        if (cached == entry) {
+            insertionOrder.offer(entry);
+            queued.incrementAndGet();
+            trim();
+        }
+
+        // An eviction may have raced with the insert above
+        if (generations.get(stripe(accountNumber)) != stamp) {
+            entries.remove(accountNumber, entry);
+        }
+    }
+
+    /**
+     * Evicts an account immediately.
+     *
+     * @param accountNumber the account number
+     */
+    public void evict(String accountNumber) {
+        generations.incrementAndGet(stripe(accountNumber));
+        entries.remove(accountNumber);
+    }
+
+    /**
+     * Evicts an account once the current transaction has completed, or immediately
+     * if no transaction synchronization is active.
+     *
+     * @param accountNumber the account number
+     */
+    public void evictAfterCommit(String accountNumber) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(accountNumber);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                evict(accountNumber);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of cached accounts, including expired ones that have not been removed yet.
+     *
+     * @return the number of cache entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts the oldest entries while the cache is over its maximum size, and drops queued entries
+     * that are no longer cached once the queue holds twice as many entries as the cache may.
+     */
+    private void trim() {
+        while (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+            Entry oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            // Only removes the key if it still maps to this entry, not a newer one
+            entries.remove(oldest.account().getAccountNumber(), oldest);
+        }
+    }
+
+    private static boolean isNewer(AccountDTO candidate, AccountDTO current) {
+        if (candidate.getVersion() == null || current.getVersion() == null) {
+            return true;
+        }
+        return candidate.getVersion() >= current.getVersion();
+    }
+
+    private static int stripe(String accountNumber) {
+        return (accountNumber.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    /**
+     * A cached account with its expiry time.
+     */
+    private record Entry(AccountDTO account, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package isolation_levels.combining;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.model.Account;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.service.LedgerWriter;
+import isolation_levels.sharding.ShardTemplate;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Combines concurrent credits to the same account into one write.
+ * Credits are appended to a lock-free queue per account; the first credit of an idle account schedules
+ * a flush after the flush interval, and credits arriving while a flush is writing are picked up by the
+ * next flush as soon as it completes. Each flush locks the account once, applies the total of its credits
+ * as one balance update, inserts all ledger entries in JDBC batches and then completes every caller.
+ * A hot account therefore costs one row lock per flush instead of one per credit, and the number of
+ * credits per flush, recorded in the {@code isolation_levels.combining.batch_size} summary, grows with the load.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+public class CreditCombiner {
+
+    private static final String BATCH_SIZE_SUMMARY = "isolation_levels.combining.batch_size";
+
+    private final AccountRepository accountRepository;
+    private final LedgerWriter ledgerWriter;
+    private final ShardTemplate shardTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary batchSizeSummary;
+    private final Duration flushInterval;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CreditCombiner(AccountRepository accountRepository, LedgerWriter ledgerWriter, ShardTemplate shardTemplate,
+                          PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                          @Value("${isolation-levels.combining.flush-interval:PT0.005S}") Duration flushInterval,
+                          @Value("${isolation-levels.combining.max-batch-size:1000}") int maxBatchSize,
+                          @Value("${isolation-levels.combining.threads:4}") int threads) {
+        this.accountRepository = accountRepository;
+        this.ledgerWriter = ledgerWriter;
+        this.shardTemplate = shardTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.batchSizeSummary = DistributionSummary.builder(BATCH_SIZE_SUMMARY).register(meterRegistry);
+        this.flushInterval = flushInterval;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = newScheduler(threads);
+    }
+
+    private static ScheduledExecutorService newScheduler(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "credit-combiner-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a credit to an account. The credit is applied by the next flush of the account,
+     * at most one flush interval after the account's queue was last idle.
+     *
+     * @param accountNumber the account number to credit
+     * @param amount the amount to credit
+     * @param description the transaction description
+     * @return a future completed with the persisted ledger entry, or empty if the account was not found,
+     * once the flush has committed; completed exceptionally if the flush failed
+     */
+    public CompletableFuture<Optional<Transaction>> credit(String accountNumber, BigDecimal amount, String description) {
+        PendingCredit credit = new PendingCredit(amount, description);
+        Lane lane = lanes.computeIfAbsent(accountNumber, key -> new Lane());
+        lane.queue.add(credit);
+        if (lane.scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> flush(accountNumber, lane), flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        return credit.future;
+    }
+
+    private void flush(String accountNumber, Lane lane) {
+        List<PendingCredit> batch = new ArrayList<>();
+        PendingCredit credit;
+        while (batch.size() < maxBatchSize && (credit = lane.queue.poll()) != null) {
+            batch.add(credit);
+        }
+
+        try {
+            if (!batch.isEmpty()) {
+                batchSizeSummary.record(batch.size());
+                write(accountNumber, batch);
+            }
+        } finally {
+            lane.scheduled.set(false);
+            if (lane.queue.isEmpty()) {
+                // A credit queued on a removed lane still schedules its own flush
+                lanes.remove(accountNumber, lane);
+            } else if (lane.scheduled.compareAndSet(false, true)) {
+                // Credits queued while writing have already waited, so flush them at once
+                scheduler.execute(() -> flush(accountNumber, lane));
+            }
+        }
+    }
+
+    private void write(String accountNumber, List<PendingCredit> batch) {
+        Optional<List<Transaction>> entriesOpt;
+        try {
+            entriesOpt = shardTemplate.onShardOf(accountNumber,
+                    () -> transactionTemplate.execute(status -> post(accountNumber, batch)));
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            int index = i;
+            batch.get(i).future.complete(entriesOpt.map(entries -> entries.get(index)));
+        }
+    }
+
+    private Optional<List<Transaction>> post(String accountNumber, List<PendingCredit> batch) {
+        Optional<Account> accountOpt = accountRepository.findByAccountNumberWithPessimisticWriteLock(accountNumber);
+        if (accountOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        Account account = accountOpt.get();
+
+        BigDecimal total = BigDecimal.ZERO;
+        List<Transaction> entries = new ArrayList<>(batch.size());
+        for (PendingCredit pending : batch) {
+            Transaction transaction = new Transaction(pending.amount, pending.description, Transaction.TransactionType.CREDIT);
+            transaction.setAccount(account);
+            entries.add(transaction);
+            total = total.add(pending.amount);
+        }
+        return Optional.of(ledgerWriter.postAll(Map.of(account, total), entries));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * The queue of an account and whether a flush of it is scheduled or running.
+     */
+    private static final class Lane {
+        private final Queue<PendingCredit> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    /**
+     * A credit waiting for its flush, and the future of its caller.
+     */
+    private static final class PendingCredit {
+        private final BigDecimal amount;
+        private final String description;
+        private final CompletableFuture<Optional<Transaction>> future = new CompletableFuture<>();
+
+        private PendingCredit(BigDecimal amount, String description) {
+            this.amount = amount;
+            this.description = description;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package isolation_levels.config;
 import isolation_levels.model.Account;
 import isolation_levels.model.Transaction;
 import isolation_levels.repository.AccountRepository;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
@@ -10,6 +12,10 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Configuration class to initialize sample data for the application.
@@ -23,6 +29,12 @@ public class DataInitializer {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
     /**
      * Creates sample data when the application starts.
      *
@@ -31,8 +43,12 @@ public class DataInitializer {
     @Bean
     public CommandLineRunner initData() {
         return args -> {
-            // Only initialize if no accounts exist
-            if (accountRepository.count() == 0) {
+            // Only initialize if no accounts exist on any shard
+            long accountCount = shardTemplate.scatterGather("countAccounts", () -> List.of(accountRepository.count()))
+                    .stream()
+                    .mapToLong(Long::longValue)
+                    .sum();
+            if (accountCount == 0) {
                 createSampleData();
             }
         };
@@ -92,10 +108,10 @@ public class DataInitializer {
         account3.addTransaction(deposit3);
         account3.addTransaction(transfer3);
         
-        // Save accounts (transactions will be saved via cascade)
-        accountRepository.save(account1);
-        accountRepository.save(account2);
-        accountRepository.save(account3);
+        // Save the accounts of each shard in one batch (transactions will be saved via cascade)
+        Map<Integer, List<Account>> accountsByShard = Stream.of(account1, account2, account3)
+                .collect(Collectors.groupingBy(account -> shardRouter.shardOf(account.getAccountNumber())));
+        accountsByShard.forEach((shard, accounts) -> shardTemplate.onShard(shard, () -> accountRepository.saveAll(accounts)));
         
         System.out.println("Sample data initialized successfully.");
     }
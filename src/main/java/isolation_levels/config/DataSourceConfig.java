@@ -0,0 +1,82 @@
+package isolation_levels.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import isolation_levels.datasource.DataSourceRole;
+import isolation_levels.datasource.RoutingDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration class for routing reads to a read replica.
+ * Active when {@code isolation-levels.datasource.replica.jdbc-url} is set. The primary pool is configured
+ * from the usual {@code spring.datasource.*} properties and the replica pool from
+ * {@code isolation-levels.datasource.replica.*} (any Hikari property, e.g. {@code jdbc-url},
+ * {@code username}, {@code password}, {@code maximum-pool-size}).
+ * <p>
+ * Read-only transactions are sent to the replica, everything else to the primary;
+ * individual methods can override this with {@link isolation_levels.datasource.UseDataSource}.
+ * Cannot be combined with {@link ShardingConfig} or {@link IsolationPoolsConfig} (see {@link DataSourceModeCheck}).
+ *
+ * @author JetBrains Junie
+ */
+@Configuration
+@ConditionalOnProperty("isolation-levels.datasource.replica.jdbc-url")
+public class DataSourceConfig {
+
+    /**
+     * Creates the connection pool of the primary database.
+     *
+     * @param properties the {@code spring.datasource.*} properties
+     * @return the primary pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Creates the connection pool of the read replica.
+     *
+     * @return the replica pool
+     */
+    @Bean
+    @ConfigurationProperties("isolation-levels.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        return new HikariDataSource();
+    }
+
+    /**
+     * Creates the DataSource used by the application, which routes each transaction to the primary or the replica.
+     * The routing DataSource is wrapped in a {@link LazyConnectionDataSourceProxy}, so that the physical
+     * connection is only fetched once the transaction's read-only flag is known.
+     *
+     * @param primaryDataSource the primary pool
+     * @param replicaDataSource the replica pool
+     * @return the routing DataSource
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(DataSourceRole.PRIMARY, primaryDataSource);
+        targetDataSources.put(DataSourceRole.REPLICA, replicaDataSource);
+
+        RoutingDataSource routingDataSource = new RoutingDataSource();
+        routingDataSource.setTargetDataSources(targetDataSources);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,49 @@
+package isolation_levels.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Startup check for the DataSource modes: the read replica of {@link DataSourceConfig}, the shards of
+ * {@link ShardingConfig} and the isolation level pools of {@link IsolationPoolsConfig}. Each mode defines
+ * the primary {@code dataSource} bean, so at most one of them can be enabled.
+ * <p>
+ * The check runs once the application properties are loaded, before any bean is defined, so a combination
+ * fails with the names of the conflicting properties instead of a bean definition override error.
+ *
+ * @author JetBrains Junie
+ */
+public class DataSourceModeCheck implements EnvironmentPostProcessor {
+
+    static final String REPLICA_PROPERTY = "isolation-levels.datasource.replica.jdbc-url";
+    static final String SHARDING_PROPERTY = "isolation-levels.sharding.shard-count";
+    static final String ISOLATION_POOLS_PROPERTY = "isolation-levels.datasource.isolation-pools.enabled";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        List<String> enabled = new ArrayList<>();
+        // Same rules as the @ConditionalOnProperty of each configuration class
+        if (isSet(environment, REPLICA_PROPERTY)) {
+            enabled.add(REPLICA_PROPERTY);
+        }
+        if (isSet(environment, SHARDING_PROPERTY)) {
+            enabled.add(SHARDING_PROPERTY);
+        }
+        if ("true".equalsIgnoreCase(environment.getProperty(ISOLATION_POOLS_PROPERTY))) {
+            enabled.add(ISOLATION_POOLS_PROPERTY);
+        }
+        if (enabled.size() > 1) {
+            throw new IllegalStateException("Only one DataSource mode can be enabled, but " + String.join(", ", enabled)
+                    + " are all set; each of them replaces the primary dataSource");
+        }
+    }
+
+    private static boolean isSet(ConfigurableEnvironment environment, String property) {
+        String value = environment.getProperty(property);
+        return value != null && !"false".equalsIgnoreCase(value);
+    }
+}
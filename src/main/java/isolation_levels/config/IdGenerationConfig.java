@@ -0,0 +1,43 @@
+package isolation_levels.config;
+
+import isolation_levels.id.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for application-generated entity IDs.
+ * Passes the node ID of this instance ({@code isolation-levels.id.node-id}) to the
+ * {@link SnowflakeIdGenerator}s that Hibernate creates. Every instance writing to the same
+ * database must use a different node ID, so there is no default: the application does not start
+ * without one, and logs the one it uses.
+ *
+ * @author JetBrains Junie
+ */
+@Configuration
+public class IdGenerationConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(IdGenerationConfig.class);
+    private static final String NODE_ID_PROPERTY = "isolation-levels.id.node-id";
+
+    /**
+     * Adds the node ID to the Hibernate settings.
+     *
+     * @param nodeId the node ID of this instance, or null if it is not set
+     * @return the customizer
+     * @throws IllegalStateException if the node ID is not set
+     */
+    @Bean
+    public HibernatePropertiesCustomizer nodeIdHibernatePropertiesCustomizer(
+            @Value("${" + NODE_ID_PROPERTY + ":#{null}}") Long nodeId) {
+        if (nodeId == null) {
+            throw new IllegalStateException(NODE_ID_PROPERTY + " must be set to a node ID (0 to "
+                    + SnowflakeIdGenerator.MAX_NODE_ID + ") that no other instance using the same database has");
+        }
+        log.info("Generating entity IDs as node {}", nodeId);
+        return properties -> properties.put(SnowflakeIdGenerator.NODE_ID_SETTING, nodeId);
+    }
+}
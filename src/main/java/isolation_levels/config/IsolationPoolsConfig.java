@@ -0,0 +1,105 @@
+package isolation_levels.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.datasource.IsolationPinnedDataSource;
+import isolation_levels.datasource.IsolationRoutingDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.annotation.Isolation;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration class for one connection pool per transaction isolation level.
+ * Active when {@code isolation-levels.datasource.isolation-pools.enabled=true}. Each pool opens its connections
+ * at its isolation level, so transactions routed to it need no {@code SET TRANSACTION ISOLATION LEVEL}
+ * round trips, and each pool is sized separately, so one isolation level cannot take the connections
+ * needed by another.
+ * <p>
+ * All pools use the {@code spring.datasource.*} database and {@code spring.datasource.hikari.*} settings;
+ * the pool of a level can override any Hikari property under
+ * {@code isolation-levels.datasource.isolation-pools.<level>.*}, e.g.
+ * {@code isolation-levels.datasource.isolation-pools.serializable.maximum-pool-size=4}.
+ * Transactions without an explicit isolation level use the {@code spring.datasource.hikari.*} pool.
+ * With MySQL, add {@code useLocalSessionState=true} to the URL so that the driver also skips isolation
+ * changes that the pools make themselves.
+ * <p>
+ * Cannot be combined with the read replica of {@link DataSourceConfig} or with {@link ShardingConfig};
+ * {@link DataSourceModeCheck} stops the application at startup if they are.
+ *
+ * @author JetBrains Junie
+ */
+@Configuration
+@ConditionalOnProperty(name = "isolation-levels.datasource.isolation-pools.enabled", havingValue = "true")
+public class IsolationPoolsConfig {
+
+    private static final String PREFIX = "isolation-levels.datasource.isolation-pools";
+
+    private static final List<Isolation> POOLED_LEVELS = List.of(
+            Isolation.READ_UNCOMMITTED, Isolation.READ_COMMITTED, Isolation.REPEATABLE_READ, Isolation.SERIALIZABLE);
+
+    /**
+     * Creates the pools of all isolation levels behind a DataSource that routes by the transaction's isolation level.
+     *
+     * @param properties the {@code spring.datasource.*} properties
+     * @param environment the environment holding the pool properties
+     * @param meterRegistry the registry for the pool metrics, if available
+     * @return the routing DataSource
+     */
+    @Bean
+    public IsolationRoutingDataSource isolationRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+
+        HikariDataSource defaultPool = createPool(properties, binder, meterRegistry);
+        if (defaultPool.getPoolName() == null) {
+            defaultPool.setPoolName("isolation-default");
+        }
+
+        List<IsolationPinnedDataSource> isolationPools = new ArrayList<>();
+        for (Isolation isolation : POOLED_LEVELS) {
+            String name = isolation.name().toLowerCase().replace('_', '-');
+            HikariDataSource pool = createPool(properties, binder, meterRegistry);
+            pool.setPoolName("isolation-" + name);
+            pool.setTransactionIsolation("TRANSACTION_" + isolation.name());
+            binder.bind(PREFIX + "." + name, Bindable.ofInstance(pool));
+            isolationPools.add(new IsolationPinnedDataSource(pool, isolation.value()));
+        }
+        return new IsolationRoutingDataSource(defaultPool, isolationPools);
+    }
+
+    private static HikariDataSource createPool(DataSourceProperties properties, Binder binder,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        return pool;
+    }
+
+    /**
+     * Creates the DataSource used by the application.
+     * The routing DataSource is wrapped in a {@link LazyConnectionDataSourceProxy}, so that the physical
+     * connection is only fetched once the transaction's isolation level is known.
+     *
+     * @param isolationRoutingDataSource the routing DataSource
+     * @return the DataSource
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("isolationRoutingDataSource") DataSource isolationRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(isolationRoutingDataSource);
+    }
+}
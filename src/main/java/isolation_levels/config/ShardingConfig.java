@@ -0,0 +1,78 @@
+package isolation_levels.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import isolation_levels.sharding.ShardRoutingDataSource;
+import isolation_levels.sharding.ShardRouter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration class for hash-sharded accounts.
+ * Active when {@code isolation-levels.sharding.shard-count} is set. Each shard gets its own connection pool,
+ * configured from {@code isolation-levels.sharding.shards[i].*} (any Hikari property, e.g. {@code jdbc-url},
+ * {@code username}, {@code password}, {@code maximum-pool-size}).
+ * <p>
+ * Sharding replaces the single {@code spring.datasource.*} database and cannot be combined with the
+ * read replica of {@link DataSourceConfig} or the isolation level pools of {@link IsolationPoolsConfig}
+ * (see {@link DataSourceModeCheck}).
+ *
+ * @author JetBrains Junie
+ */
+@Configuration
+@ConditionalOnProperty("isolation-levels.sharding.shard-count")
+public class ShardingConfig {
+
+    /**
+     * Creates the connection pools of all shards behind a DataSource that routes by the current shard.
+     *
+     * @param environment the environment holding the shard properties
+     * @param shardRouter the router defining the number of shards
+     * @return the routing DataSource
+     */
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(Environment environment, ShardRouter shardRouter) {
+        List<HikariConfig> configs = Binder.get(environment)
+                .bind("isolation-levels.sharding.shards", Bindable.listOf(HikariConfig.class))
+                .orElse(List.of());
+        if (configs.size() != shardRouter.getShardCount()) {
+            throw new IllegalStateException("Expected " + shardRouter.getShardCount()
+                    + " entries in isolation-levels.sharding.shards but found " + configs.size());
+        }
+
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < configs.size(); shard++) {
+            HikariConfig config = configs.get(shard);
+            if (config.getPoolName() == null) {
+                config.setPoolName("shard-" + shard);
+            }
+            shards.add(new HikariDataSource(config));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * Creates the DataSource used by the application.
+     * The routing DataSource is wrapped in a {@link LazyConnectionDataSourceProxy}, so that the physical
+     * connection is only fetched once the shard of the transaction is selected.
+     *
+     * @param shardRoutingDataSource the routing DataSource
+     * @return the DataSource
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("shardRoutingDataSource") DataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
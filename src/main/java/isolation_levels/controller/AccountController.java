@@ -1,13 +1,20 @@
 package isolation_levels.controller;
 
 import isolation_levels.dto.AccountDTO;
+import isolation_levels.engine.EngineBypassException;
 import isolation_levels.mapper.EntityDTOMapper;
 import isolation_levels.model.Account;
 import isolation_levels.service.AccountService;
+import isolation_levels.service.ExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import isolation_levels.service.InsufficientFundsException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
@@ -23,11 +30,15 @@ import java.util.Optional;
 @RequestMapping("/api/accounts")
 public class AccountController {
 
+    private static final int MAX_SLOT_COUNT = 64;
+
     private final AccountService accountService;
+    private final ExportService exportService;
 
     @Autowired
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, ExportService exportService) {
         this.accountService = accountService;
+        this.exportService = exportService;
     }
 
     /**
@@ -53,8 +64,21 @@ public class AccountController {
      */
     @GetMapping
     public ResponseEntity<List<AccountDTO>> getAllAccounts() {
-        List<Account> accounts = accountService.getAllAccounts();
-        return ResponseEntity.ok(EntityDTOMapper.toAccountDTOs(accounts));
+        return ResponseEntity.ok(accountService.getAllAccounts());
+    }
+
+    /**
+     * Streams all accounts as newline-delimited JSON.
+     * Accounts are written as they are read from the database, so memory use
+     * does not depend on the number of accounts.
+     *
+     * @param response the HTTP response to write the accounts to
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportAccounts(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        exportService.exportAccounts(response.getOutputStream());
     }
 
     /**
@@ -69,7 +93,7 @@ public class AccountController {
             @PathVariable String accountNumber,
             @RequestParam(defaultValue = "READ_COMMITTED") String isolationLevel) {
 
-        Optional<Account> accountOpt;
+        Optional<AccountDTO> accountOpt;
 
         switch (isolationLevel.toUpperCase()) {
             case "READ_UNCOMMITTED":
@@ -88,7 +112,7 @@ public class AccountController {
                 return ResponseEntity.badRequest().build();
         }
 
-        return accountOpt.map(account -> ResponseEntity.ok(EntityDTOMapper.toAccountDTO(account)))
+        return accountOpt.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -167,4 +191,61 @@ public class AccountController {
         return accountOpt.map(account -> ResponseEntity.ok(EntityDTOMapper.toAccountDTO(account)))
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    /**
+     * Updates an account's balance using a single atomic UPDATE statement.
+     *
+     * @param accountNumber the account number to update
+     * @param requestBody the request body containing the amount to add
+     * @return the updated account DTO if found, 404 if not found, or 409 if the balance would become negative
+     */
+    @PutMapping("/{accountNumber}/balance/atomic")
+    public ResponseEntity<AccountDTO> updateBalanceAtomically(
+            @PathVariable String accountNumber,
+            @RequestBody Map<String, String> requestBody) {
+
+        BigDecimal amount = new BigDecimal(requestBody.get("amount"));
+        Optional<Account> accountOpt;
+        try {
+            accountOpt = accountService.updateBalanceAtomically(accountNumber, amount);
+        } catch (InsufficientFundsException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        return accountOpt.map(account -> ResponseEntity.ok(EntityDTOMapper.toAccountDTO(account)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Splits an account's balance over a number of slot rows, so that concurrent updates do not
+     * queue on the account row. The reported balance stays the exact total.
+     *
+     * @param accountNumber the account number to split
+     * @param requestBody the request body containing the number of slots
+     * @return the updated account DTO if found, 404 if not found,
+     * 400 if the number of slots is not between 1 and 64 or lower than the current one,
+     * or 409 Conflict if the in-memory ledger engine is enabled, since it holds the balances itself
+     */
+    @PutMapping("/{accountNumber}/slots")
+    public ResponseEntity<AccountDTO> splitBalance(
+            @PathVariable String accountNumber,
+            @RequestBody Map<String, String> requestBody) {
+
+        int slotCount = Integer.parseInt(requestBody.get("slotCount"));
+        if (slotCount < 1 || slotCount > MAX_SLOT_COUNT) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Optional<Account> accountOpt;
+        try {
+            accountOpt = accountService.splitBalance(accountNumber, slotCount);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (EngineBypassException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        return accountOpt.map(account -> ResponseEntity.ok(EntityDTOMapper.toAccountDTO(account)))
+                .orElse(ResponseEntity.notFound().build());
+    }
 }
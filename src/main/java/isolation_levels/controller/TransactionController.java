@@ -1,17 +1,36 @@
 package isolation_levels.controller;
 
+import isolation_levels.combining.CreditCombiner;
+import isolation_levels.dto.BatchPaymentResultDTO;
+import isolation_levels.dto.PaymentDTO;
+import isolation_levels.dto.TransactionCursor;
 import isolation_levels.dto.TransactionDTO;
+import isolation_levels.dto.TransactionPageDTO;
+import isolation_levels.dto.TransferSubmissionDTO;
+import isolation_levels.engine.EngineBypassException;
+import isolation_levels.idempotency.IdempotencyService;
 import isolation_levels.mapper.EntityDTOMapper;
 import isolation_levels.model.Transaction;
+import isolation_levels.pipeline.TransferPipeline;
+import isolation_levels.service.BatchPaymentService;
+import isolation_levels.service.ExportService;
 import isolation_levels.service.TransactionService;
+import isolation_levels.service.TransferService;
+import isolation_levels.sharding.CrossShardException;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST controller for managing transactions.
@@ -23,21 +42,53 @@ import java.util.Optional;
 @RequestMapping("/api/transactions")
 public class TransactionController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final TransactionService transactionService;
+    private final ExportService exportService;
+    private final TransferService transferService;
+    private final BatchPaymentService batchPaymentService;
+    private final CreditCombiner creditCombiner;
+    private final TransferPipeline transferPipeline;
+    private final IdempotencyService idempotencyService;
 
     @Autowired
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, ExportService exportService,
+                                 TransferService transferService, BatchPaymentService batchPaymentService,
+                                 CreditCombiner creditCombiner, TransferPipeline transferPipeline,
+                                 IdempotencyService idempotencyService) {
         this.transactionService = transactionService;
+        this.exportService = exportService;
+        this.transferService = transferService;
+        this.batchPaymentService = batchPaymentService;
+        this.creditCombiner = creditCombiner;
+        this.transferPipeline = transferPipeline;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
      * Creates a new transaction for an account.
+     * With an {@code Idempotency-Key} header, a repeat of the request gets the response of the first one
+     * and creates no further transaction.
      *
      * @param requestBody the request body containing transaction details
+     * @param idempotencyKey the idempotency key of the request, or absent
      * @return the created transaction DTO if successful, or 404 if the account was not found
+     * (see {@link IdempotencyService#execute} for the responses to repeated requests)
      */
     @PostMapping
-    public ResponseEntity<TransactionDTO> createTransaction(@RequestBody Map<String, String> requestBody) {
+    public ResponseEntity<TransactionDTO> createTransaction(
+            @RequestBody Map<String, String> requestBody,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+
+        if (idempotencyKey != null) {
+            return idempotencyService.execute(idempotencyKey, "createTransaction", requestBody, TransactionDTO.class,
+                    () -> createTransaction(requestBody));
+        }
+        return createTransaction(requestBody);
+    }
+
+    private ResponseEntity<TransactionDTO> createTransaction(Map<String, String> requestBody) {
         String accountNumber = requestBody.get("accountNumber");
         BigDecimal amount = new BigDecimal(requestBody.get("amount"));
         String description = requestBody.get("description");
@@ -48,6 +99,32 @@ public class TransactionController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Creates a new CREDIT transaction for an account, combined with concurrent credits to the same account.
+     * The request completes when the combined write has committed, without holding a request thread meanwhile.
+     * DEBIT transactions are never combined, since each of them must check the balance on its own.
+     *
+     * @param requestBody the request body containing transaction details
+     * @return the created transaction DTO if successful, 404 if the account was not found,
+     * or 400 if the transaction is not a CREDIT
+     */
+    @PostMapping(params = "combine=true")
+    public CompletableFuture<ResponseEntity<TransactionDTO>> createCombinedTransaction(
+            @RequestBody Map<String, String> requestBody) {
+        String accountNumber = requestBody.get("accountNumber");
+        BigDecimal amount = new BigDecimal(requestBody.get("amount"));
+        String description = requestBody.get("description");
+        Transaction.TransactionType type = Transaction.TransactionType.valueOf(requestBody.get("type"));
+
+        if (type != Transaction.TransactionType.CREDIT) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return creditCombiner.credit(accountNumber, amount, description)
+                .thenApply(transactionOpt -> transactionOpt
+                        .map(transaction -> ResponseEntity.ok(EntityDTOMapper.toTransactionDTO(transaction)))
+                        .orElse(ResponseEntity.notFound().build()));
+    }
+
     /**
      * Retrieves all transactions for an account using the specified isolation level.
      *
@@ -60,7 +137,7 @@ public class TransactionController {
             @PathVariable String accountNumber,
             @RequestParam(defaultValue = "READ_COMMITTED") String isolationLevel) {
 
-        List<Transaction> transactions;
+        List<TransactionDTO> transactions;
 
         switch (isolationLevel.toUpperCase()) {
             case "READ_UNCOMMITTED":
@@ -79,7 +156,7 @@ public class TransactionController {
                 return ResponseEntity.badRequest().build();
         }
 
-        return ResponseEntity.ok(EntityDTOMapper.toTransactionDTOs(transactions));
+        return ResponseEntity.ok(transactions);
     }
 
     /**
@@ -90,28 +167,162 @@ public class TransactionController {
      */
     @GetMapping("/account/{accountNumber}/recent")
     public ResponseEntity<List<TransactionDTO>> getRecentTransactionsByAccount(@PathVariable String accountNumber) {
-        List<Transaction> transactions = transactionService.getTransactionsByAccountNumberOrderByTimestampDesc(accountNumber);
-        return ResponseEntity.ok(EntityDTOMapper.toTransactionDTOs(transactions));
+        List<TransactionDTO> transactions = transactionService.getTransactionsByAccountNumberOrderByTimestampDesc(accountNumber);
+        return ResponseEntity.ok(transactions);
+    }
+
+    /**
+     * Retrieves one page of an account's transactions, ordered by timestamp (newest first).
+     *
+     * @param accountNumber the account number
+     * @param cursor the continuation token returned with the previous page, or absent for the first page
+     * @param size the number of transactions per page (1 to 500)
+     * @return the page of transaction DTOs, or 400 if the cursor or size is invalid
+     */
+    @GetMapping("/account/{accountNumber}/page")
+    public ResponseEntity<TransactionPageDTO> getTransactionPage(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        TransactionCursor transactionCursor;
+        try {
+            transactionCursor = cursor != null ? TransactionCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Fetch one extra row to find out whether there is a next page
+        List<TransactionDTO> transactions = transactionService.getTransactionPage(accountNumber, transactionCursor, size + 1);
+        return ResponseEntity.ok(EntityDTOMapper.toTransactionPageDTO(transactions, size));
+    }
+
+    /**
+     * Streams all transactions for an account as newline-delimited JSON, ordered by timestamp (oldest first).
+     * Transactions are written as they are read from the database, so memory use
+     * does not depend on the length of the history.
+     *
+     * @param accountNumber the account number
+     * @param response the HTTP response to write the transactions to, or 404 if the account was not found
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping(value = "/account/{accountNumber}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportTransactionsByAccount(@PathVariable String accountNumber, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        if (!exportService.exportTransactions(accountNumber, response.getOutputStream())) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
     }
 
     /**
      * Transfers money between two accounts.
+     * With an {@code Idempotency-Key} header, a repeat of the request gets the response of the first one
+     * and moves no further money.
      *
      * @param requestBody the request body containing transfer details
-     * @return 200 OK if the transfer was successful, 400 Bad Request otherwise
+     * @param idempotencyKey the idempotency key of the request, or absent
+     * @return 200 OK if the transfer was successful, 202 Accepted if it will be finished by recovery,
+     * 400 Bad Request otherwise (see {@link IdempotencyService#execute} for the responses to repeated requests)
      */
     @PostMapping("/transfer")
-    public ResponseEntity<String> transferMoney(@RequestBody Map<String, String> requestBody) {
+    public ResponseEntity<String> transferMoney(
+            @RequestBody Map<String, String> requestBody,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+
+        if (idempotencyKey != null) {
+            return idempotencyService.execute(idempotencyKey, "transferMoney", requestBody, String.class,
+                    () -> transferMoney(requestBody));
+        }
+        return transferMoney(requestBody);
+    }
+
+    private ResponseEntity<String> transferMoney(Map<String, String> requestBody) {
         String fromAccountNumber = requestBody.get("fromAccountNumber");
         String toAccountNumber = requestBody.get("toAccountNumber");
         BigDecimal amount = new BigDecimal(requestBody.get("amount"));
 
-        boolean success = transactionService.transferMoney(fromAccountNumber, toAccountNumber, amount);
+        TransferService.TransferStatus status = transferService.transfer(fromAccountNumber, toAccountNumber, amount);
+
+        switch (status) {
+            case COMPLETED:
+                return ResponseEntity.ok("Transfer successful");
+            case PENDING:
+                return ResponseEntity.accepted().body("Transfer pending");
+            default:
+                return ResponseEntity.badRequest().body("Transfer failed");
+        }
+    }
+
+    /**
+     * Submits a transfer between two accounts, to be committed together with other submitted transfers.
+     *
+     * @param requestBody the request body containing transfer details
+     * @return 202 Accepted with the submission, whose status can be polled by its ID,
+     * 503 Service Unavailable if too many transfers are already queued or kept
+     */
+    @PostMapping("/transfer/async")
+    public ResponseEntity<TransferSubmissionDTO> submitTransfer(@RequestBody Map<String, String> requestBody) {
+        String amount = requestBody.get("amount");
+        PaymentDTO payment = new PaymentDTO(requestBody.get("fromAccountNumber"), requestBody.get("toAccountNumber"),
+                amount != null ? new BigDecimal(amount) : null);
+
+        return transferPipeline.submit(payment)
+                .map(submission -> ResponseEntity.accepted().body(submission))
+                .orElse(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    /**
+     * Gets the status of a submitted transfer.
+     *
+     * @param id the ID of the submission
+     * @return the submission if found, or 404 Not Found if not
+     */
+    @GetMapping("/transfer/async/{id}")
+    public ResponseEntity<TransferSubmissionDTO> getSubmittedTransfer(@PathVariable String id) {
+        return transferPipeline.getSubmission(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Applies a batch of transfers all-or-nothing in one transaction.
+     *
+     * @param requestBody the list of transfers, each with the same details as a single transfer
+     * @param netting whether to settle the batch on each account's net position
+     * @return 200 OK with the outcome of each transfer if the batch was applied,
+     * 409 Conflict with the outcomes if it was not (or without a body if the accounts are on different shards,
+     * or if the in-memory ledger engine is enabled, since the batch would bypass it),
+     * 400 Bad Request if the batch is empty or too large
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchPaymentResultDTO> applyPayments(
+            @RequestBody List<Map<String, String>> requestBody,
+            @RequestParam(defaultValue = "false") boolean netting) {
+
+        if (requestBody.isEmpty() || requestBody.size() > batchPaymentService.getMaxSize()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<PaymentDTO> payments = new ArrayList<>(requestBody.size());
+        for (Map<String, String> item : requestBody) {
+            String amount = item.get("amount");
+            payments.add(new PaymentDTO(item.get("fromAccountNumber"), item.get("toAccountNumber"),
+                    amount != null ? new BigDecimal(amount) : null));
+        }
 
-        if (success) {
-            return ResponseEntity.ok("Transfer successful");
-        } else {
-            return ResponseEntity.badRequest().body("Transfer failed");
+        BatchPaymentResultDTO result;
+        try {
+            result = batchPaymentService.applyPayments(payments, netting);
+        } catch (CrossShardException | EngineBypassException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
+        return result.isApplied()
+                ? ResponseEntity.ok(result)
+                : ResponseEntity.status(HttpStatus.CONFLICT).body(result);
     }
 }
@@ -0,0 +1,18 @@
+package isolation_levels.datasource;
+
+/**
+ * Role of a database a connection can be routed to.
+ *
+ * @author JetBrains Junie
+ */
+public enum DataSourceRole {
+    /**
+     * The primary database, which accepts reads and writes.
+     */
+    PRIMARY,
+
+    /**
+     * A read replica of the primary database, which may lag behind it.
+     */
+    REPLICA
+}
@@ -0,0 +1,36 @@
+package isolation_levels.datasource;
+
+/**
+ * Holds the database role override of the current thread, as set by {@link UseDataSource}.
+ *
+ * @author JetBrains Junie
+ */
+public final class DataSourceRoutingContext {
+
+    private static final ThreadLocal<DataSourceRole> ROLE = new ThreadLocal<>();
+
+    private DataSourceRoutingContext() {
+    }
+
+    /**
+     * Returns the role override of the current thread.
+     *
+     * @return the role, or null if routing is not overridden
+     */
+    public static DataSourceRole getRole() {
+        return ROLE.get();
+    }
+
+    /**
+     * Sets the role override of the current thread.
+     *
+     * @param role the role, or null to remove the override
+     */
+    public static void setRole(DataSourceRole role) {
+        if (role == null) {
+            ROLE.remove();
+        } else {
+            ROLE.set(role);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package isolation_levels.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * DataSource for a pool whose connections are all opened with the same isolation level.
+ * The connections keep that level: the requests Spring makes to switch the isolation level
+ * when a transaction starts, and to switch it back when the transaction ends, are skipped
+ * instead of being sent to the database. {@link IsolationRoutingDataSource} only hands out
+ * these connections to transactions that run at the pool's level.
+ *
+ * @author JetBrains Junie
+ */
+public class IsolationPinnedDataSource extends DelegatingDataSource implements Closeable {
+
+    private final int isolationLevel;
+
+    /**
+     * Creates a DataSource over a pool of connections with a fixed isolation level.
+     *
+     * @param targetDataSource the pool, configured to open connections with the isolation level
+     * @param isolationLevel the JDBC isolation level of the pool's connections
+     */
+    public IsolationPinnedDataSource(DataSource targetDataSource, int isolationLevel) {
+        super(targetDataSource);
+        this.isolationLevel = isolationLevel;
+    }
+
+    public int getIsolationLevel() {
+        return isolationLevel;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pin(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return pin(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection pin(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PinnedConnectionHandler(target));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (getTargetDataSource() instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * Invocation handler that keeps the connection at the pool's isolation level.
+     */
+    private class PinnedConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        PinnedConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getTransactionIsolation":
+                    return isolationLevel;
+                case "setTransactionIsolation":
+                    return null;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
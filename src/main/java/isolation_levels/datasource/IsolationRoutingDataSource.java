@@ -0,0 +1,58 @@
+package isolation_levels.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DataSource that routes each transaction to the connection pool of its isolation level.
+ * Transactions without an explicit isolation level, and connections used outside transactions,
+ * go to the default pool. Like {@link RoutingDataSource}, it must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, so that the
+ * connection is fetched after the transaction's isolation level is known.
+ * Closing this DataSource closes all pools.
+ *
+ * @author JetBrains Junie
+ */
+public class IsolationRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private final DataSource defaultPool;
+    private final Map<Integer, IsolationPinnedDataSource> isolationPools;
+
+    /**
+     * Creates a routing DataSource over the given pools.
+     *
+     * @param defaultPool the pool for transactions without an explicit isolation level
+     * @param isolationPools the pools per isolation level
+     */
+    public IsolationRoutingDataSource(DataSource defaultPool, Iterable<IsolationPinnedDataSource> isolationPools) {
+        this.defaultPool = defaultPool;
+        this.isolationPools = new HashMap<>();
+        for (IsolationPinnedDataSource pool : isolationPools) {
+            this.isolationPools.put(pool.getIsolationLevel(), pool);
+        }
+        setTargetDataSources(new HashMap<>(this.isolationPools));
+        setDefaultTargetDataSource(defaultPool);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.getCurrentTransactionIsolationLevel();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (IsolationPinnedDataSource pool : isolationPools.values()) {
+            pool.close();
+        }
+        if (defaultPool instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package isolation_levels.datasource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Wraps the application's DataSource in a {@link LazyConnectionDataSourceProxy}.
+ * A transaction then only takes a physical connection from the pool when it runs its first statement,
+ * so transactions that return early, e.g. after failed validation, never hold a connection.
+ * The routing DataSources of {@link isolation_levels.config.DataSourceConfig},
+ * {@link isolation_levels.config.ShardingConfig} and {@link isolation_levels.config.IsolationPoolsConfig}
+ * are already lazy and are left as they are.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+public class LazyConnectionDataSourcePostProcessor implements BeanPostProcessor {
+
+    private static final String DATA_SOURCE_BEAN_NAME = "dataSource";
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (DATA_SOURCE_BEAN_NAME.equals(beanName) && bean instanceof DataSource dataSource
+                && !(bean instanceof LazyConnectionDataSourceProxy)) {
+            return new ClosingLazyConnectionDataSourceProxy(dataSource);
+        }
+        return bean;
+    }
+
+    /**
+     * Lazy proxy that closes the pool it wraps when the application context shuts down.
+     */
+    static class ClosingLazyConnectionDataSourceProxy extends LazyConnectionDataSourceProxy implements Closeable {
+
+        ClosingLazyConnectionDataSourceProxy(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (getTargetDataSource() instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
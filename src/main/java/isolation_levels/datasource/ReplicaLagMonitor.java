@@ -0,0 +1,66 @@
+package isolation_levels.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically measures how far the replica lags behind the primary and publishes it as the
+ * {@code isolation_levels.datasource.replica.lag} gauge, in seconds (-1 if the last measurement failed).
+ * The lag is measured by a configurable query on the replica that returns the lag in seconds, for example
+ * {@code SELECT TIMESTAMPDIFF(SECOND, MAX(ts), UTC_TIMESTAMP()) FROM heartbeat.heartbeat} for pt-heartbeat.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+@ConditionalOnProperty("isolation-levels.datasource.replica-lag.query")
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final String lagQuery;
+    private final AtomicLong lagSeconds = new AtomicLong(-1);
+
+    @Autowired
+    public ReplicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource,
+                             @Value("${isolation-levels.datasource.replica-lag.query}") String lagQuery,
+                             MeterRegistry meterRegistry) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.lagQuery = lagQuery;
+        Gauge.builder("isolation_levels.datasource.replica.lag", lagSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .description("Replication lag of the read replica")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Measures the current replica lag.
+     */
+    @Scheduled(fixedDelayString = "${isolation-levels.datasource.replica-lag.interval:PT5S}")
+    public void refresh() {
+        try {
+            Long lag = replicaJdbcTemplate.queryForObject(lagQuery, Long.class);
+            lagSeconds.set(lag != null ? lag : -1);
+        } catch (DataAccessException e) {
+            lagSeconds.set(-1);
+        }
+    }
+
+    /**
+     * Returns the last measured replica lag.
+     *
+     * @return the lag in seconds, or -1 if it could not be measured
+     */
+    public long getLagSeconds() {
+        return lagSeconds.get();
+    }
+}
@@ -0,0 +1,26 @@
+package isolation_levels.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * DataSource that routes read-only transactions to the replica and all other connections to the primary.
+ * The route is decided when a physical connection is fetched, so this DataSource must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}; otherwise the connection
+ * would be fetched before the transaction's read-only flag is known.
+ *
+ * @author JetBrains Junie
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceRole role = DataSourceRoutingContext.getRole();
+        if (role != null) {
+            return role;
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? DataSourceRole.REPLICA
+                : DataSourceRole.PRIMARY;
+    }
+}
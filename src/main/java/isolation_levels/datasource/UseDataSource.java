@@ -0,0 +1,27 @@
+package isolation_levels.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Overrides the database role that transactions started by the annotated method are routed to.
+ * Without this annotation, read-only transactions go to the replica and all others to the primary.
+ * Use it for read-only methods that must see their own writes, or for read-write methods
+ * whose reads may safely be served by the replica.
+ *
+ * @author JetBrains Junie
+ * @see RoutingDataSource
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface UseDataSource {
+
+    /**
+     * The role to route to.
+     */
+    DataSourceRole value();
+}
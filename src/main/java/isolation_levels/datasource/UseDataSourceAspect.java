@@ -0,0 +1,40 @@
+package isolation_levels.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aspect that applies {@link UseDataSource} overrides for the duration of the annotated method.
+ * It runs before the transaction interceptor, so the override is in place when the
+ * transaction acquires its connection.
+ *
+ * @author JetBrains Junie
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class UseDataSourceAspect {
+
+    /**
+     * Invokes the annotated method with the routing override in place.
+     *
+     * @param joinPoint the method invocation
+     * @param useDataSource the routing override
+     * @return the result of the method
+     * @throws Throwable any failure of the method
+     */
+    @Around("@annotation(useDataSource)")
+    public Object route(ProceedingJoinPoint joinPoint, UseDataSource useDataSource) throws Throwable {
+        DataSourceRole previous = DataSourceRoutingContext.getRole();
+        DataSourceRoutingContext.setRole(useDataSource.value());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            DataSourceRoutingContext.setRole(previous);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package isolation_levels.dto;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for the result of a batch payment.
+ * A batch is applied all-or-nothing: either every transfer is APPLIED,
+ * or none is and the failing transfers carry the reason.
+ *
+ * @author JetBrains Junie
+ */
+public class BatchPaymentResultDTO {
+    private boolean applied;
+    private long elapsedMillis;
+    private List<PaymentOutcomeDTO> outcomes;
+    
+    // Default constructor
+    public BatchPaymentResultDTO() {
+    }
+    
+    /**
+     * Creates a new BatchPaymentResultDTO with the specified details.
+     *
+     * @param applied whether the batch was applied
+     * @param elapsedMillis the time taken to validate and apply the batch, in milliseconds
+     * @param outcomes the outcome of each transfer, in batch order
+     */
+    public BatchPaymentResultDTO(boolean applied, long elapsedMillis, List<PaymentOutcomeDTO> outcomes) {
+        this.applied = applied;
+        this.elapsedMillis = elapsedMillis;
+        this.outcomes = outcomes;
+    }
+    
+    // Getters and setters
+    
+    public boolean isApplied() {
+        return applied;
+    }
+    
+    public void setApplied(boolean applied) {
+        this.applied = applied;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+    
+    public List<PaymentOutcomeDTO> getOutcomes() {
+        return outcomes;
+    }
+    
+    public void setOutcomes(List<PaymentOutcomeDTO> outcomes) {
+        this.outcomes = outcomes;
+    }
+}
@@ -0,0 +1,57 @@
+package isolation_levels.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object for one transfer of a batch payment.
+ *
+ * @author JetBrains Junie
+ */
+public class PaymentDTO {
+    private String fromAccountNumber;
+    private String toAccountNumber;
+    private BigDecimal amount;
+    
+    // Default constructor
+    public PaymentDTO() {
+    }
+    
+    /**
+     * Creates a new PaymentDTO with the specified details.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @param amount the amount to transfer
+     */
+    public PaymentDTO(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+    }
+    
+    // Getters and setters
+    
+    public String getFromAccountNumber() {
+        return fromAccountNumber;
+    }
+    
+    public void setFromAccountNumber(String fromAccountNumber) {
+        this.fromAccountNumber = fromAccountNumber;
+    }
+    
+    public String getToAccountNumber() {
+        return toAccountNumber;
+    }
+    
+    public void setToAccountNumber(String toAccountNumber) {
+        this.toAccountNumber = toAccountNumber;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,93 @@
+package isolation_levels.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object for the outcome of one transfer of a batch payment.
+ *
+ * @author JetBrains Junie
+ */
+public class PaymentOutcomeDTO {
+    private int index;
+    private String fromAccountNumber;
+    private String toAccountNumber;
+    private BigDecimal amount;
+    private Outcome outcome;
+    
+    // Default constructor
+    public PaymentOutcomeDTO() {
+    }
+    
+    /**
+     * Creates a new PaymentOutcomeDTO for a transfer of a batch.
+     *
+     * @param index the position of the transfer in the batch, starting at 0
+     * @param payment the transfer
+     * @param outcome the outcome of the transfer
+     */
+    public PaymentOutcomeDTO(int index, PaymentDTO payment, Outcome outcome) {
+        this.index = index;
+        this.fromAccountNumber = payment.getFromAccountNumber();
+        this.toAccountNumber = payment.getToAccountNumber();
+        this.amount = payment.getAmount();
+        this.outcome = outcome;
+    }
+    
+    // Getters and setters
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    
+    public String getFromAccountNumber() {
+        return fromAccountNumber;
+    }
+    
+    public void setFromAccountNumber(String fromAccountNumber) {
+        this.fromAccountNumber = fromAccountNumber;
+    }
+    
+    public String getToAccountNumber() {
+        return toAccountNumber;
+    }
+    
+    public void setToAccountNumber(String toAccountNumber) {
+        this.toAccountNumber = toAccountNumber;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+    
+    public Outcome getOutcome() {
+        return outcome;
+    }
+    
+    public void setOutcome(Outcome outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * Enum representing the outcome of a transfer of a batch.
+     */
+    public enum Outcome {
+        /** The transfer was applied. */
+        APPLIED,
+        /** The transfer was valid but not applied, because another transfer of the batch failed or its transaction could not commit. */
+        NOT_APPLIED,
+        /** The transfer is malformed: missing fields, a non-positive amount or the same account twice. */
+        INVALID,
+        /** One of the accounts does not exist. */
+        ACCOUNT_NOT_FOUND,
+        /** The source account does not have enough funds at this point of the batch. */
+        INSUFFICIENT_FUNDS
+    }
+}
@@ -0,0 +1,71 @@
+package isolation_levels.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a transaction history ordered by timestamp and ID.
+ * The cursor is handed to clients as an opaque, URL-safe continuation token.
+ *
+ * @author JetBrains Junie
+ */
+public final class TransactionCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final LocalDateTime timestamp;
+    private final Long id;
+
+    /**
+     * Creates a new cursor pointing at the specified transaction.
+     *
+     * @param timestamp the timestamp of the transaction
+     * @param id the ID of the transaction
+     */
+    public TransactionCursor(LocalDateTime timestamp, Long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    /**
+     * Decodes a continuation token.
+     *
+     * @param token the token created by {@link #encode()}
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is not a valid cursor
+     */
+    public static TransactionCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            return new TransactionCursor(
+                    LocalDateTime.parse(value.substring(0, separator)),
+                    Long.valueOf(value.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    /**
+     * Encodes this cursor as a continuation token.
+     *
+     * @return the URL-safe token
+     */
+    public String encode() {
+        String value = timestamp.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
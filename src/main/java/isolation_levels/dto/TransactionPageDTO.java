@@ -0,0 +1,47 @@
+package isolation_levels.dto;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for one page of an account's transaction history.
+ * The next page is requested with the returned cursor, which is null on the last page.
+ *
+ * @author JetBrains Junie
+ */
+public class TransactionPageDTO {
+    private List<TransactionDTO> transactions;
+    private String nextCursor;
+    
+    // Default constructor
+    public TransactionPageDTO() {
+    }
+    
+    /**
+     * Creates a new TransactionPageDTO with the specified details.
+     *
+     * @param transactions the transactions of this page
+     * @param nextCursor the continuation token for the next page, or null if this is the last page
+     */
+    public TransactionPageDTO(List<TransactionDTO> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+    
+    // Getters and setters
+    
+    public List<TransactionDTO> getTransactions() {
+        return transactions;
+    }
+    
+    public void setTransactions(List<TransactionDTO> transactions) {
+        this.transactions = transactions;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
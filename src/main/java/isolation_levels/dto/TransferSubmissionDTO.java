@@ -0,0 +1,126 @@
+package isolation_levels.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Data Transfer Object for a transfer submitted for asynchronous processing, and its current status.
+ *
+ * @author JetBrains Junie
+ */
+public class TransferSubmissionDTO {
+    private String id;
+    private String fromAccountNumber;
+    private String toAccountNumber;
+    private BigDecimal amount;
+    private Status status;
+    private PaymentOutcomeDTO.Outcome outcome;
+    private LocalDateTime submittedAt;
+    private LocalDateTime completedAt;
+    
+    // Default constructor
+    public TransferSubmissionDTO() {
+    }
+    
+    /**
+     * Creates a new TransferSubmissionDTO with the specified details.
+     *
+     * @param id the ID of the submission
+     * @param payment the submitted transfer
+     * @param status the status of the transfer
+     * @param outcome the reason a finished transfer has its status, or null while it is queued or if the reason is not known
+     * @param submittedAt the time the transfer was submitted
+     * @param completedAt the time the transfer finished, or null while it is queued or if the reason is not known
+     */
+    public TransferSubmissionDTO(String id, PaymentDTO payment, Status status, PaymentOutcomeDTO.Outcome outcome,
+                                 LocalDateTime submittedAt, LocalDateTime completedAt) {
+        this.id = id;
+        this.fromAccountNumber = payment.getFromAccountNumber();
+        this.toAccountNumber = payment.getToAccountNumber();
+        this.amount = payment.getAmount();
+        this.status = status;
+        this.outcome = outcome;
+        this.submittedAt = submittedAt;
+        this.completedAt = completedAt;
+    }
+    
+    // Getters and setters
+    
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getFromAccountNumber() {
+        return fromAccountNumber;
+    }
+    
+    public void setFromAccountNumber(String fromAccountNumber) {
+        this.fromAccountNumber = fromAccountNumber;
+    }
+    
+    public String getToAccountNumber() {
+        return toAccountNumber;
+    }
+    
+    public void setToAccountNumber(String toAccountNumber) {
+        this.toAccountNumber = toAccountNumber;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public PaymentOutcomeDTO.Outcome getOutcome() {
+        return outcome;
+    }
+    
+    public void setOutcome(PaymentOutcomeDTO.Outcome outcome) {
+        this.outcome = outcome;
+    }
+    
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+    
+    public void setSubmittedAt(LocalDateTime submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+    
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    /**
+     * Enum representing the status of a submitted transfer.
+     */
+    public enum Status {
+        /** The transfer is waiting for its group to commit. */
+        QUEUED,
+        /** The money has moved. */
+        COMPLETED,
+        /** The source account is debited and the credit will be finished by recovery. */
+        PENDING,
+        /** No money has moved. */
+        FAILED
+    }
+}
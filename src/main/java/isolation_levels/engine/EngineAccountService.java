@@ -0,0 +1,172 @@
+package isolation_levels.engine;
+
+import isolation_levels.cache.AccountCache;
+import isolation_levels.datasource.DataSourceRole;
+import isolation_levels.datasource.UseDataSource;
+import isolation_levels.dto.AccountDTO;
+import isolation_levels.model.Account;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.BalanceSlotRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.service.AccountService;
+import isolation_levels.service.InsufficientFundsException;
+import isolation_levels.service.LedgerWriter;
+import isolation_levels.sharding.ShardKey;
+import isolation_levels.sharding.ShardTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link AccountService} backed by the {@link LedgerEngine}, used instead of it when the engine is enabled.
+ * Balance updates are applied in memory and journaled, without a database transaction, so the locking
+ * variants all behave alike: the writer thread serializes every change. Reads still go to the database,
+ * with the balance of accounts held by the engine replaced by their current in-memory balance, since the
+ * stored one lags behind by the persist interval. Splitting a balance over slot rows is rejected with an
+ * {@link EngineBypassException}.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "isolation-levels.engine.enabled", havingValue = "true")
+public class EngineAccountService extends AccountService {
+
+    private final LedgerEngine ledgerEngine;
+
+    @Autowired
+    public EngineAccountService(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                                BalanceSlotRepository balanceSlotRepository, LedgerWriter ledgerWriter,
+                                AccountCache accountCache, ShardTemplate shardTemplate, LedgerEngine ledgerEngine) {
+        super(accountRepository, transactionRepository, balanceSlotRepository, ledgerWriter, accountCache, shardTemplate);
+        this.ledgerEngine = ledgerEngine;
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.READ_UNCOMMITTED)
+    public Optional<AccountDTO> getAccountReadUncommitted(@ShardKey String accountNumber) {
+        return super.getAccountReadUncommitted(accountNumber).map(this::withEngineBalance);
+    }
+
+    @Override
+    @UseDataSource(DataSourceRole.PRIMARY)
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public Optional<AccountDTO> getAccountReadCommitted(@ShardKey String accountNumber) {
+        return super.getAccountReadCommitted(accountNumber).map(this::withEngineBalance);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public Optional<AccountDTO> getAccountRepeatableRead(@ShardKey String accountNumber) {
+        return super.getAccountRepeatableRead(accountNumber).map(this::withEngineBalance);
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public Optional<AccountDTO> getAccountSerializable(@ShardKey String accountNumber) {
+        return super.getAccountSerializable(accountNumber).map(this::withEngineBalance);
+    }
+
+    @Override
+    public List<AccountDTO> getAllAccounts() {
+        return super.getAllAccounts().stream().map(this::withEngineBalance).toList();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Account> updateBalanceReadUncommitted(String accountNumber, BigDecimal newBalance) {
+        return setBalance(accountNumber, newBalance);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Account> updateBalanceReadCommitted(String accountNumber, BigDecimal newBalance) {
+        return setBalance(accountNumber, newBalance);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Account> updateBalanceRepeatableRead(String accountNumber, BigDecimal newBalance) {
+        return setBalance(accountNumber, newBalance);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Account> updateBalanceSerializable(String accountNumber, BigDecimal newBalance) {
+        return setBalance(accountNumber, newBalance);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Account> updateBalanceWithOptimisticLock(String accountNumber, BigDecimal amount) {
+        return adjustBalance(accountNumber, amount, false);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Account> updateBalanceWithPessimisticLock(String accountNumber, BigDecimal amount) {
+        return adjustBalance(accountNumber, amount, false);
+    }
+
+    /**
+     * Updates an account's balance in the engine, rejecting withdrawals that would make it negative.
+     *
+     * @param accountNumber the account number to update
+     * @param amount the amount to add to the balance (can be negative)
+     * @return the updated account, or empty if the account was not found
+     * @throws InsufficientFundsException if the update would make the balance negative
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Account> updateBalanceAtomically(String accountNumber, BigDecimal amount) {
+        return adjustBalance(accountNumber, amount, true);
+    }
+
+    /**
+     * Not supported while the engine is enabled, since it holds the balance in one piece.
+     *
+     * @throws EngineBypassException always
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Account> splitBalance(String accountNumber, int slotCount) {
+        throw new EngineBypassException("Split balances");
+    }
+
+    private Optional<Account> setBalance(String accountNumber, BigDecimal newBalance) {
+        return toAccount(accountNumber, newBalance, ledgerEngine.setBalance(accountNumber, newBalance));
+    }
+
+    private Optional<Account> adjustBalance(String accountNumber, BigDecimal amount, boolean requireFunds) {
+        boolean credit = amount.compareTo(BigDecimal.ZERO) >= 0;
+        LedgerEngine.Result result = ledgerEngine.post(accountNumber, amount.abs(),
+                credit ? "Deposit" : "Withdrawal", credit, requireFunds);
+        if (result.outcome() == LedgerEngine.Outcome.INSUFFICIENT_FUNDS) {
+            throw new InsufficientFundsException(accountNumber);
+        }
+        return toAccount(accountNumber, amount, result);
+    }
+
+    private Optional<Account> toAccount(String accountNumber, BigDecimal amount, LedgerEngine.Result result) {
+        return switch (result.outcome()) {
+            case APPLIED -> Optional.of(ledgerEngine.toAccount(accountNumber, result.event().getBalanceAfterMinor()));
+            case ACCOUNT_NOT_FOUND -> Optional.empty();
+            default -> throw new IllegalArgumentException("Invalid amount: " + amount);
+        };
+    }
+
+    private AccountDTO withEngineBalance(AccountDTO account) {
+        return ledgerEngine.find(account.getAccountNumber())
+                .map(state -> new AccountDTO(account.getId(), account.getAccountNumber(), account.getOwnerName(),
+                        state.getBalance(), account.getVersion()))
+                .orElse(account);
+    }
+}
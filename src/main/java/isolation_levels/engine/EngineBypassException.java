@@ -0,0 +1,19 @@
+package isolation_levels.engine;
+
+/**
+ * Exception thrown when an operation would change balances in the database behind the {@link LedgerEngine},
+ * which holds them while it is enabled.
+ *
+ * @author JetBrains Junie
+ */
+public class EngineBypassException extends RuntimeException {
+
+    /**
+     * Creates a new exception for an operation the engine cannot apply.
+     *
+     * @param operation the operation, such as "Batch payments"
+     */
+    public EngineBypassException(String operation) {
+        super(operation + " would change balances behind the ledger engine");
+    }
+}
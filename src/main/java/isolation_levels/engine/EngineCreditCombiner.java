@@ -0,0 +1,66 @@
+package isolation_levels.engine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.combining.CreditCombiner;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.service.LedgerWriter;
+import isolation_levels.service.TransactionService;
+import isolation_levels.sharding.ShardTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link CreditCombiner} backed by the {@link LedgerEngine}, used instead of it when the engine is enabled.
+ * The engine's writer thread already makes a whole group of concurrent changes durable with one flush,
+ * so credits are posted to it at once instead of being combined into a write to the account row.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "isolation-levels.engine.enabled", havingValue = "true")
+public class EngineCreditCombiner extends CreditCombiner {
+
+    private final TransactionService transactionService;
+
+    @Autowired
+    public EngineCreditCombiner(AccountRepository accountRepository, LedgerWriter ledgerWriter, ShardTemplate shardTemplate,
+                                PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                @Value("${isolation-levels.combining.flush-interval:PT0.005S}") Duration flushInterval,
+                                @Value("${isolation-levels.combining.max-batch-size:1000}") int maxBatchSize,
+                                @Value("${isolation-levels.combining.threads:4}") int threads,
+                                TransactionService transactionService) {
+        super(accountRepository, ledgerWriter, shardTemplate, transactionManager, meterRegistry,
+                flushInterval, maxBatchSize, threads);
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * Posts a credit to an account in the engine.
+     *
+     * @param accountNumber the account number to credit
+     * @param amount the amount to credit
+     * @param description the transaction description
+     * @return a future completed with the journaled ledger entry, or empty if the account was not found;
+     * completed exceptionally if the credit is invalid
+     */
+    @Override
+    public CompletableFuture<Optional<Transaction>> credit(String accountNumber, BigDecimal amount, String description) {
+        try {
+            return CompletableFuture.completedFuture(transactionService.createTransaction(accountNumber, amount,
+                    description, Transaction.TransactionType.CREDIT));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
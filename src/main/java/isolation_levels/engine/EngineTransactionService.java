@@ -0,0 +1,133 @@
+package isolation_levels.engine;
+
+import isolation_levels.dto.PaymentDTO;
+import isolation_levels.dto.PaymentOutcomeDTO;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.service.LedgerWriter;
+import isolation_levels.service.TransactionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link TransactionService} backed by the {@link LedgerEngine}, used instead of it when the engine is enabled.
+ * Ledger entries and transfers are applied in memory and journaled, without a database transaction;
+ * they reach the database, and the history queries, once the engine's persister has written them.
+ * Every method that changes balances is overridden: a group of transfers is applied by the engine transfer by
+ * transfer, and all-or-nothing batch payments, which the engine cannot apply atomically, throw an
+ * {@link EngineBypassException} instead of locking and updating the account rows behind it.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "isolation-levels.engine.enabled", havingValue = "true")
+public class EngineTransactionService extends TransactionService {
+
+    private final LedgerEngine ledgerEngine;
+
+    @Autowired
+    public EngineTransactionService(TransactionRepository transactionRepository, AccountRepository accountRepository,
+                                    LedgerWriter ledgerWriter, LedgerEngine ledgerEngine) {
+        super(transactionRepository, accountRepository, ledgerWriter);
+        this.ledgerEngine = ledgerEngine;
+    }
+
+    /**
+     * Creates a new transaction for an account in the engine.
+     * The returned transaction has no ID yet, since it is persisted later.
+     *
+     * @param accountNumber the account number
+     * @param amount the transaction amount, not negative with at most two fractional digits
+     * @param description the transaction description, at most 255 characters
+     * @param type the transaction type (DEBIT or CREDIT)
+     * @return the created transaction, or empty if the account was not found
+     * @throws IllegalArgumentException if the amount is negative or has more than two fractional digits,
+     * or if the description is missing or too long
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<Transaction> createTransaction(String accountNumber, BigDecimal amount,
+                                                  String description, Transaction.TransactionType type) {
+        LedgerEngine.Result result = ledgerEngine.post(accountNumber, amount, description,
+                type == Transaction.TransactionType.CREDIT, false);
+        if (result.outcome() == LedgerEngine.Outcome.INVALID) {
+            throw new IllegalArgumentException("Invalid amount or description: " + amount);
+        }
+        if (result.outcome() != LedgerEngine.Outcome.APPLIED) {
+            return Optional.empty();
+        }
+
+        LedgerEvent event = result.event();
+        Transaction transaction = new Transaction(amount, description, type);
+        transaction.setTimestamp(event.getTimestamp());
+        transaction.setAccount(ledgerEngine.toAccount(accountNumber, event.getBalanceAfterMinor()));
+        return Optional.of(transaction);
+    }
+
+    /**
+     * Transfers money between two accounts in the engine, on any shards.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @param amount the amount to transfer
+     * @return true if the transfer was successful, false otherwise
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean transferMoney(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        return ledgerEngine.transfer(fromAccountNumber, toAccountNumber, amount).outcome() == LedgerEngine.Outcome.APPLIED;
+    }
+
+    /**
+     * Applies a group of independent transfers in the engine, one after the other, on any shards.
+     * Each transfer succeeds or fails on its own, as with {@link #transferMoney}.
+     *
+     * @param payments the transfers to apply, in order
+     * @return the outcome of each transfer, in group order: APPLIED, INVALID, ACCOUNT_NOT_FOUND or INSUFFICIENT_FUNDS
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<PaymentOutcomeDTO> transferMoneyInGroup(List<PaymentDTO> payments) {
+        List<PaymentOutcomeDTO> result = new ArrayList<>(payments.size());
+        for (int i = 0; i < payments.size(); i++) {
+            PaymentDTO payment = payments.get(i);
+            LedgerEngine.Outcome outcome = ledgerEngine.transfer(payment.getFromAccountNumber(),
+                    payment.getToAccountNumber(), payment.getAmount()).outcome();
+            result.add(new PaymentOutcomeDTO(i, payment, PaymentOutcomeDTO.Outcome.valueOf(outcome.name())));
+        }
+        return result;
+    }
+
+    /**
+     * Not supported while the engine is enabled, since the batch would be applied behind it.
+     *
+     * @throws EngineBypassException always
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<PaymentOutcomeDTO> applyPayments(List<PaymentDTO> payments) {
+        throw new EngineBypassException("Batch payments");
+    }
+
+    /**
+     * Not supported while the engine is enabled, since the batch would be applied behind it.
+     *
+     * @throws EngineBypassException always
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<PaymentOutcomeDTO> applyNettedPayments(List<PaymentDTO> payments) {
+        throw new EngineBypassException("Batch payments");
+    }
+}
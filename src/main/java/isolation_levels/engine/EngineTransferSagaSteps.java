@@ -0,0 +1,52 @@
+package isolation_levels.engine;
+
+import isolation_levels.model.TransferSaga;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.repository.TransferSagaRepository;
+import isolation_levels.saga.TransferSagaSteps;
+import isolation_levels.service.LedgerWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * {@link TransferSagaSteps} used when the {@link LedgerEngine} is enabled.
+ * Transfers need no saga then, but sagas left over from before the engine was enabled must not post their
+ * debits, credits or refunds to the account rows behind it, so those steps throw an {@link EngineBypassException}
+ * and the sagas stay in state DEBITED until the engine is disabled again.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "isolation-levels.engine.enabled", havingValue = "true")
+public class EngineTransferSagaSteps extends TransferSagaSteps {
+
+    private static final String OPERATION = "Transfer sagas";
+
+    @Autowired
+    public EngineTransferSagaSteps(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                                   TransferSagaRepository transferSagaRepository, LedgerWriter ledgerWriter) {
+        super(accountRepository, transactionRepository, transferSagaRepository, ledgerWriter);
+    }
+
+    @Override
+    public Optional<TransferSaga> debit(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        throw new EngineBypassException(OPERATION);
+    }
+
+    @Override
+    public boolean credit(String toAccountNumber, TransferSaga saga) {
+        throw new EngineBypassException(OPERATION);
+    }
+
+    @Override
+    public TransferSaga.State compensate(String fromAccountNumber, String sagaId) {
+        throw new EngineBypassException(OPERATION);
+    }
+}
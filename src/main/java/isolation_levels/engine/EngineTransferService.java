@@ -0,0 +1,53 @@
+package isolation_levels.engine;
+
+import isolation_levels.cache.AccountCache;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.saga.TransferSagaCoordinator;
+import isolation_levels.service.TransactionService;
+import isolation_levels.service.TransferService;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+
+/**
+ * {@link TransferService} backed by the {@link LedgerEngine}, used instead of it when the engine is enabled.
+ * The engine checks the accounts in memory and applies transfers across shards as one change,
+ * so every transfer goes to it directly, without an existence query or a saga.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "isolation-levels.engine.enabled", havingValue = "true")
+public class EngineTransferService extends TransferService {
+
+    private final TransactionService transactionService;
+
+    @Autowired
+    public EngineTransferService(TransactionService transactionService, TransferSagaCoordinator transferSagaCoordinator,
+                                 AccountRepository accountRepository, AccountCache accountCache,
+                                 ShardRouter shardRouter, ShardTemplate shardTemplate) {
+        super(transactionService, transferSagaCoordinator, accountRepository, accountCache, shardRouter, shardTemplate);
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * Transfers money between two accounts in the engine, on any shards.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @param amount the amount to transfer
+     * @return COMPLETED if the money has moved, FAILED otherwise
+     */
+    @Override
+    public TransferStatus transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        return transactionService.transferMoney(fromAccountNumber, toAccountNumber, amount)
+                ? TransferStatus.COMPLETED
+                : TransferStatus.FAILED;
+    }
+}
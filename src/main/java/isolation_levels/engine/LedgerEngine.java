@@ -0,0 +1,503 @@
+package isolation_levels.engine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.dto.AccountDTO;
+import isolation_levels.model.Account;
+import isolation_levels.money.Money;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.EngineCheckpointRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.service.LedgerWriter;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory ledger engine with a single writer thread, enabled with {@code isolation-levels.engine.enabled=true}.
+ * <p>
+ * Account balances are kept in memory as {@code long} minor units. Callers put their balance changes into a
+ * lock-free {@link RingBuffer}; one writer thread takes them in order, applies them to the balances without
+ * any locking, appends the accepted ones to the {@link LedgerJournal}, makes the whole group durable with one
+ * flush and only then completes the callers. The database is written behind by the {@link LedgerPersister},
+ * in batches, so no database round trip is on the path of a balance change.
+ * <p>
+ * Accounts are loaded from the database on first use. On startup the engine replays the journal events that
+ * the database checkpoints do not cover and queues them for persistence again, so every acknowledged change
+ * survives a crash. The number of journaled events not yet persisted is reported by the
+ * {@code isolation_levels.engine.persist_lag} gauge, and the number of events the database rejected
+ * and the persister skipped by the {@code isolation_levels.engine.skipped_events} counter.
+ * <p>
+ * The engine must be the only writer of the balances it holds, since the persister overwrites the stored balances
+ * with its own. The services that change balances are therefore replaced by engine-backed subclasses while it is
+ * enabled; the operations the engine cannot apply, such as all-or-nothing batch payments, split-balance slots
+ * and the steps of stale sagas, throw an {@link EngineBypassException}, which the endpoints answer with 409 Conflict.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+@ConditionalOnProperty(name = "isolation-levels.engine.enabled", havingValue = "true")
+public class LedgerEngine implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerEngine.class);
+    private static final String PERSIST_LAG_GAUGE = "isolation_levels.engine.persist_lag";
+    private static final String SKIPPED_EVENTS_COUNTER = "isolation_levels.engine.skipped_events";
+    private static final int MAX_GROUP_SIZE = 4096;
+    private static final long IDLE_PARK_NANOS = 50_000;
+    /** The length of the {@code transactions.description} column. */
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+
+    private final AccountRepository accountRepository;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final LedgerJournal journal;
+    private final LedgerPersister persister;
+    private final RingBuffer<Command> ring;
+    private final ConcurrentMap<String, AccountState> accounts = new ConcurrentHashMap<>();
+    private volatile long lastSequence;
+    private volatile boolean running;
+    private volatile boolean idle;
+    private volatile Throwable failure;
+    private Thread writer;
+
+    @Autowired
+    public LedgerEngine(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                        EngineCheckpointRepository checkpointRepository, LedgerWriter ledgerWriter,
+                        ShardRouter shardRouter, ShardTemplate shardTemplate,
+                        PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                        @Value("${isolation-levels.engine.journal-dir:ledger-journal}") String journalDir,
+                        @Value("${isolation-levels.engine.segment-size:67108864}") long segmentSize,
+                        @Value("${isolation-levels.engine.fsync:true}") boolean fsync,
+                        @Value("${isolation-levels.engine.ring-size:65536}") int ringSize,
+                        @Value("${isolation-levels.engine.persist-batch-size:5000}") int persistBatchSize,
+                        @Value("${isolation-levels.engine.persist-interval:PT0.01S}") Duration persistInterval) {
+        this.accountRepository = accountRepository;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.journal = new LedgerJournal(Path.of(journalDir), segmentSize, fsync);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.persister = new LedgerPersister(accountRepository, transactionRepository, checkpointRepository,
+                ledgerWriter, shardRouter, shardTemplate, transactionTemplate, journal, persistBatchSize, persistInterval,
+                meterRegistry.counter(SKIPPED_EVENTS_COUNTER));
+        this.ring = new RingBuffer<>(ringSize);
+        Gauge.builder(PERSIST_LAG_GAUGE, this, engine -> engine.lastSequence - engine.persister.getPersistedSequence())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Transfers money between two accounts.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @param amount the amount to transfer, positive with at most two fractional digits
+     * @return the outcome, with the journaled event if the transfer was applied
+     */
+    Result transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        long amountMinor = toMinor(amount);
+        if (amountMinor <= 0 || fromAccountNumber.equals(toAccountNumber)) {
+            return Result.INVALID;
+        }
+        if (!ensureLoaded(fromAccountNumber) || !ensureLoaded(toAccountNumber)) {
+            return Result.ACCOUNT_NOT_FOUND;
+        }
+        return submit(new Command(LedgerEvent.Kind.TRANSFER, fromAccountNumber, toAccountNumber,
+                amountMinor, null, true));
+    }
+
+    /**
+     * Adds an amount to an account, or subtracts it.
+     *
+     * @param accountNumber the account number
+     * @param amount the amount, not negative with at most two fractional digits
+     * @param description the description of the ledger entry, at most 255 characters
+     * @param credit true to add the amount, false to subtract it
+     * @param requireFunds whether a debit that would make the balance negative is rejected
+     * @return the outcome, with the journaled event if the change was applied
+     */
+    Result post(String accountNumber, BigDecimal amount, String description, boolean credit, boolean requireFunds) {
+        long amountMinor = toMinor(amount);
+        // Checked before journaling: an entry the database rejects could never be persisted
+        if (amountMinor < 0 || description == null || description.length() > MAX_DESCRIPTION_LENGTH) {
+            return Result.INVALID;
+        }
+        if (!ensureLoaded(accountNumber)) {
+            return Result.ACCOUNT_NOT_FOUND;
+        }
+        return submit(new Command(credit ? LedgerEvent.Kind.CREDIT : LedgerEvent.Kind.DEBIT, accountNumber, null,
+                amountMinor, description, requireFunds));
+    }
+
+    /**
+     * Replaces the balance of an account, without a ledger entry.
+     *
+     * @param accountNumber the account number
+     * @param newBalance the new balance, with at most two fractional digits
+     * @return the outcome, with the journaled event if the balance was replaced
+     */
+    Result setBalance(String accountNumber, BigDecimal newBalance) {
+        long balanceMinor = toMinor(newBalance);
+        if (balanceMinor == Long.MIN_VALUE) {
+            return Result.INVALID;
+        }
+        if (!ensureLoaded(accountNumber)) {
+            return Result.ACCOUNT_NOT_FOUND;
+        }
+        return submit(new Command(LedgerEvent.Kind.SET, accountNumber, null, balanceMinor, null, false));
+    }
+
+    /**
+     * Returns the current state of an account, if the engine has loaded it.
+     * Accounts that are not loaded have not been changed through the engine, so the database is current for them.
+     *
+     * @param accountNumber the account number
+     * @return the account with its current balance, or empty if it is not loaded
+     */
+    Optional<AccountDTO> find(String accountNumber) {
+        AccountState state = accounts.get(accountNumber);
+        return state == null ? Optional.empty() : Optional.of(state.toDTO());
+    }
+
+    /**
+     * Creates a detached account with the given balance, for callers that expect an entity.
+     * The account must be loaded.
+     *
+     * @param accountNumber the account number
+     * @param balanceMinor the balance in minor units, usually the balance after a change
+     * @return the account, without a version
+     */
+    Account toAccount(String accountNumber, long balanceMinor) {
+        AccountState state = accounts.get(accountNumber);
+        Account account = new Account(accountNumber, state.ownerName, Money.ofMinor(balanceMinor).toBigDecimal());
+        account.setId(state.id);
+        return account;
+    }
+
+    /**
+     * Converts an amount to minor units, or returns {@code Long.MIN_VALUE} if it has more than two fractional digits.
+     */
+    private static long toMinor(BigDecimal amount) {
+        try {
+            return Money.of(amount).getMinorUnits();
+        } catch (ArithmeticException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Loads an account from the database on first use. Accounts the engine does not hold have no
+     * unpersisted changes, so the stored balance is current; concurrent loads store the same state.
+     */
+    private boolean ensureLoaded(String accountNumber) {
+        if (accounts.containsKey(accountNumber)) {
+            return true;
+        }
+        Optional<AccountDTO> accountOpt = shardTemplate.onShardOf(accountNumber,
+                () -> readOnlyTransactionTemplate.execute(status -> accountRepository.findDTOByAccountNumber(accountNumber)));
+        if (accountOpt.isEmpty()) {
+            return false;
+        }
+        accounts.putIfAbsent(accountNumber, new AccountState(accountOpt.get(), Money.of(accountOpt.get().getBalance()).getMinorUnits()));
+        return true;
+    }
+
+    private Result submit(Command command) {
+        if (!running || failure != null) {
+            throw new IllegalStateException("Ledger engine is not running", failure);
+        }
+        while (!ring.offer(command)) {
+            // The ring is full, so the writer is busy: let it catch up
+            LockSupport.unpark(writer);
+            Thread.yield();
+        }
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+        try {
+            return command.future.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Ledger engine failed", e.getCause());
+        }
+    }
+
+    /**
+     * The writer loop: takes a group of commands, applies and journals them, flushes the journal once
+     * and completes the group. Groups grow with the load, so the cost of the flush is shared by more commands.
+     */
+    private void runWriter() {
+        List<Command> group = new ArrayList<>(MAX_GROUP_SIZE);
+        List<LedgerEvent> events = new ArrayList<>(MAX_GROUP_SIZE);
+        while (true) {
+            Command command;
+            while (group.size() < MAX_GROUP_SIZE && (command = ring.poll()) != null) {
+                group.add(command);
+            }
+            if (failure != null) {
+                // Keep rejecting until stopped, so no caller that raced with the failure waits forever
+                group.forEach(pending -> pending.future.completeExceptionally(failure));
+                group.clear();
+            }
+            if (group.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                // Park briefly; the bound also covers a producer that checked the flag just before it was set
+                idle = true;
+                if ((command = ring.poll()) == null) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                } else {
+                    group.add(command);
+                }
+                idle = false;
+                continue;
+            }
+
+            try {
+                for (Command pending : group) {
+                    pending.result = apply(pending);
+                    if (pending.result.event() != null) {
+                        journal.append(pending.result.event());
+                        events.add(pending.result.event());
+                    }
+                }
+                journal.sync();
+            } catch (RuntimeException e) {
+                // The balances in memory may now be ahead of the journal, so no further change can be accepted
+                log.error("Ledger engine journal failed, rejecting all further changes", e);
+                failure = e;
+                group.forEach(pending -> pending.future.completeExceptionally(e));
+                group.clear();
+                events.clear();
+                continue;
+            }
+
+            persister.enqueue(events);
+            for (Command pending : group) {
+                pending.future.complete(pending.result);
+            }
+            group.clear();
+            events.clear();
+        }
+    }
+
+    /**
+     * Applies a command to the balances. Runs on the writer thread only, which is the only thread changing balances.
+     */
+    private Result apply(Command command) {
+        AccountState account = accounts.get(command.accountNumber);
+        try {
+            switch (command.kind) {
+                case TRANSFER -> {
+                    AccountState other = accounts.get(command.otherAccountNumber);
+                    if (!Money.covers(account.balanceMinor, command.amountMinor)) {
+                        return Result.INSUFFICIENT_FUNDS;
+                    }
+                    long balance = Money.subtract(account.balanceMinor, command.amountMinor);
+                    long otherBalance = Money.add(other.balanceMinor, command.amountMinor);
+                    account.balanceMinor = balance;
+                    other.balanceMinor = otherBalance;
+                    return Result.applied(newEvent(command, balance, otherBalance));
+                }
+                case CREDIT -> {
+                    account.balanceMinor = Money.add(account.balanceMinor, command.amountMinor);
+                }
+                case DEBIT -> {
+                    if (command.requireFunds && !Money.covers(account.balanceMinor, command.amountMinor)) {
+                        return Result.INSUFFICIENT_FUNDS;
+                    }
+                    account.balanceMinor = Money.subtract(account.balanceMinor, command.amountMinor);
+                }
+                case SET -> account.balanceMinor = command.amountMinor;
+            }
+        } catch (ArithmeticException e) {
+            return Result.INVALID; // The balance would overflow
+        }
+        return Result.applied(newEvent(command, account.balanceMinor, 0));
+    }
+
+    private LedgerEvent newEvent(Command command, long balanceAfterMinor, long otherBalanceAfterMinor) {
+        long sequence = lastSequence + 1;
+        lastSequence = sequence;
+        return new LedgerEvent(sequence, LocalDateTime.now().truncatedTo(ChronoUnit.MICROS), command.kind,
+                command.accountNumber, command.otherAccountNumber, command.amountMinor, command.description,
+                balanceAfterMinor, otherBalanceAfterMinor);
+    }
+
+    /**
+     * Rebuilds the state the database checkpoints do not cover from the journal, and queues it for persistence again.
+     */
+    private void recover() {
+        long[] checkpoints = persister.loadCheckpoints();
+        Map<String, Long> recoveredBalances = new HashMap<>();
+        List<LedgerEvent> unpersisted = new ArrayList<>();
+        long journalSequence = journal.replay(event -> {
+            boolean pending = false;
+            for (LedgerEvent.Leg leg : event.legs()) {
+                if (event.getSequence() > checkpoints[shardRouter.shardOf(leg.accountNumber())]) {
+                    recoveredBalances.put(leg.accountNumber(), leg.balanceAfterMinor());
+                    pending = true;
+                }
+            }
+            if (pending) {
+                unpersisted.add(event);
+            }
+        });
+
+        recoveredBalances.forEach((accountNumber, balanceMinor) -> {
+            Optional<AccountDTO> accountOpt = shardTemplate.onShardOf(accountNumber,
+                    () -> readOnlyTransactionTemplate.execute(status -> accountRepository.findDTOByAccountNumber(accountNumber)));
+            accountOpt.ifPresent(account -> accounts.put(accountNumber, new AccountState(account, balanceMinor)));
+        });
+
+        long maxCheckpoint = 0;
+        for (long checkpoint : checkpoints) {
+            maxCheckpoint = Math.max(maxCheckpoint, checkpoint);
+        }
+        lastSequence = Math.max(journalSequence, maxCheckpoint);
+        persister.enqueue(unpersisted);
+        persister.start(unpersisted.isEmpty() ? lastSequence : unpersisted.get(0).getSequence() - 1);
+        if (!unpersisted.isEmpty()) {
+            log.info("Recovered {} unpersisted ledger engine events for {} accounts from the journal",
+                    unpersisted.size(), recoveredBalances.size());
+        }
+    }
+
+    @Override
+    public void start() {
+        recover();
+        running = true;
+        writer = new Thread(this::runWriter, "ledger-engine-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (writer != null) {
+                LockSupport.unpark(writer);
+                writer.join();
+                // Reject what was put into the ring after the writer's last look
+                IllegalStateException stopped = new IllegalStateException("Ledger engine is not running");
+                Command command;
+                while ((command = ring.poll()) != null) {
+                    command.future.completeExceptionally(stopped);
+                }
+            }
+            persister.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Start before and stop after the web server, so no request reaches a stopped engine
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    /**
+     * Enum representing the outcome of a balance change.
+     */
+    enum Outcome {
+        APPLIED, ACCOUNT_NOT_FOUND, INSUFFICIENT_FUNDS, INVALID
+    }
+
+    /**
+     * The outcome of a balance change and, if it was applied, its journaled event.
+     *
+     * @param outcome the outcome
+     * @param event the event, or null if the change was not applied
+     */
+    record Result(Outcome outcome, LedgerEvent event) {
+
+        static final Result ACCOUNT_NOT_FOUND = new Result(Outcome.ACCOUNT_NOT_FOUND, null);
+        static final Result INSUFFICIENT_FUNDS = new Result(Outcome.INSUFFICIENT_FUNDS, null);
+        static final Result INVALID = new Result(Outcome.INVALID, null);
+
+        static Result applied(LedgerEvent event) {
+            return new Result(Outcome.APPLIED, event);
+        }
+    }
+
+    /**
+     * An account held by the engine. Only the writer thread changes the balance.
+     */
+    private static final class AccountState {
+        private final Long id;
+        private final String accountNumber;
+        private final String ownerName;
+        private volatile long balanceMinor;
+
+        private AccountState(AccountDTO account, long balanceMinor) {
+            this.id = account.getId();
+            this.accountNumber = account.getAccountNumber();
+            this.ownerName = account.getOwnerName();
+            this.balanceMinor = balanceMinor;
+        }
+
+        private AccountDTO toDTO() {
+            return new AccountDTO(id, accountNumber, ownerName, Money.ofMinor(balanceMinor).toBigDecimal(), null);
+        }
+    }
+
+    /**
+     * A balance change waiting in the ring, and the future of its caller.
+     */
+    private static final class Command {
+        private final LedgerEvent.Kind kind;
+        private final String accountNumber;
+        private final String otherAccountNumber;
+        private final long amountMinor;
+        private final String description;
+        private final boolean requireFunds;
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+        private Result result;
+
+        private Command(LedgerEvent.Kind kind, String accountNumber, String otherAccountNumber,
+                        long amountMinor, String description, boolean requireFunds) {
+            this.kind = kind;
+            this.accountNumber = accountNumber;
+            this.otherAccountNumber = otherAccountNumber;
+            this.amountMinor = amountMinor;
+            this.description = description;
+            this.requireFunds = requireFunds;
+        }
+    }
+}
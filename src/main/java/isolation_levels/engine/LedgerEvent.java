@@ -0,0 +1,138 @@
+package isolation_levels.engine;
+
+import isolation_levels.model.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A balance change applied by the {@link LedgerEngine}, as written to the journal and to the database.
+ * Each event carries the balances it left behind, so replaying or persisting it twice sets the same values.
+ *
+ * @author JetBrains Junie
+ */
+final class LedgerEvent {
+
+    private final long sequence;
+    private final LocalDateTime timestamp;
+    private final Kind kind;
+    private final String accountNumber;
+    private final String otherAccountNumber;
+    private final long amountMinor;
+    private final String description;
+    private final long balanceAfterMinor;
+    private final long otherBalanceAfterMinor;
+
+    /**
+     * Creates a new event.
+     *
+     * @param sequence the position of the event in the journal, starting at 1
+     * @param timestamp the time the event was applied
+     * @param kind the kind of change
+     * @param accountNumber the account changed (the source account of a transfer)
+     * @param otherAccountNumber the target account of a transfer, or null
+     * @param amountMinor the amount in minor units (the new balance for SET)
+     * @param description the description of the ledger entry, or null for transfers and SET
+     * @param balanceAfterMinor the balance of the account after the change
+     * @param otherBalanceAfterMinor the balance of the target account of a transfer after the change, or 0
+     */
+    LedgerEvent(long sequence, LocalDateTime timestamp, Kind kind, String accountNumber, String otherAccountNumber,
+                long amountMinor, String description, long balanceAfterMinor, long otherBalanceAfterMinor) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.kind = kind;
+        this.accountNumber = accountNumber;
+        this.otherAccountNumber = otherAccountNumber;
+        this.amountMinor = amountMinor;
+        this.description = description;
+        this.balanceAfterMinor = balanceAfterMinor;
+        this.otherBalanceAfterMinor = otherBalanceAfterMinor;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    String getAccountNumber() {
+        return accountNumber;
+    }
+
+    String getOtherAccountNumber() {
+        return otherAccountNumber;
+    }
+
+    long getAmountMinor() {
+        return amountMinor;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    long getBalanceAfterMinor() {
+        return balanceAfterMinor;
+    }
+
+    long getOtherBalanceAfterMinor() {
+        return otherBalanceAfterMinor;
+    }
+
+    /**
+     * Splits the event into its changes per account, each of which is persisted on the account's shard.
+     *
+     * @return one leg per changed account
+     */
+    List<Leg> legs() {
+        List<Leg> legs = new ArrayList<>(2);
+        switch (kind) {
+            case TRANSFER -> {
+                legs.add(new Leg(this, accountNumber, balanceAfterMinor,
+                        Transaction.TransactionType.DEBIT, "Transfer to " + otherAccountNumber));
+                legs.add(new Leg(this, otherAccountNumber, otherBalanceAfterMinor,
+                        Transaction.TransactionType.CREDIT, "Transfer from " + accountNumber));
+            }
+            case CREDIT -> legs.add(new Leg(this, accountNumber, balanceAfterMinor,
+                    Transaction.TransactionType.CREDIT, description));
+            case DEBIT -> legs.add(new Leg(this, accountNumber, balanceAfterMinor,
+                    Transaction.TransactionType.DEBIT, description));
+            case SET -> legs.add(new Leg(this, accountNumber, balanceAfterMinor, null, null));
+        }
+        return legs;
+    }
+
+    /**
+     * Enum representing the kind of a balance change.
+     */
+    enum Kind {
+        /** Moves the amount from the account to the other account. */
+        TRANSFER,
+        /** Adds the amount to the account. */
+        CREDIT,
+        /** Subtracts the amount from the account. */
+        DEBIT,
+        /** Replaces the balance of the account, without a ledger entry. */
+        SET
+    }
+
+    /**
+     * The change of one account by an event.
+     *
+     * @param event the event
+     * @param accountNumber the account changed
+     * @param balanceAfterMinor the balance of the account after the change
+     * @param type the type of the ledger entry, or null if the change has none
+     * @param description the description of the ledger entry, or null if the change has none
+     */
+    record Leg(LedgerEvent event, String accountNumber, long balanceAfterMinor,
+               Transaction.TransactionType type, String description) {
+    }
+}
@@ -0,0 +1,265 @@
+package isolation_levels.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of {@link LedgerEvent}s, split into segment files named after their first sequence.
+ * Each record is framed by its length and a CRC32 checksum, so a record torn by a crash is detected
+ * and cut off on recovery. Segments whose events are all persisted to the database are deleted.
+ * <p>
+ * Appends and syncs are made by the engine's writer thread only; segments are released by the persister thread.
+ *
+ * @author JetBrains Junie
+ */
+final class LedgerJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerJournal.class);
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final List<Segment> segments = new ArrayList<>();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private FileChannel channel;
+
+    /**
+     * Opens the journal in a directory, creating the directory if needed.
+     *
+     * @param directory the directory of the segment files
+     * @param segmentBytes the size after which a new segment is started
+     * @param fsync whether {@link #sync()} forces the written records to the storage device
+     */
+    LedgerJournal(Path directory, long segmentBytes, boolean fsync) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                        .sorted()
+                        .forEach(file -> segments.add(new Segment(firstSequenceOf(file), file)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Reads all complete records in sequence order. A torn or corrupt record ends the journal:
+     * it and anything after it in its segment are cut off, so new records follow the last good one.
+     * Must be called once, before the first append.
+     *
+     * @param consumer the consumer of the events
+     * @return the sequence of the last event read, or 0 if the journal is empty
+     */
+    long replay(Consumer<LedgerEvent> consumer) {
+        long lastSequence = 0;
+        try {
+            for (Segment segment : segments) {
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.file()));
+                int validBytes = 0;
+                LedgerEvent event;
+                while ((event = readRecord(buffer)) != null) {
+                    consumer.accept(event);
+                    lastSequence = event.getSequence();
+                    validBytes = buffer.position();
+                }
+                if (validBytes < buffer.limit()) {
+                    log.warn("Cutting off the torn end of journal segment {} after {} bytes", segment.file(), validBytes);
+                    try (FileChannel file = FileChannel.open(segment.file(), StandardOpenOption.WRITE)) {
+                        file.truncate(validBytes);
+                        file.force(true);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Reads the next record, or returns null if the buffer ends before it is complete or it fails its checksum.
+     */
+    private LedgerEvent readRecord(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        crc.reset();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        long sequence = record.readLong();
+        long epochMicros = record.readLong();
+        LedgerEvent.Kind kind = LedgerEvent.Kind.values()[record.readByte()];
+        String accountNumber = record.readUTF();
+        String otherAccountNumber = record.readBoolean() ? record.readUTF() : null;
+        long amountMinor = record.readLong();
+        String description = record.readBoolean() ? record.readUTF() : null;
+        long balanceAfterMinor = record.readLong();
+        long otherBalanceAfterMinor = record.readLong();
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+                (int) Math.floorMod(epochMicros, 1_000_000L) * 1000, ZoneOffset.UTC);
+        return new LedgerEvent(sequence, timestamp, kind, accountNumber, otherAccountNumber, amountMinor,
+                description, balanceAfterMinor, otherBalanceAfterMinor);
+    }
+
+    /**
+     * Writes an event to the end of the journal. The event is buffered in memory,
+     * and written and made durable by the next {@link #sync()}.
+     *
+     * @param event the event to append
+     */
+    void append(LedgerEvent event) {
+        try {
+            if (channel == null) {
+                openSegment(event.getSequence());
+            }
+            recordBytes.reset();
+            recordOut.writeLong(event.getSequence());
+            LocalDateTime timestamp = event.getTimestamp();
+            recordOut.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1000);
+            recordOut.writeByte(event.getKind().ordinal());
+            recordOut.writeUTF(event.getAccountNumber());
+            recordOut.writeBoolean(event.getOtherAccountNumber() != null);
+            if (event.getOtherAccountNumber() != null) {
+                recordOut.writeUTF(event.getOtherAccountNumber());
+            }
+            recordOut.writeLong(event.getAmountMinor());
+            recordOut.writeBoolean(event.getDescription() != null);
+            if (event.getDescription() != null) {
+                recordOut.writeUTF(event.getDescription());
+            }
+            recordOut.writeLong(event.getBalanceAfterMinor());
+            recordOut.writeLong(event.getOtherBalanceAfterMinor());
+
+            byte[] payload = recordBytes.toByteArray();
+            crc.reset();
+            crc.update(payload);
+            if (pending.remaining() < HEADER_BYTES + payload.length) {
+                pending = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_BYTES + payload.length))
+                        .put(pending.flip());
+            }
+            pending.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes all appended events with one write and makes them durable with one flush.
+     * If the current segment is full, the next append starts a new one.
+     */
+    void sync() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            pending.clear();
+            if (fsync) {
+                channel.force(false);
+            }
+            if (channel.position() >= segmentBytes) {
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        synchronized (segments) {
+            // A segment cut off to nothing on recovery is reused by the event it was meant to start with
+            if (segments.isEmpty() || !segments.get(segments.size() - 1).file().equals(file)) {
+                segments.add(new Segment(firstSequence, file));
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments whose events are all persisted to the database.
+     * The segment being written is never deleted.
+     *
+     * @param persistedSequence the sequence up to which all events are persisted
+     */
+    void release(long persistedSequence) {
+        List<Segment> released = new ArrayList<>();
+        synchronized (segments) {
+            // A segment is fully persisted when the next one starts at or before the first unpersisted event
+            while (segments.size() > 1 && segments.get(1).firstSequence() <= persistedSequence + 1) {
+                released.add(segments.remove(0));
+            }
+        }
+        for (Segment segment : released) {
+            try {
+                Files.deleteIfExists(segment.file());
+            } catch (IOException e) {
+                log.warn("Could not delete journal segment {}", segment.file(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        sync();
+        if (channel != null) {
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private record Segment(long firstSequence, Path file) {
+    }
+}
@@ -0,0 +1,317 @@
+package isolation_levels.engine;
+
+import io.micrometer.core.instrument.Counter;
+import isolation_levels.model.Account;
+import isolation_levels.model.EngineCheckpoint;
+import isolation_levels.model.Transaction;
+import isolation_levels.money.Money;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.EngineCheckpointRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.service.LedgerWriter;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind thread of the {@link LedgerEngine}.
+ * Journaled events are queued here and written to the database in batches: per shard, one transaction
+ * sets the final balance of every account the batch changed, inserts the ledger entries in JDBC batches
+ * and advances the shard's {@link EngineCheckpoint}. A failed batch is retried with a growing backoff;
+ * the legs a shard has already committed are skipped, so no entry is written twice. A batch the database
+ * rejects for good, such as on a constraint violation, is persisted event by event instead, and the event
+ * that is rejected on its own is logged, counted and skipped, so it cannot stop persistence: its ledger entries
+ * are dropped, but its balances are still written with the checkpoint that covers it, so the database agrees
+ * with the journal after a restart. Journal segments are released once all their events are persisted.
+ *
+ * @author JetBrains Junie
+ */
+final class LedgerPersister {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerPersister.class);
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final EngineCheckpointRepository checkpointRepository;
+    private final LedgerWriter ledgerWriter;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerJournal journal;
+    private final int batchSize;
+    private final long intervalNanos;
+    private final Counter skippedEvents;
+    private final long[] checkpoints;
+    private final BlockingQueue<LedgerEvent> queue = new LinkedBlockingQueue<>();
+    private volatile long persistedSequence;
+    private volatile boolean running;
+    private Thread thread;
+
+    LedgerPersister(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                    EngineCheckpointRepository checkpointRepository, LedgerWriter ledgerWriter,
+                    ShardRouter shardRouter, ShardTemplate shardTemplate, TransactionTemplate transactionTemplate,
+                    LedgerJournal journal, int batchSize, Duration interval, Counter skippedEvents) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.ledgerWriter = ledgerWriter;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.intervalNanos = interval.toNanos();
+        this.skippedEvents = skippedEvents;
+        this.checkpoints = new long[shardRouter.getShardCount()];
+    }
+
+    /**
+     * Reads the checkpoint of every shard. Must be called before recovery replays the journal.
+     *
+     * @return the sequence of the last event persisted to each shard, by shard index
+     */
+    long[] loadCheckpoints() {
+        for (int shard = 0; shard < checkpoints.length; shard++) {
+            int target = shard;
+            checkpoints[shard] = shardTemplate.onShard(shard, () -> transactionTemplate.execute(status ->
+                    checkpointRepository.findById(target).map(EngineCheckpoint::getSequence).orElse(0L)));
+        }
+        return checkpoints.clone();
+    }
+
+    /**
+     * Starts the persister thread.
+     *
+     * @param persistedSequence the sequence up to which all events are persisted
+     */
+    void start(long persistedSequence) {
+        this.persistedSequence = persistedSequence;
+        running = true;
+        thread = new Thread(this::run, "ledger-engine-persister");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues journaled events for persistence, in sequence order.
+     *
+     * @param events the events to persist
+     */
+    void enqueue(List<LedgerEvent> events) {
+        queue.addAll(events);
+    }
+
+    /**
+     * Returns the sequence up to which all events are persisted.
+     */
+    long getPersistedSequence() {
+        return persistedSequence;
+    }
+
+    /**
+     * Persists the queued events and stops the thread. Events that cannot be persisted
+     * stay in the journal and are persisted by the next recovery.
+     */
+    void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    private void run() {
+        List<LedgerEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                if (!nextBatch(batch)) {
+                    continue;
+                }
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Only reached when stopping, or when not even a checkpoint can be written; the journal keeps the events
+                log.error("Could not persist {} ledger engine events, leaving them to recovery", batch.size(), e);
+                return;
+            }
+            persistedSequence = batch.get(batch.size() - 1).getSequence();
+            journal.release(persistedSequence);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Collects up to a full batch, waiting at most the persist interval after the first event for more.
+     */
+    private boolean nextBatch(List<LedgerEvent> batch) throws InterruptedException {
+        LedgerEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + intervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            LedgerEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return true;
+    }
+
+    private void persist(List<LedgerEvent> batch) throws InterruptedException {
+        long sequence = batch.get(batch.size() - 1).getSequence();
+        try {
+            retry(sequence, () -> persistOnce(batch, sequence));
+        } catch (NonTransientDataAccessException e) {
+            if (batch.size() == 1) {
+                skip(batch.get(0), e);
+                return;
+            }
+            log.warn("Persisting ledger engine events {} to {} was rejected, persisting them one by one",
+                    batch.get(0).getSequence(), sequence, e);
+            for (LedgerEvent event : batch) {
+                persist(List.of(event));
+            }
+        }
+    }
+
+    /**
+     * Runs a database action until it succeeds, backing off between attempts. Errors that a retry
+     * cannot fix are thrown at once, as is any error once the persister is stopping.
+     */
+    private void retry(long sequence, Runnable action) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                action.run();
+                return;
+            } catch (NonTransientDataAccessException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    throw e;
+                }
+                long backoff = Math.min(MAX_BACKOFF_MILLIS, 10L << Math.min(attempt, 10));
+                log.warn("Persisting ledger engine events up to {} failed (attempt {}), retrying in {} ms",
+                        sequence, attempt, backoff, e);
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * Skips an event the database rejects: per shard, one transaction writes the balances the event left,
+     * without its ledger entries, and advances the checkpoint past it. Recovery does not replay the event
+     * once the checkpoint covers it, so its balances must be stored by then. If even the balances are rejected,
+     * the error is thrown and the event stays in the journal.
+     */
+    private void skip(LedgerEvent event, NonTransientDataAccessException cause) throws InterruptedException {
+        log.error("Skipping ledger engine event {} that the database rejects: {} of {} minor units, account {}, "
+                        + "other account {}, description '{}'", event.getSequence(), event.getKind(),
+                event.getAmountMinor(), event.getAccountNumber(), event.getOtherAccountNumber(),
+                event.getDescription(), cause);
+        skippedEvents.increment();
+
+        SortedMap<Integer, List<LedgerEvent.Leg>> legsByShard = legsByShard(List.of(event));
+        for (Map.Entry<Integer, List<LedgerEvent.Leg>> shardLegs : legsByShard.entrySet()) {
+            int shard = shardLegs.getKey();
+            retry(event.getSequence(), () -> shardTemplate.onShard(shard, () -> transactionTemplate.execute(status -> {
+                write(shard, shardLegs.getValue(), event.getSequence(), false);
+                return null;
+            })));
+            checkpoints[shard] = event.getSequence();
+        }
+    }
+
+    private void persistOnce(List<LedgerEvent> batch, long sequence) {
+        legsByShard(batch).forEach((shard, legs) -> {
+            shardTemplate.onShard(shard, () -> transactionTemplate.execute(status -> {
+                write(shard, legs, sequence, true);
+                return null;
+            }));
+            checkpoints[shard] = sequence;
+        });
+    }
+
+    /**
+     * Groups the legs of events by shard, without the ones a shard committed before a failed attempt or a restart.
+     */
+    private SortedMap<Integer, List<LedgerEvent.Leg>> legsByShard(List<LedgerEvent> events) {
+        SortedMap<Integer, List<LedgerEvent.Leg>> legsByShard = new TreeMap<>();
+        for (LedgerEvent event : events) {
+            for (LedgerEvent.Leg leg : event.legs()) {
+                int shard = shardRouter.shardOf(leg.accountNumber());
+                if (event.getSequence() > checkpoints[shard]) {
+                    legsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(leg);
+                }
+            }
+        }
+        return legsByShard;
+    }
+
+    /**
+     * Writes the final balances of the legs of one shard, their ledger entries if requested, and the checkpoint.
+     */
+    private void write(int shard, List<LedgerEvent.Leg> legs, long sequence, boolean withEntries) {
+        Map<String, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findAllByAccountNumberIn(
+                legs.stream().map(LedgerEvent.Leg::accountNumber).distinct().toList())) {
+            accounts.put(account.getAccountNumber(), account);
+        }
+
+        // The legs are in sequence order, so the last leg of an account carries its final balance
+        Map<Account, BigDecimal> balances = new LinkedHashMap<>();
+        List<Transaction> entries = new ArrayList<>(legs.size());
+        for (LedgerEvent.Leg leg : legs) {
+            Account account = accounts.get(leg.accountNumber());
+            if (account == null) {
+                log.warn("Skipping ledger engine event {} for deleted account {}",
+                        leg.event().getSequence(), leg.accountNumber());
+                continue;
+            }
+            balances.put(account, Money.ofMinor(leg.balanceAfterMinor()).toBigDecimal());
+            if (withEntries && leg.type() != null) {
+                Transaction transaction = new Transaction(Money.ofMinor(leg.event().getAmountMinor()).toBigDecimal(),
+                        leg.description(), leg.type());
+                transaction.setTimestamp(leg.event().getTimestamp());
+                transaction.setAccount(account);
+                entries.add(transaction);
+            }
+        }
+
+        balances.forEach(ledgerWriter::replaceBalance);
+        transactionRepository.saveAll(entries);
+        saveCheckpoint(shard, sequence);
+    }
+
+    private void saveCheckpoint(int shard, long sequence) {
+        EngineCheckpoint checkpoint = checkpointRepository.findById(shard)
+                .orElseGet(() -> new EngineCheckpoint(shard, 0));
+        checkpoint.setSequence(sequence);
+        checkpointRepository.save(checkpoint);
+    }
+}
@@ -0,0 +1,80 @@
+package isolation_levels.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer.
+ * Producers claim a cell by advancing the tail with a CAS and publish it by advancing the cell's sequence,
+ * so neither side ever takes a lock and the consumer reads cells in claim order.
+ *
+ * @param <T> the type of the items
+ * @author JetBrains Junie
+ */
+final class RingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param capacity the number of cells, a power of two
+     */
+    RingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.items = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an item, from any thread.
+     *
+     * @param item the item to add
+     * @return true if the item was added, false if the buffer is full
+     */
+    boolean offer(T item) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.lazySet(index, item);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            // Another producer claimed the cell first, so retry with the new tail
+        }
+    }
+
+    /**
+     * Removes the oldest published item, from the consumer thread only.
+     *
+     * @return the item, or null if no item is published
+     */
+    T poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        T item = items.get(index);
+        items.lazySet(index, null);
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return item;
+    }
+}
@@ -0,0 +1,24 @@
+package isolation_levels.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity ID that is generated by the application as a time-ordered 64-bit number.
+ * IDs are assigned before the INSERT, so Hibernate can batch inserts, unlike with
+ * {@code GenerationType.IDENTITY}.
+ *
+ * @author JetBrains Junie
+ * @see SnowflakeIdGenerator
+ */
+@IdGeneratorType(SnowflakeIdGenerator.class)
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SnowflakeId {
+}
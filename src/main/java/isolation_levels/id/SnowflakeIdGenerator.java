@@ -0,0 +1,103 @@
+package isolation_levels.id;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.time.Instant;
+import java.util.EnumSet;
+
+/**
+ * Generates time-ordered 64-bit IDs in the layout of Twitter's Snowflake:
+ * 41 bits of milliseconds since {@link #EPOCH}, 10 bits of node ID and 12 bits of sequence
+ * within the millisecond. IDs from different nodes never collide as long as every node of a
+ * deployment has its own node ID, set with {@code isolation-levels.id.node-id} (0 to 1023), which is required.
+ * <p>
+ * IDs of one node are strictly increasing, even if the system clock moves backwards: the generator
+ * then keeps counting from the last timestamp it used until the clock catches up.
+ *
+ * @author JetBrains Junie
+ */
+public class SnowflakeIdGenerator implements BeforeExecutionGenerator {
+
+    /**
+     * The Hibernate setting holding the node ID; see {@link isolation_levels.config.IdGenerationConfig}.
+     */
+    public static final String NODE_ID_SETTING = "isolation_levels.id.node_id";
+
+    /**
+     * The start of the timestamp range, which covers about 69 years from here.
+     */
+    public static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    static final int NODE_ID_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final long MAX_NODE_ID = (1L << NODE_ID_BITS) - 1;
+    static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private long lastTimestamp = -1L;
+    private long sequence;
+
+    /**
+     * Creates a generator for an ID annotated with {@link SnowflakeId}, reading the node ID from the Hibernate settings.
+     */
+    public SnowflakeIdGenerator(SnowflakeId config, Member member, CustomIdGeneratorCreationContext context) {
+        this(nodeId(context.getServiceRegistry().getService(ConfigurationService.class)));
+    }
+
+    /**
+     * Creates a generator for a node.
+     *
+     * @param nodeId the node ID, between 0 and 1023
+     */
+    public SnowflakeIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    private static long nodeId(ConfigurationService configurationService) {
+        Object nodeId = configurationService.getSettings().get(NODE_ID_SETTING);
+        if (nodeId == null) {
+            throw new IllegalStateException("Hibernate setting " + NODE_ID_SETTING + " is not set");
+        }
+        return Long.parseLong(nodeId.toString());
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return nextId();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    /**
+     * Returns the next ID of this node.
+     *
+     * @return a positive ID, greater than all IDs previously returned by this generator
+     */
+    public synchronized long nextId() {
+        long timestamp = Math.max(System.currentTimeMillis() - EPOCH, lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                // Sequence exhausted within this millisecond: borrow the next one
+                timestamp++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return (timestamp << (NODE_ID_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+}
@@ -0,0 +1,248 @@
+package isolation_levels.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import isolation_levels.model.IdempotencyRecord;
+import isolation_levels.repository.IdempotencyRecordRepository;
+import isolation_levels.sharding.ShardTemplate;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Makes requests idempotent when the client sends an {@value #IDEMPOTENCY_KEY_HEADER} header.
+ * The first request with a key is processed and its response stored; a repeat of the request gets the
+ * stored response, marked with an {@value #REPLAYED_HEADER} header, without being processed again.
+ * <p>
+ * Repeats are answered from the {@link IdempotencyStore} without a database round trip. Keys are also
+ * stored in the {@code idempotency_keys} table on the shard selected by the key, so they survive restarts
+ * and are shared between instances: the key's row is inserted before the request is processed, and its
+ * primary key lets only one request with the key through. The response is recorded in the row afterwards,
+ * with a single update by key.
+ * Recently completed keys are loaded into the store at startup.
+ * <p>
+ * A repeat that arrives while the request is still in progress gets 409 Conflict, and a key reused for
+ * a different request gets 422 Unprocessable Entity. If processing the request throws, the key is released,
+ * so the request can be retried. If the instance stops between processing a request and recording
+ * its response, the key stays in progress and is never processed again.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+public class IdempotencyService {
+
+    /** The request header carrying the idempotency key. */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    /** The response header marking a stored response returned for a repeated request. */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    /** The maximum length of an idempotency key. */
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyStore idempotencyStore;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ShardTemplate shardTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public IdempotencyService(IdempotencyStore idempotencyStore, IdempotencyRecordRepository idempotencyRecordRepository,
+                              ShardTemplate shardTemplate, PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper) {
+        this.idempotencyStore = idempotencyStore;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.shardTemplate = shardTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Loads the keys completed within the store's time to live from all shards into the store.
+     */
+    @PostConstruct
+    public void warmUp() {
+        LocalDateTime now = LocalDateTime.now();
+        List<IdempotencyRecord> records = shardTemplate.scatterGather("idempotency_warm_up",
+                () -> idempotencyRecordRepository.findByCompletedAtAfterOrderByCompletedAtDesc(
+                        now.minus(idempotencyStore.getTtl()), PageRequest.of(0, idempotencyStore.getMaxSize())));
+        for (IdempotencyRecord record : records) {
+            idempotencyStore.putIfAbsent(record.getIdempotencyKey(), toStoredResponse(record),
+                    Duration.between(record.getCompletedAt(), now));
+        }
+        log.info("Loaded {} idempotency keys", records.size());
+    }
+
+    /**
+     * Processes a request once per idempotency key.
+     *
+     * @param idempotencyKey the idempotency key sent by the client
+     * @param operation the name of the operation, so that a key cannot be reused across operations
+     * @param request the request body, to detect a key reused for a different request
+     * @param bodyType the type of the response body
+     * @param action the processing of the request
+     * @return the response of the action, the stored response if the request was already processed,
+     * 409 Conflict if it is in progress, 422 Unprocessable Entity if the key was used for a different request,
+     * or 400 Bad Request if the key is blank or too long
+     */
+    public <T> ResponseEntity<T> execute(String idempotencyKey, String operation, Map<String, String> request,
+                                         Class<T> bodyType, Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+        String requestHash = hash(operation, request);
+
+        // Fast path: the key is known to this instance
+        while (!idempotencyStore.reserve(idempotencyKey, requestHash)) {
+            Optional<StoredResponse> stored = idempotencyStore.get(idempotencyKey);
+            if (stored.isPresent()) {
+                return replay(stored.get(), requestHash, bodyType);
+            }
+        }
+
+        // The key may have been used on another instance or before a restart
+        try {
+            shardTemplate.onShardOf(idempotencyKey, () -> transactionTemplate.execute(status ->
+                    idempotencyRecordRepository.saveAndFlush(new IdempotencyRecord(idempotencyKey, operation, requestHash))));
+        } catch (DataIntegrityViolationException e) {
+            return replayRecorded(idempotencyKey, requestHash, bodyType);
+        } catch (RuntimeException e) {
+            idempotencyStore.remove(idempotencyKey);
+            throw e;
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(idempotencyKey);
+            throw e;
+        }
+
+        StoredResponse stored = new StoredResponse(requestHash, response.getStatusCode().value(), toJson(response.getBody()));
+        idempotencyStore.put(idempotencyKey, stored);
+        try {
+            LocalDateTime completedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            int updated = shardTemplate.onShardOf(idempotencyKey, () -> transactionTemplate.execute(status ->
+                    idempotencyRecordRepository.complete(idempotencyKey, stored.statusCode(), stored.body(), completedAt)));
+            if (updated == 0) {
+                log.warn("Could not record the response of idempotency key {}: the key is not recorded", idempotencyKey);
+            }
+        } catch (RuntimeException e) {
+            // The request has been processed, so its response is returned; the key stays in progress in the table
+            log.warn("Could not record the response of idempotency key {}", idempotencyKey, e);
+        }
+        return response;
+    }
+
+    /**
+     * Answers a request whose key is already in the {@code idempotency_keys} table.
+     */
+    private <T> ResponseEntity<T> replayRecorded(String idempotencyKey, String requestHash, Class<T> bodyType) {
+        Optional<IdempotencyRecord> record = shardTemplate.onShardOf(idempotencyKey,
+                () -> transactionTemplate.execute(status -> idempotencyRecordRepository.findById(idempotencyKey)));
+        if (record.isEmpty() || !record.get().isCompleted()) {
+            idempotencyStore.remove(idempotencyKey);
+            return record.isPresent() && !record.get().getRequestHash().equals(requestHash)
+                    ? ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build()
+                    : ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        StoredResponse stored = toStoredResponse(record.get());
+        idempotencyStore.put(idempotencyKey, stored);
+        return replay(stored, requestHash, bodyType);
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse stored, String requestHash, Class<T> bodyType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build();
+        }
+        if (!stored.isCompleted()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.status(stored.statusCode())
+                .header(REPLAYED_HEADER, "true")
+                .body(fromJson(stored.body(), bodyType));
+    }
+
+    /**
+     * Deletes the row of a key whose request failed, so that the request can be retried.
+     */
+    private void release(String idempotencyKey) {
+        try {
+            shardTemplate.onShardOf(idempotencyKey, () -> transactionTemplate.execute(status -> {
+                idempotencyRecordRepository.deleteById(idempotencyKey);
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Could not release idempotency key {}", idempotencyKey, e);
+        } finally {
+            idempotencyStore.remove(idempotencyKey);
+        }
+    }
+
+    private StoredResponse toStoredResponse(IdempotencyRecord record) {
+        return new StoredResponse(record.getRequestHash(), record.getStatusCode(), record.getResponseBody());
+    }
+
+    private String toJson(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response body", e);
+        }
+    }
+
+    private <T> T fromJson(String body, Class<T> bodyType) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(body, bodyType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not deserialize stored response body", e);
+        }
+    }
+
+    /**
+     * Hashes the operation and the request body. The body is hashed as JSON with the fields in a fixed order,
+     * which quotes and escapes every key and value, so that no two different requests share their hashed form.
+     */
+    private String hash(String operation, Map<String, String> request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(objectMapper.writeValueAsBytes(new TreeMap<>(request)));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize request body", e);
+        }
+    }
+}
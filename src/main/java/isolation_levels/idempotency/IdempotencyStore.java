@@ -0,0 +1,176 @@
+package isolation_levels.idempotency;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded in-process store of idempotency keys and the responses of their requests.
+ * Lookups are a single read of a concurrent hash map, so a repeated request is answered without
+ * locking and without a database round trip. Entries expire after a fixed time to live, and the store
+ * never holds more than the configured number of entries: when it is full, the entry stored first is evicted.
+ * Storage order is kept in a queue, so an eviction costs O(1) instead of a scan of the store. A key that
+ * is no longer in the store, even one whose request is still in progress, is still deduplicated by the
+ * {@code idempotency_keys} table.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+public class IdempotencyStore {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Entries in storage order; entries that were replaced, removed or expired stay queued until they are polled
+    private final Queue<Entry> storageOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    @Autowired
+    public IdempotencyStore(@Value("${isolation-levels.idempotency.max-size:100000}") int maxSize,
+                            @Value("${isolation-levels.idempotency.ttl:PT24H}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Returns the stored response for a key if it has not expired.
+     *
+     * @param idempotencyKey the idempotency key
+     * @return an Optional containing the stored response, or empty if the key is not in the store
+     */
+    public Optional<StoredResponse> get(String idempotencyKey) {
+        Entry entry = entries.get(idempotencyKey);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(idempotencyKey, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.response());
+    }
+
+    /**
+     * Stores a key for a request that is in progress, unless the key is already in the store.
+     *
+     * @param idempotencyKey the idempotency key
+     * @param requestHash the hash of the request
+     * @return true if the key was stored, false if another request holds it
+     */
+    public boolean reserve(String idempotencyKey, String requestHash) {
+        Entry entry = new Entry(idempotencyKey, StoredResponse.inProgress(requestHash), System.nanoTime() + ttlNanos);
+        Entry current = entries.putIfAbsent(idempotencyKey, entry);
+        boolean stored = current == null
+                || current.isExpired(System.nanoTime()) && entries.replace(idempotencyKey, current, entry);
+        if (stored) {
+            added(entry);
+        }
+        return stored;
+    }
+
+    /**
+     * Stores the response of a key, replacing its in-progress entry.
+     *
+     * @param idempotencyKey the idempotency key
+     * @param response the response of the request
+     */
+    public void put(String idempotencyKey, StoredResponse response) {
+        Entry entry = new Entry(idempotencyKey, response, System.nanoTime() + ttlNanos);
+        entries.put(idempotencyKey, entry);
+        added(entry);
+    }
+
+    /**
+     * Stores the response of a key that was completed some time ago, if the key is not in the store yet.
+     *
+     * @param idempotencyKey the idempotency key
+     * @param response the response of the request
+     * @param age the time since the request was completed
+     */
+    public void putIfAbsent(String idempotencyKey, StoredResponse response, Duration age) {
+        long remainingNanos = ttlNanos - age.toNanos();
+        if (remainingNanos <= 0) {
+            return;
+        }
+        Entry entry = new Entry(idempotencyKey, response, System.nanoTime() + remainingNanos);
+        if (entries.putIfAbsent(idempotencyKey, entry) == null) {
+            added(entry);
+        }
+    }
+
+    /**
+     * Removes a key, so that its request can be made again.
+     *
+     * @param idempotencyKey the idempotency key
+     */
+    public void remove(String idempotencyKey) {
+        entries.remove(idempotencyKey);
+    }
+
+    /**
+     * Returns the number of stored keys, including expired ones that have not been removed yet.
+     *
+     * @return the number of store entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of stored keys.
+     *
+     * @return the maximum size of the store
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the time a key stays in the store after its request.
+     *
+     * @return the time to live of the entries
+     */
+    public Duration getTtl() {
+        return Duration.ofNanos(ttlNanos);
+    }
+
+    private void added(Entry entry) {
+        storageOrder.offer(entry);
+        queued.incrementAndGet();
+        trim();
+    }
+
+    /**
+     * Evicts the oldest entries while the store is over its maximum size, and drops queued entries
+     * that are no longer stored once the queue holds twice as many entries as the store may.
+     */
+    private void trim() {
+        while (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+            Entry oldest = storageOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            // Only removes the key if it still maps to this entry, not a newer one
+            entries.remove(oldest.idempotencyKey(), oldest);
+        }
+    }
+
+    /**
+     * A stored response with its key and expiry time.
+     */
+    private record Entry(String idempotencyKey, StoredResponse response, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
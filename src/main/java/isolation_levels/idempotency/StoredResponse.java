@@ -0,0 +1,31 @@
+package isolation_levels.idempotency;
+
+/**
+ * The response of a request made with an idempotency key, as stored for repeats of the request.
+ *
+ * @param requestHash the hash of the request, to detect a key reused for a different request
+ * @param statusCode the HTTP status code of the response, or null while the request is in progress
+ * @param body the response body as JSON, or null if the response has no body
+ * @author JetBrains Junie
+ */
+public record StoredResponse(String requestHash, Integer statusCode, String body) {
+
+    /**
+     * Creates the entry of a request that is still in progress.
+     *
+     * @param requestHash the hash of the request
+     * @return a response without a status code
+     */
+    public static StoredResponse inProgress(String requestHash) {
+        return new StoredResponse(requestHash, null, null);
+    }
+
+    /**
+     * Checks whether the request has been processed.
+     *
+     * @return true if the response is known, false if the request is in progress
+     */
+    public boolean isCompleted() {
+        return statusCode != null;
+    }
+}
@@ -1,7 +1,9 @@
 package isolation_levels.mapper;
 
 import isolation_levels.dto.AccountDTO;
+import isolation_levels.dto.TransactionCursor;
 import isolation_levels.dto.TransactionDTO;
+import isolation_levels.dto.TransactionPageDTO;
 import isolation_levels.model.Account;
 import isolation_levels.model.Transaction;
 
@@ -90,4 +92,28 @@ public class EntityDTOMapper {
             .map(EntityDTOMapper::toTransactionDTO)
             .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    /**
+     * Converts a page of TransactionDTOs to a TransactionPageDTO.
+     * The transactions are expected to be fetched with one extra row beyond the page size;
+     * if that row is present, a cursor to the next page is included.
+     *
+     * @param transactions up to pageSize + 1 TransactionDTOs in page order
+     * @param pageSize the number of transactions to include in the page
+     * @return the corresponding TransactionPageDTO
+     */
+    public static TransactionPageDTO toTransactionPageDTO(List<TransactionDTO> transactions, int pageSize) {
+        if (transactions == null) {
+            return new TransactionPageDTO(List.of(), null);
+        }
+        
+        boolean hasMore = transactions.size() > pageSize;
+        List<TransactionDTO> page = hasMore ? transactions.subList(0, pageSize) : transactions;
+        String nextCursor = null;
+        if (hasMore) {
+            TransactionDTO last = page.get(page.size() - 1);
+            nextCursor = new TransactionCursor(last.getTimestamp(), last.getId()).encode();
+        }
+        return new TransactionPageDTO(page, nextCursor);
+    }
+}
@@ -1,6 +1,8 @@
 package isolation_levels.model;
 
+import isolation_levels.id.SnowflakeId;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Formula;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
@@ -9,6 +11,10 @@ import java.util.List;
  * Entity representing a bank account.
  * This entity is used to demonstrate transaction isolation levels
  * in a banking scenario.
+ * <p>
+ * The balance of an account with a slot count above zero is split over that many {@link BalanceSlot} rows,
+ * and {@link #getBalance()} returns the balance column plus the sum of the slots, as read with the account.
+ * Balance changes of split accounts must go through the {@code LedgerWriter}, which updates the slots.
  *
  * @author JetBrains Junie
  */
@@ -17,7 +23,7 @@ import java.util.List;
 public class Account {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -29,6 +35,14 @@ public class Account {
     @Column(nullable = false)
     private BigDecimal balance;
 
+    @Column(name = "slot_count", nullable = false)
+    private int slotCount;
+
+    // Only evaluated for split accounts, so plain accounts are read without the subquery
+    @Formula("(case when slot_count = 0 then 0 " +
+             "else (select coalesce(sum(s.balance), 0) from balance_slots s where s.account_id = id) end)")
+    private BigDecimal slotBalance;
+
     @Version
     private Long version;
 
@@ -78,14 +92,41 @@ public class Account {
         this.ownerName = ownerName;
     }
 
+    /**
+     * Returns the balance of the account, including the balance of its slots if it is split.
+     *
+     * @return the total balance
+     */
     public BigDecimal getBalance() {
-        return balance;
+        return slotCount == 0 || slotBalance == null ? balance : balance.add(slotBalance);
     }
 
     public void setBalance(BigDecimal balance) {
         this.balance = balance;
     }
 
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public void setSlotCount(int slotCount) {
+        this.slotCount = slotCount;
+    }
+
+    public BigDecimal getSlotBalance() {
+        return slotBalance;
+    }
+
+    /**
+     * Sets the sum of the slot balances as known in memory.
+     * The value is never written; the {@code LedgerWriter} keeps it current after changing the slots.
+     *
+     * @param slotBalance the sum of the slot balances
+     */
+    public void setSlotBalance(BigDecimal slotBalance) {
+        this.slotBalance = slotBalance;
+    }
+
     public Long getVersion() {
         return version;
     }
@@ -118,7 +159,7 @@ public class Account {
                 "id=" + id +
                 ", accountNumber='" + accountNumber + '\'' +
                 ", ownerName='" + ownerName + '\'' +
-                ", balance=" + balance +
+                ", balance=" + getBalance() +
                 '}';
     }
 }
\ No newline at end of file
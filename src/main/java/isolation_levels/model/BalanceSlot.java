@@ -0,0 +1,94 @@
+package isolation_levels.model;
+
+import isolation_levels.id.SnowflakeId;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * Entity representing one slot of a split account balance.
+ * The balance of a split account is spread over several slot rows, so concurrent balance
+ * changes update different rows instead of queueing on the single account row.
+ *
+ * @author JetBrains Junie
+ */
+@Entity
+@Table(name = "balance_slots", uniqueConstraints = {
+        // Slots are addressed by account and index, which also sums an account's slots from the index
+        @UniqueConstraint(name = "uk_balance_slots_account_slot", columnNames = {"account_id", "slot"})
+})
+public class BalanceSlot {
+
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    @Column(nullable = false)
+    private int slot;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    // Default constructor required by JPA
+    public BalanceSlot() {
+    }
+
+    /**
+     * Creates a new slot of an account's balance.
+     *
+     * @param account the split account
+     * @param slot the index of the slot, from 0 to the account's slot count - 1
+     * @param balance the initial balance of the slot
+     */
+    public BalanceSlot(Account account, int slot, BigDecimal balance) {
+        this.account = account;
+        this.slot = slot;
+        this.balance = balance;
+    }
+
+    // Getters and setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public void setAccount(Account account) {
+        this.account = account;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+
+    @Override
+    public String toString() {
+        return "BalanceSlot{" +
+                "id=" + id +
+                ", slot=" + slot +
+                ", balance=" + balance +
+                '}';
+    }
+}
@@ -0,0 +1,59 @@
+package isolation_levels.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Entity recording how far the ledger engine's journal has been persisted to a shard.
+ * The checkpoint is written in the same transaction as the balances and ledger entries it covers,
+ * so on recovery every journal event after it is known to be missing from the shard, and every event
+ * up to it is known to be there.
+ *
+ * @author JetBrains Junie
+ */
+@Entity
+@Table(name = "ledger_engine_checkpoints")
+public class EngineCheckpoint {
+
+    @Id
+    private Integer shard;
+
+    @Column(nullable = false)
+    private long sequence;
+
+    // Default constructor required by JPA
+    public EngineCheckpoint() {
+    }
+
+    /**
+     * Creates a new checkpoint for a shard.
+     *
+     * @param shard the shard index
+     * @param sequence the sequence of the last journal event persisted to the shard
+     */
+    public EngineCheckpoint(int shard, long sequence) {
+        this.shard = shard;
+        this.sequence = sequence;
+    }
+
+    // Getters and setters
+
+    public Integer getShard() {
+        return shard;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "EngineCheckpoint{" +
+                "shard=" + shard +
+                ", sequence=" + sequence +
+                '}';
+    }
+}
@@ -0,0 +1,117 @@
+package isolation_levels.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Entity recording a request made with an idempotency key, and the response it got.
+ * The row is inserted before the request is processed, so the primary key on the idempotency key
+ * lets only one of several concurrent requests with the same key through. The response is filled in
+ * once the request has been processed; until then, the request is in progress.
+ * Records are stored on the shard selected by their idempotency key.
+ *
+ * @author JetBrains Junie
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        // Recently completed keys are loaded into the in-memory store at startup
+        @Index(name = "idx_idempotency_keys_completed_at", columnList = "completed_at")
+})
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private String operation;
+
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    private Integer statusCode;
+
+    @Lob
+    private String responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime completedAt;
+
+    @Version
+    private Long version;
+
+    // Default constructor required by JPA
+    public IdempotencyRecord() {
+    }
+
+    /**
+     * Creates a new record for a request that is about to be processed.
+     *
+     * @param idempotencyKey the idempotency key sent by the client
+     * @param operation the name of the operation the key was used for
+     * @param requestHash the hash of the request, to detect a key reused for a different request
+     */
+    public IdempotencyRecord(String idempotencyKey, String operation, String requestHash) {
+        this.idempotencyKey = idempotencyKey;
+        this.operation = operation;
+        this.requestHash = requestHash;
+        this.createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Checks whether the response of the request has been recorded.
+     *
+     * @return true if the request has been processed, false if it is still in progress
+     */
+    public boolean isCompleted() {
+        return statusCode != null;
+    }
+
+    // Getters
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public Integer getStatusCode() {
+        return statusCode;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyRecord{" +
+                "idempotencyKey='" + idempotencyKey + '\'' +
+                ", operation='" + operation + '\'' +
+                ", statusCode=" + statusCode +
+                ", createdAt=" + createdAt +
+                ", completedAt=" + completedAt +
+                '}';
+    }
+}
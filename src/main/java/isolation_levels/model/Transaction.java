@@ -1,8 +1,10 @@
 package isolation_levels.model;
 
+import isolation_levels.id.SnowflakeId;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 /**
  * Entity representing a financial transaction.
@@ -12,11 +14,19 @@ import java.time.LocalDateTime;
  * @author JetBrains Junie
  */
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        // History queries filter on the account and sort by timestamp and ID (newest first); the remaining
+        // columns cover the DTO projections, so history pages are read from the index alone
+        @Index(name = "idx_transactions_account_timestamp_covering",
+               columnList = "account_id, timestamp DESC, id DESC, amount, type, description")
+}, uniqueConstraints = {
+        // A transfer posts at most one entry of each type per shard, which makes replayed saga steps idempotent
+        @UniqueConstraint(name = "uk_transactions_transfer_type", columnNames = {"transfer_id", "type"})
+})
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -36,6 +46,9 @@ public class Transaction {
     @Column(nullable = false)
     private TransactionType type;
 
+    @Column(name = "transfer_id", length = 36)
+    private String transferId;
+
     // Default constructor required by JPA
     public Transaction() {
     }
@@ -51,7 +64,8 @@ public class Transaction {
         this.amount = amount;
         this.description = description;
         this.type = type;
-        this.timestamp = LocalDateTime.now();
+        // Truncate to the precision of the timestamp column so that in-memory and stored values compare equal
+        this.timestamp = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     // Getters and setters
@@ -104,6 +118,14 @@ public class Transaction {
         this.type = type;
     }
 
+    public String getTransferId() {
+        return transferId;
+    }
+
+    public void setTransferId(String transferId) {
+        this.transferId = transferId;
+    }
+
     @Override
     public String toString() {
         return "Transaction{" +
@@ -0,0 +1,136 @@
+package isolation_levels.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * Entity recording the progress of a transfer between accounts on different shards.
+ * The saga is stored on the shard of the source account, in the same local transaction as the debit,
+ * so a debited transfer is never lost and can always be completed or compensated.
+ *
+ * @author JetBrains Junie
+ */
+@Entity
+@Table(name = "transfer_sagas", indexes = {
+        // The recovery worker looks for sagas that have been stuck in a state for a while
+        @Index(name = "idx_transfer_sagas_state_updated", columnList = "state, updated_at")
+})
+public class TransferSaga {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false)
+    private String fromAccountNumber;
+
+    @Column(nullable = false)
+    private String toAccountNumber;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private State state;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Version
+    private Long version;
+
+    // Default constructor required by JPA
+    public TransferSaga() {
+    }
+
+    /**
+     * Creates a new saga for a transfer whose source account has just been debited.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @param amount the amount to transfer
+     */
+    public TransferSaga(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        this.id = UUID.randomUUID().toString();
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+        this.state = State.DEBITED;
+        this.createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        this.updatedAt = createdAt;
+    }
+
+    /**
+     * Moves the saga to a new state.
+     *
+     * @param state the new state
+     */
+    public void transitionTo(State state) {
+        this.state = state;
+        this.updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    // Getters
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFromAccountNumber() {
+        return fromAccountNumber;
+    }
+
+    public String getToAccountNumber() {
+        return toAccountNumber;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferSaga{" +
+                "id='" + id + '\'' +
+                ", fromAccountNumber='" + fromAccountNumber + '\'' +
+                ", toAccountNumber='" + toAccountNumber + '\'' +
+                ", amount=" + amount +
+                ", state=" + state +
+                '}';
+    }
+
+    /**
+     * Enum representing the state of a transfer saga.
+     */
+    public enum State {
+        /** The source account is debited; the target account still has to be credited. */
+        DEBITED,
+        /** The target account is credited; the transfer is done. */
+        COMPLETED,
+        /** The target account could not be credited and the debit has been refunded. */
+        COMPENSATED
+    }
+}
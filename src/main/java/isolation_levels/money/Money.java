@@ -0,0 +1,230 @@
+package isolation_levels.money;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount of money stored as a {@code long} number of minor units (cents).
+ * All amounts have a fixed scale of {@value #SCALE}, so arithmetic and comparisons are
+ * plain {@code long} operations instead of {@link BigDecimal} allocations.
+ * Arithmetic that would overflow throws {@link ArithmeticException} instead of wrapping around.
+ * <p>
+ * The static methods work on raw minor units and allocate nothing, so hot paths
+ * that keep balances as {@code long} can check and update them without creating objects.
+ * In JSON an amount is written as an exact decimal string such as {@code "12.34"}.
+ *
+ * @author JetBrains Junie
+ */
+public final class Money implements Comparable<Money> {
+
+    /**
+     * The number of fractional digits of every amount.
+     */
+    public static final int SCALE = 2;
+
+    public static final Money ZERO = new Money(0L);
+
+    private static final long MINOR_UNITS_PER_UNIT = 100L;
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    /**
+     * Creates an amount from minor units.
+     *
+     * @param minorUnits the amount in minor units (cents)
+     * @return the amount
+     */
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0L ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Converts a {@link BigDecimal} to an amount.
+     *
+     * @param amount the amount, with at most {@value #SCALE} fractional digits
+     * @return the amount
+     * @throws ArithmeticException if the amount has more fractional digits or does not fit in a {@code long}
+     */
+    public static Money of(BigDecimal amount) {
+        return ofMinor(amount.setScale(SCALE).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Parses an amount such as {@code "12.34"}, {@code "-5"} or {@code "0.5"}.
+     *
+     * @param text the amount, with at most {@value #SCALE} fractional digits
+     * @return the amount
+     * @throws NumberFormatException if the text is not a valid amount
+     * @throws ArithmeticException if the amount does not fit in a {@code long}
+     */
+    @JsonCreator
+    public static Money parse(String text) {
+        return ofMinor(parseMinor(text));
+    }
+
+    /**
+     * Parses an amount into minor units without creating intermediate objects.
+     *
+     * @param text the amount, with at most {@value #SCALE} fractional digits
+     * @return the amount in minor units
+     * @throws NumberFormatException if the text is not a valid amount
+     * @throws ArithmeticException if the amount does not fit in a {@code long}
+     */
+    public static long parseMinor(String text) {
+        if (text == null || text.isEmpty()) {
+            throw new NumberFormatException("Empty amount");
+        }
+
+        int length = text.length();
+        int index = 0;
+        boolean negative = text.charAt(0) == '-';
+        if (negative || text.charAt(0) == '+') {
+            index++;
+        }
+
+        long units = 0L;
+        int integerDigits = 0;
+        while (index < length && text.charAt(index) != '.') {
+            units = Math.addExact(Math.multiplyExact(units, 10L), digit(text, index));
+            integerDigits++;
+            index++;
+        }
+
+        long fraction = 0L;
+        int fractionDigits = 0;
+        if (index < length) {
+            index++;
+            while (index < length) {
+                if (fractionDigits == SCALE) {
+                    throw new NumberFormatException("Too many fractional digits: " + text);
+                }
+                fraction = fraction * 10L + digit(text, index);
+                fractionDigits++;
+                index++;
+            }
+            if (fractionDigits == 0) {
+                throw new NumberFormatException("Missing fractional digits: " + text);
+            }
+        }
+        if (integerDigits == 0 && fractionDigits == 0) {
+            throw new NumberFormatException("Missing digits: " + text);
+        }
+        for (int i = fractionDigits; i < SCALE; i++) {
+            fraction *= 10L;
+        }
+
+        long minorUnits = Math.addExact(Math.multiplyExact(units, MINOR_UNITS_PER_UNIT), fraction);
+        return negative ? Math.negateExact(minorUnits) : minorUnits;
+    }
+
+    private static int digit(String text, int index) {
+        char c = text.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        return c - '0';
+    }
+
+    /**
+     * Adds two amounts in minor units.
+     *
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long add(long minorUnits, long otherMinorUnits) {
+        return Math.addExact(minorUnits, otherMinorUnits);
+    }
+
+    /**
+     * Subtracts an amount in minor units from another.
+     *
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long subtract(long minorUnits, long otherMinorUnits) {
+        return Math.subtractExact(minorUnits, otherMinorUnits);
+    }
+
+    /**
+     * Checks whether a balance in minor units covers a debit in minor units.
+     *
+     * @param balanceMinorUnits the balance
+     * @param amountMinorUnits the amount to debit
+     * @return true if the balance minus the amount is not negative
+     */
+    public static boolean covers(long balanceMinorUnits, long amountMinorUnits) {
+        return balanceMinorUnits >= amountMinorUnits;
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(add(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(subtract(minorUnits, other.minorUnits));
+    }
+
+    public Money negate() {
+        return ofMinor(Math.negateExact(minorUnits));
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0L;
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0L;
+    }
+
+    public boolean covers(Money amount) {
+        return covers(minorUnits, amount.minorUnits);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        return minorUnits == ((Money) o).minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    /**
+     * Formats the amount with exactly {@value #SCALE} fractional digits, e.g. {@code "-0.05"}.
+     */
+    @JsonValue
+    @Override
+    public String toString() {
+        long units = Math.abs(minorUnits / MINOR_UNITS_PER_UNIT);
+        long cents = Math.abs(minorUnits % MINOR_UNITS_PER_UNIT);
+        StringBuilder builder = new StringBuilder(24);
+        if (minorUnits < 0L) {
+            builder.append('-');
+        }
+        builder.append(units).append('.');
+        if (cents < 10L) {
+            builder.append('0');
+        }
+        return builder.append(cents).toString();
+    }
+}
@@ -0,0 +1,25 @@
+package isolation_levels.money;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * JPA converter that stores a {@link Money} attribute as a {@code BIGINT} column of minor units.
+ * It is not applied automatically; an attribute opts in with
+ * {@code @Convert(converter = MoneyConverter.class)}.
+ *
+ * @author JetBrains Junie
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Money attribute) {
+        return attribute == null ? null : attribute.getMinorUnits();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(Long dbData) {
+        return dbData == null ? null : Money.ofMinor(dbData);
+    }
+}
@@ -0,0 +1,322 @@
+package isolation_levels.pipeline;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.dto.PaymentDTO;
+import isolation_levels.dto.PaymentOutcomeDTO;
+import isolation_levels.dto.TransferSubmissionDTO;
+import isolation_levels.service.TransactionService;
+import isolation_levels.service.TransferService;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Group-commit pipeline for transfers submitted asynchronously.
+ * Submitted transfers go onto a bounded queue and get an ID at once; workers take up to a group's worth
+ * of transfers, waiting at most the max wait after the first one, and apply each shard's share of the group
+ * in one transaction ({@link TransactionService#transferMoneyInGroup}), so the cost of the commit is shared
+ * by the whole group. Each transfer still succeeds or fails on its own, by the rules of
+ * {@link TransactionService#transferMoney}. The number of transfers per group is recorded in the
+ * {@code isolation_levels.pipeline.group_size} summary.
+ * <p>
+ * Transfers across shards are passed to the {@link TransferService} one by one. If a group transaction fails, its transfers are retried one by one too.
+ * The status of a submission is kept in memory for the retention period after it finishes, for at most the
+ * configured number of submissions; a queued transfer is not durable, so it is lost if the instance stops
+ * before its group commits. Invalid transfers are answered at once and not kept.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+public class TransferPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferPipeline.class);
+    private static final String GROUP_SIZE_SUMMARY = "isolation_levels.pipeline.group_size";
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final TransactionService transactionService;
+    private final TransferService transferService;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+    private final DistributionSummary groupSizeSummary;
+    private final BlockingQueue<Submission> queue;
+    private final int maxGroupSize;
+    private final long maxWaitNanos;
+    private final long retentionNanos;
+    private final int workerCount;
+    private final int maxSubmissions;
+    private final ConcurrentMap<String, Submission> submissions = new ConcurrentHashMap<>();
+    private final AtomicLong nextEviction = new AtomicLong(System.nanoTime());
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    @Autowired
+    public TransferPipeline(TransactionService transactionService, TransferService transferService,
+                            ShardRouter shardRouter, ShardTemplate shardTemplate, MeterRegistry meterRegistry,
+                            @Value("${isolation-levels.pipeline.queue-capacity:100000}") int queueCapacity,
+                            @Value("${isolation-levels.pipeline.max-group-size:500}") int maxGroupSize,
+                            @Value("${isolation-levels.pipeline.max-wait:PT0.005S}") Duration maxWait,
+                            @Value("${isolation-levels.pipeline.workers:4}") int workerCount,
+                            @Value("${isolation-levels.pipeline.retention:PT1M}") Duration retention,
+                            @Value("${isolation-levels.pipeline.max-submissions:200000}") int maxSubmissions) {
+        this.transactionService = transactionService;
+        this.transferService = transferService;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+        this.groupSizeSummary = DistributionSummary.builder(GROUP_SIZE_SUMMARY).register(meterRegistry);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxGroupSize = maxGroupSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.retentionNanos = retention.toNanos();
+        this.workerCount = workerCount;
+        this.maxSubmissions = maxSubmissions;
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "transfer-pipeline-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::runWorker);
+        }
+    }
+
+    /**
+     * Submits a transfer for asynchronous processing. Invalid transfers are failed at once, without being
+     * queued or kept, so their status cannot be polled later.
+     *
+     * @param payment the transfer to apply
+     * @return the queued submission, or empty if the queue is full or too many submissions are kept
+     */
+    public Optional<TransferSubmissionDTO> submit(PaymentDTO payment) {
+        Submission submission = new Submission(UUID.randomUUID().toString(), payment);
+        if (!isValid(payment)) {
+            complete(submission, TransferSubmissionDTO.Status.FAILED, PaymentOutcomeDTO.Outcome.INVALID);
+            return Optional.of(submission.toDTO());
+        }
+        if (!running || submissions.size() >= maxSubmissions) {
+            return Optional.empty();
+        }
+        submissions.put(submission.id, submission);
+        if (!queue.offer(submission)) {
+            submissions.remove(submission.id);
+            return Optional.empty();
+        }
+        return Optional.of(submission.toDTO());
+    }
+
+    /**
+     * Returns the status of a submitted transfer.
+     *
+     * @param id the ID returned by {@link #submit}
+     * @return the submission, or empty if the ID is unknown or the submission finished longer than the retention period ago
+     */
+    public Optional<TransferSubmissionDTO> getSubmission(String id) {
+        return Optional.ofNullable(submissions.get(id)).map(Submission::toDTO);
+    }
+
+    private void runWorker() {
+        List<Submission> group = new ArrayList<>(maxGroupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                if (nextGroup(group)) {
+                    groupSizeSummary.record(group.size());
+                    process(group);
+                    group.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            evictExpired();
+        }
+    }
+
+    /**
+     * Collects up to a full group, waiting at most the max wait after the first transfer for more.
+     */
+    private boolean nextGroup(List<Submission> group) throws InterruptedException {
+        Submission first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        group.add(first);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (group.size() < maxGroupSize) {
+            queue.drainTo(group, maxGroupSize - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() >= maxGroupSize || remaining <= 0) {
+                break;
+            }
+            Submission next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+        }
+        return true;
+    }
+
+    private void process(List<Submission> group) {
+        SortedMap<Integer, List<Submission>> groupsByShard = new TreeMap<>();
+        List<Submission> singles = new ArrayList<>();
+        for (Submission submission : group) {
+            int shard = shardRouter.shardOf(submission.payment.getFromAccountNumber());
+            if (shard != shardRouter.shardOf(submission.payment.getToAccountNumber())) {
+                singles.add(submission);
+            } else {
+                groupsByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(submission);
+            }
+        }
+
+        groupsByShard.forEach(this::commitGroup);
+        singles.forEach(this::transferSingle);
+    }
+
+    private void commitGroup(int shard, List<Submission> group) {
+        List<PaymentDTO> payments = group.stream().map(submission -> submission.payment).toList();
+        List<PaymentOutcomeDTO> outcomes;
+        try {
+            outcomes = shardTemplate.onShard(shard, () -> transactionService.transferMoneyInGroup(payments));
+        } catch (RuntimeException e) {
+            // A split account was drained concurrently, or the retries ran out: give each transfer its own transaction
+            log.warn("Group of {} transfers failed, applying them one by one", group.size(), e);
+            group.forEach(this::transferSingle);
+            return;
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            PaymentOutcomeDTO.Outcome outcome = outcomes.get(i).getOutcome();
+            complete(group.get(i), outcome == PaymentOutcomeDTO.Outcome.APPLIED
+                    ? TransferSubmissionDTO.Status.COMPLETED
+                    : TransferSubmissionDTO.Status.FAILED, outcome);
+        }
+    }
+
+    private void transferSingle(Submission submission) {
+        PaymentDTO payment = submission.payment;
+        TransferService.TransferStatus status;
+        try {
+            status = transferService.transfer(payment.getFromAccountNumber(), payment.getToAccountNumber(), payment.getAmount());
+        } catch (RuntimeException e) {
+            log.warn("Transfer {} failed", submission.id, e);
+            complete(submission, TransferSubmissionDTO.Status.FAILED, PaymentOutcomeDTO.Outcome.NOT_APPLIED);
+            return;
+        }
+        switch (status) {
+            case COMPLETED -> complete(submission, TransferSubmissionDTO.Status.COMPLETED, PaymentOutcomeDTO.Outcome.APPLIED);
+            case PENDING -> complete(submission, TransferSubmissionDTO.Status.PENDING, PaymentOutcomeDTO.Outcome.APPLIED);
+            case FAILED -> complete(submission, TransferSubmissionDTO.Status.FAILED, failureOf(payment));
+        }
+    }
+
+    /**
+     * Finds why a valid transfer failed in the {@link TransferService}: a missing account, or else a lack of funds.
+     * Accounts are never deleted, so an account that exists now also existed when the transfer ran.
+     */
+    private PaymentOutcomeDTO.Outcome failureOf(PaymentDTO payment) {
+        return transferService.accountsExist(payment.getFromAccountNumber(), payment.getToAccountNumber())
+                ? PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS
+                : PaymentOutcomeDTO.Outcome.ACCOUNT_NOT_FOUND;
+    }
+
+    private void complete(Submission submission, TransferSubmissionDTO.Status status, PaymentOutcomeDTO.Outcome outcome) {
+        submission.outcome = outcome;
+        submission.completedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        submission.completedNanos = System.nanoTime();
+        // Written last, so a reader that sees the final status also sees the outcome and completion time
+        submission.status = status;
+    }
+
+    /**
+     * Removes the submissions that finished longer than the retention period ago, at most once per second.
+     */
+    private void evictExpired() {
+        long now = System.nanoTime();
+        long next = nextEviction.get();
+        if (now - next < 0 || !nextEviction.compareAndSet(next, now + EVICTION_INTERVAL_NANOS)) {
+            return;
+        }
+        submissions.values().removeIf(submission -> submission.status != TransferSubmissionDTO.Status.QUEUED
+                && now - submission.completedNanos > retentionNanos);
+    }
+
+    /**
+     * Checks a transfer without touching the database.
+     */
+    private static boolean isValid(PaymentDTO payment) {
+        return payment.getFromAccountNumber() != null
+                && payment.getToAccountNumber() != null
+                && payment.getAmount() != null
+                && payment.getAmount().compareTo(BigDecimal.ZERO) > 0
+                && !payment.getFromAccountNumber().equals(payment.getToAccountNumber());
+    }
+
+    /**
+     * Stops taking new transfers and waits for the queued ones to be applied.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (workers != null) {
+            workers.shutdown();
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * A submitted transfer and its status.
+     */
+    private static final class Submission {
+        private final String id;
+        private final PaymentDTO payment;
+        private final LocalDateTime submittedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        private volatile TransferSubmissionDTO.Status status = TransferSubmissionDTO.Status.QUEUED;
+        private volatile PaymentOutcomeDTO.Outcome outcome;
+        private volatile LocalDateTime completedAt;
+        private volatile long completedNanos;
+
+        private Submission(String id, PaymentDTO payment) {
+            this.id = id;
+            this.payment = payment;
+        }
+
+        private TransferSubmissionDTO toDTO() {
+            TransferSubmissionDTO.Status current = status;
+            return current == TransferSubmissionDTO.Status.QUEUED
+                    ? new TransferSubmissionDTO(id, payment, current, null, submittedAt, null)
+                    : new TransferSubmissionDTO(id, payment, current, outcome, submittedAt, completedAt);
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package isolation_levels.repository;
 
+import isolation_levels.dto.AccountDTO;
 import isolation_levels.model.Account;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for {@link Account} entities.
@@ -27,6 +36,27 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
      */
     Optional<Account> findByAccountNumber(String accountNumber);
 
+    /**
+     * Finds an account by its account number as a DTO.
+     * No entity is loaded into the persistence context. The balance includes the slots of a split account.
+     *
+     * @param accountNumber the account number to search for
+     * @return an Optional containing the account DTO if found, or empty if not found
+     */
+    @Query("SELECT new isolation_levels.dto.AccountDTO(a.id, a.accountNumber, a.ownerName, a.balance + a.slotBalance, a.version) " +
+           "FROM Account a WHERE a.accountNumber = :accountNumber")
+    Optional<AccountDTO> findDTOByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    /**
+     * Finds all accounts as DTOs, ordered by ID.
+     * No entities are loaded into the persistence context. Balances include the slots of split accounts.
+     *
+     * @return a list of all account DTOs
+     */
+    @Query("SELECT new isolation_levels.dto.AccountDTO(a.id, a.accountNumber, a.ownerName, a.balance + a.slotBalance, a.version) " +
+           "FROM Account a ORDER BY a.id")
+    List<AccountDTO> findAllDTOs();
+
     /**
      * Finds an account by its account number with a pessimistic read lock.
      * This is useful for demonstrating transaction isolation levels.
@@ -48,4 +78,48 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT a FROM Account a WHERE a.accountNumber = :accountNumber")
     Optional<Account> findByAccountNumberWithPessimisticWriteLock(@Param("accountNumber") String accountNumber);
-}
\ No newline at end of file
+
+    /**
+     * Finds the accounts with the given account numbers, without locking them.
+     *
+     * @param accountNumbers the account numbers to search for
+     * @return the accounts found
+     */
+    List<Account> findAllByAccountNumberIn(Collection<String> accountNumbers);
+
+    /**
+     * Atomically adds a delta to an account's balance in a single UPDATE statement.
+     * The balance is only changed if it would not become negative, and the version is
+     * incremented so that concurrent optimistic updates still detect the change.
+     * Split accounts are not updated, since their balance is held in their slots.
+     * The persistence context is flushed before the update, but not cleared after it, so an account
+     * already loaded in the same transaction keeps its old balance.
+     *
+     * @param accountNumber the account number to update
+     * @param delta the amount to add to the balance (negative for withdrawals)
+     * @return the number of updated rows, 0 if the account was not found, is split or has insufficient funds
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Account a SET a.balance = a.balance + :delta, a.version = a.version + 1 " +
+           "WHERE a.accountNumber = :accountNumber AND a.slotCount = 0 AND a.balance + :delta >= 0")
+    int adjustBalance(@Param("accountNumber") String accountNumber, @Param("delta") BigDecimal delta);
+
+    /**
+     * Checks whether an account with the given account number exists.
+     *
+     * @param accountNumber the account number to check
+     * @return true if the account exists, false otherwise
+     */
+    boolean existsByAccountNumber(String accountNumber);
+
+    /**
+     * Streams all accounts, ordered by ID.
+     * Rows are fetched from the database in chunks instead of being materialized as one list,
+     * so the stream must be consumed (and closed) inside a transaction.
+     *
+     * @return a stream of all accounts
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT a FROM Account a ORDER BY a.id")
+    Stream<Account> streamAll();
+}
@@ -0,0 +1,58 @@
+package isolation_levels.repository;
+
+import isolation_levels.model.BalanceSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Repository interface for {@link BalanceSlot} entities.
+ * Provides methods to change the balance of a split account one slot at a time.
+ *
+ * @author JetBrains Junie
+ */
+@Repository
+public interface BalanceSlotRepository extends JpaRepository<BalanceSlot, Long> {
+
+    /**
+     * Finds the slots of an account that hold at least the given amount, without locking them.
+     *
+     * @param accountId the ID of the split account
+     * @param amount the minimum balance of the slots
+     * @return the indexes of the slots found
+     */
+    @Query("SELECT s.slot FROM BalanceSlot s WHERE s.account.id = :accountId AND s.balance >= :amount")
+    List<Integer> findSlotsWithBalanceAtLeast(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    /**
+     * Finds all slots of an account and acquires a pessimistic write lock on each of them.
+     * Slots are locked in index order, so concurrent sweeps of the same account cannot deadlock.
+     *
+     * @param accountId the ID of the split account
+     * @return the slots of the account, ordered by index
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BalanceSlot s WHERE s.account.id = :accountId ORDER BY s.slot")
+    List<BalanceSlot> findAllByAccountIdWithPessimisticWriteLock(@Param("accountId") Long accountId);
+
+    /**
+     * Atomically adds a delta to the balance of one slot in a single UPDATE statement.
+     * The balance is only changed if it would not become negative.
+     *
+     * @param accountId the ID of the split account
+     * @param slot the index of the slot
+     * @param delta the amount to add to the slot's balance (negative for withdrawals)
+     * @return the number of updated rows, 0 if the slot was not found or has insufficient funds
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BalanceSlot s SET s.balance = s.balance + :delta " +
+           "WHERE s.account.id = :accountId AND s.slot = :slot AND s.balance + :delta >= 0")
+    int adjustBalance(@Param("accountId") Long accountId, @Param("slot") int slot, @Param("delta") BigDecimal delta);
+}
@@ -0,0 +1,15 @@
+package isolation_levels.repository;
+
+import isolation_levels.model.EngineCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for {@link EngineCheckpoint} entities.
+ * Each shard stores its own checkpoint, keyed by its shard index.
+ *
+ * @author JetBrains Junie
+ */
+@Repository
+public interface EngineCheckpointRepository extends JpaRepository<EngineCheckpoint, Integer> {
+}
@@ -0,0 +1,46 @@
+package isolation_levels.repository;
+
+import isolation_levels.model.IdempotencyRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for {@link IdempotencyRecord} entities.
+ * Records are stored on the shard selected by their idempotency key.
+ *
+ * @author JetBrains Junie
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Finds the records completed after the given time, most recent first.
+     *
+     * @param completedAfter the time after which the records were completed
+     * @param pageable the maximum number of records to return
+     * @return the matching records
+     */
+    List<IdempotencyRecord> findByCompletedAtAfterOrderByCompletedAtDesc(LocalDateTime completedAfter, Pageable pageable);
+
+    /**
+     * Records the response of a request with a single update by key, without loading the record first.
+     *
+     * @param idempotencyKey the idempotency key
+     * @param statusCode the HTTP status code of the response
+     * @param responseBody the response body as JSON, or null if the response has no body
+     * @param completedAt the time the request was completed
+     * @return the number of updated rows, 0 if the key is not recorded
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :statusCode, r.responseBody = :responseBody, " +
+           "r.completedAt = :completedAt, r.version = r.version + 1 WHERE r.idempotencyKey = :idempotencyKey")
+    int complete(@Param("idempotencyKey") String idempotencyKey, @Param("statusCode") int statusCode,
+                 @Param("responseBody") String responseBody, @Param("completedAt") LocalDateTime completedAt);
+}
@@ -1,13 +1,20 @@
 package isolation_levels.repository;
 
+import isolation_levels.dto.TransactionDTO;
 import isolation_levels.model.Account;
 import isolation_levels.model.Transaction;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for {@link Transaction} entities.
@@ -42,4 +49,91 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
      */
     @Query("SELECT t FROM Transaction t WHERE t.account.id = :accountId")
     List<Transaction> findByAccountId(@Param("accountId") Long accountId);
-}
\ No newline at end of file
+
+    /**
+     * Finds all transactions for an account as DTOs, joined to the account number in the same query.
+     * No entities are loaded into the persistence context.
+     *
+     * @param accountNumber the account number to find transactions for
+     * @return a list of transaction DTOs for the account
+     */
+    @Query("SELECT new isolation_levels.dto.TransactionDTO(t.id, a.id, a.accountNumber, t.amount, t.description, t.timestamp, t.type) " +
+           "FROM Transaction t JOIN t.account a WHERE a.accountNumber = :accountNumber")
+    List<TransactionDTO> findDTOsByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    /**
+     * Finds all transactions for an account as DTOs, ordered by timestamp and ID (newest first).
+     * No entities are loaded into the persistence context.
+     * <p>
+     * The account is resolved to its ID in a scalar subquery instead of a join, and the order
+     * starts with the (constant) account ID, so the history is read in the order of the covering
+     * index on (account_id, timestamp, id) and the database does not sort it. A join puts the
+     * accounts table first in the plan and makes H2 sort the rows even though it reads them
+     * through the same index. The history queries below use the same shape.
+     *
+     * @param accountNumber the account number to find transactions for
+     * @return a list of transaction DTOs for the account, ordered by timestamp
+     */
+    @Query("SELECT new isolation_levels.dto.TransactionDTO(t.id, t.account.id, " +
+           "(SELECT a.accountNumber FROM Account a WHERE a.id = t.account.id), t.amount, t.description, t.timestamp, t.type) " +
+           "FROM Transaction t WHERE t.account.id = (SELECT a.id FROM Account a WHERE a.accountNumber = :accountNumber) " +
+           "ORDER BY t.account.id, t.timestamp DESC, t.id DESC")
+    List<TransactionDTO> findDTOsByAccountNumberOrderByTimestampDesc(@Param("accountNumber") String accountNumber);
+
+    /**
+     * Finds the newest transactions for an account as DTOs, ordered by timestamp and ID (newest first).
+     * This is the first page of a keyset-paginated history.
+     *
+     * @param accountNumber the account number to find transactions for
+     * @param pageable the page size; the page number must be 0
+     * @return up to the page size of the newest transactions for the account
+     */
+    @Query("SELECT new isolation_levels.dto.TransactionDTO(t.id, t.account.id, " +
+           "(SELECT a.accountNumber FROM Account a WHERE a.id = t.account.id), t.amount, t.description, t.timestamp, t.type) " +
+           "FROM Transaction t WHERE t.account.id = (SELECT a.id FROM Account a WHERE a.accountNumber = :accountNumber) " +
+           "ORDER BY t.account.id, t.timestamp DESC, t.id DESC")
+    List<TransactionDTO> findFirstPageByAccountNumber(@Param("accountNumber") String accountNumber, Pageable pageable);
+
+    /**
+     * Finds the transactions for an account as DTOs that come after the given position in the
+     * (timestamp, ID) order, newest first. The position is a keyset cursor rather than an
+     * offset, so every page is read with an index range scan that starts at the cursor.
+     *
+     * @param accountNumber the account number to find transactions for
+     * @param timestamp the timestamp of the last transaction of the previous page
+     * @param id the ID of the last transaction of the previous page
+     * @param pageable the page size; the page number must be 0
+     * @return up to the page size of transactions older than the cursor
+     */
+    @Query("SELECT new isolation_levels.dto.TransactionDTO(t.id, t.account.id, " +
+           "(SELECT a.accountNumber FROM Account a WHERE a.id = t.account.id), t.amount, t.description, t.timestamp, t.type) " +
+           "FROM Transaction t WHERE t.account.id = (SELECT a.id FROM Account a WHERE a.accountNumber = :accountNumber) " +
+           "AND t.timestamp <= :timestamp AND (t.timestamp < :timestamp OR t.id < :id) " +
+           "ORDER BY t.account.id, t.timestamp DESC, t.id DESC")
+    List<TransactionDTO> findPageByAccountNumberBefore(@Param("accountNumber") String accountNumber,
+                                                       @Param("timestamp") LocalDateTime timestamp,
+                                                       @Param("id") Long id,
+                                                       Pageable pageable);
+
+    /**
+     * Streams all transactions for an account, ordered by timestamp and ID (oldest first).
+     * Rows are fetched from the database in chunks instead of being materialized as one list,
+     * so the stream must be consumed (and closed) inside a transaction.
+     *
+     * @param accountNumber the account number to stream transactions for
+     * @return a stream of the account's transactions
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT t FROM Transaction t JOIN FETCH t.account a WHERE a.accountNumber = :accountNumber " +
+           "ORDER BY t.timestamp, t.id")
+    Stream<Transaction> streamByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    /**
+     * Checks whether a transfer has already posted an entry of the given type on the current shard.
+     *
+     * @param transferId the ID of the transfer
+     * @param type the type of the entry
+     * @return true if the entry exists, false otherwise
+     */
+    boolean existsByTransferIdAndType(String transferId, Transaction.TransactionType type);
+}
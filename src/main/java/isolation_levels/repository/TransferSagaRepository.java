@@ -0,0 +1,44 @@
+package isolation_levels.repository;
+
+import isolation_levels.model.TransferSaga;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for {@link TransferSaga} entities.
+ * Sagas are stored on the shard of their source account.
+ *
+ * @author JetBrains Junie
+ */
+@Repository
+public interface TransferSagaRepository extends JpaRepository<TransferSaga, String> {
+
+    /**
+     * Finds a saga by its ID and acquires a pessimistic write lock,
+     * so that only one caller at a time can move it to its next state.
+     *
+     * @param id the ID of the saga
+     * @return an Optional containing the saga if found, or empty if not found
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM TransferSaga s WHERE s.id = :id")
+    Optional<TransferSaga> findByIdWithPessimisticWriteLock(@Param("id") String id);
+
+    /**
+     * Finds the sagas that have been in a state since before the given time, oldest first.
+     *
+     * @param state the state of the sagas
+     * @param updatedBefore the time before which the sagas were last updated
+     * @return the matching sagas
+     */
+    List<TransferSaga> findByStateAndUpdatedAtBeforeOrderByUpdatedAt(TransferSaga.State state,
+                                                                     LocalDateTime updatedBefore);
+}
@@ -0,0 +1,48 @@
+package isolation_levels.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a transactional method that should be re-run as a whole when it fails because of
+ * a concurrency conflict, such as an optimistic locking failure, a deadlock or a serialization failure.
+ * Retries use capped exponential backoff with full jitter.
+ * <p>
+ * The defaults below can be overridden per operation in the application properties:
+ * <pre>
+ * isolation-levels.retry.&lt;operation&gt;.max-attempts=5
+ * isolation-levels.retry.&lt;operation&gt;.initial-backoff-millis=10
+ * isolation-levels.retry.&lt;operation&gt;.max-backoff-millis=200
+ * </pre>
+ *
+ * @author JetBrains Junie
+ * @see RetryOnConflictAspect
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+
+    /**
+     * The operation name used for configuration and metrics. Defaults to the method name.
+     */
+    String value() default "";
+
+    /**
+     * The maximum number of attempts, including the first one.
+     */
+    int maxAttempts() default 3;
+
+    /**
+     * The upper bound of the backoff before the first retry, in milliseconds.
+     */
+    long initialBackoffMillis() default 10;
+
+    /**
+     * The cap for the exponentially growing backoff, in milliseconds.
+     */
+    long maxBackoffMillis() default 200;
+}
@@ -0,0 +1,101 @@
+package isolation_levels.retry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Aspect that re-runs methods annotated with {@link RetryOnConflict} when they fail with a
+ * {@link ConcurrencyFailureException}. It runs before the transaction interceptor, so every attempt
+ * is a complete new transaction. When the method joins a transaction that is already active,
+ * the failure is passed on unchanged, because only the outer transaction can be retried.
+ * <p>
+ * Retries are counted in the {@code isolation_levels.retry.retries} metric and operations that
+ * fail after their last attempt in {@code isolation_levels.retry.exhausted}, both tagged by operation.
+ *
+ * @author JetBrains Junie
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RetryOnConflictAspect {
+
+    private static final String PROPERTY_PREFIX = "isolation-levels.retry.";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RetryPolicy> policies = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RetryOnConflictAspect(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Invokes the annotated method and retries it on concurrency conflicts.
+     *
+     * @param joinPoint the method invocation
+     * @param retryOnConflict the retry settings of the method
+     * @return the result of the first successful attempt
+     * @throws Throwable the failure of the last attempt, or any non-retryable failure
+     */
+    @Around("@annotation(retryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String operation = retryOnConflict.value().isEmpty()
+                ? joinPoint.getSignature().getName()
+                : retryOnConflict.value();
+        RetryPolicy policy = policies.computeIfAbsent(operation, name -> createPolicy(name, retryOnConflict));
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= policy.maxAttempts()) {
+                    meterRegistry.counter("isolation_levels.retry.exhausted", "operation", operation).increment();
+                    throw e;
+                }
+                meterRegistry.counter("isolation_levels.retry.retries", "operation", operation).increment();
+                Thread.sleep(policy.backoffMillis(attempt));
+            }
+        }
+    }
+
+    private RetryPolicy createPolicy(String operation, RetryOnConflict defaults) {
+        String prefix = PROPERTY_PREFIX + operation + ".";
+        return new RetryPolicy(
+                environment.getProperty(prefix + "max-attempts", Integer.class, defaults.maxAttempts()),
+                environment.getProperty(prefix + "initial-backoff-millis", Long.class, defaults.initialBackoffMillis()),
+                environment.getProperty(prefix + "max-backoff-millis", Long.class, defaults.maxBackoffMillis()));
+    }
+
+    /**
+     * Retry settings of a single operation.
+     */
+    private record RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+
+        /**
+         * Returns a random backoff between zero and the capped exponential bound for the given attempt.
+         */
+        long backoffMillis(int attempt) {
+            long bound = initialBackoffMillis << Math.min(attempt - 1, 20);
+            return ThreadLocalRandom.current().nextLong(Math.min(bound, maxBackoffMillis) + 1);
+        }
+    }
+}
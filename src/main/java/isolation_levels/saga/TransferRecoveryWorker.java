@@ -0,0 +1,83 @@
+package isolation_levels.saga;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.engine.EngineBypassException;
+import isolation_levels.model.TransferSaga;
+import isolation_levels.repository.TransferSagaRepository;
+import isolation_levels.sharding.ShardTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Background worker that finishes transfer sagas interrupted by a crash or a failing shard.
+ * Sagas that have been in state DEBITED for longer than {@code isolation-levels.saga.stale-after}
+ * are collected from all shards and resumed; the replayed steps are idempotent, so a saga
+ * that is still being processed by its original caller is not applied twice.
+ * <p>
+ * With the in-memory ledger engine enabled, the steps of a saga throw an {@link EngineBypassException}, since they
+ * would change the balances behind the engine; sagas left over from before the engine was enabled are only reported.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+public class TransferRecoveryWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferRecoveryWorker.class);
+
+    private final TransferSagaRepository transferSagaRepository;
+    private final TransferSagaCoordinator coordinator;
+    private final ShardTemplate shardTemplate;
+    private final Duration staleAfter;
+    private final Counter recoveredCounter;
+
+    @Autowired
+    public TransferRecoveryWorker(TransferSagaRepository transferSagaRepository, TransferSagaCoordinator coordinator,
+                                  ShardTemplate shardTemplate, MeterRegistry meterRegistry,
+                                  @Value("${isolation-levels.saga.stale-after:PT30S}") Duration staleAfter) {
+        this.transferSagaRepository = transferSagaRepository;
+        this.coordinator = coordinator;
+        this.shardTemplate = shardTemplate;
+        this.staleAfter = staleAfter;
+        this.recoveredCounter = meterRegistry.counter("isolation_levels.saga.recovered");
+    }
+
+    /**
+     * Resumes all stale sagas.
+     *
+     * @return the number of sagas brought to a final state
+     */
+    @Scheduled(initialDelayString = "${isolation-levels.saga.recovery-interval:PT10S}",
+               fixedDelayString = "${isolation-levels.saga.recovery-interval:PT10S}")
+    public int recover() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(staleAfter);
+        List<TransferSaga> sagas = shardTemplate.scatterGather("recoverTransfers",
+                () -> transferSagaRepository.findByStateAndUpdatedAtBeforeOrderByUpdatedAt(
+                        TransferSaga.State.DEBITED, cutoff));
+        int recovered = 0;
+        for (TransferSaga saga : sagas) {
+            try {
+                TransferSaga.State state = coordinator.resume(saga);
+                log.info("Recovered transfer saga {} to state {}", saga.getId(), state);
+                recoveredCounter.increment();
+                recovered++;
+            } catch (EngineBypassException e) {
+                log.warn("Not resuming {} transfer sagas while the ledger engine is enabled; "
+                        + "disable it to let them finish", sagas.size() - recovered);
+                break;
+            } catch (RuntimeException e) {
+                // Left in state DEBITED for the next run
+                log.warn("Failed to recover transfer saga {}", saga.getId(), e);
+            }
+        }
+        return recovered;
+    }
+}
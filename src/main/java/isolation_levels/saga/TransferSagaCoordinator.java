@@ -0,0 +1,82 @@
+package isolation_levels.saga;
+
+import isolation_levels.model.TransferSaga;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Runs transfers between accounts on different shards as a saga of local transactions:
+ * debit the source account (recording the saga), credit the target account, then mark the saga as completed.
+ * If the target account cannot be credited, the debit is refunded by a compensating credit.
+ * No locks are held across shards and no distributed transaction is needed.
+ * <p>
+ * A saga interrupted after the debit stays in state DEBITED and is finished by the
+ * {@link TransferRecoveryWorker}; every step can be replayed safely.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+public class TransferSagaCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferSagaCoordinator.class);
+
+    private static final TransferSagaHook NO_HOOK = new TransferSagaHook() {
+    };
+
+    private final TransferSagaSteps steps;
+    private final TransferSagaHook hook;
+
+    @Autowired
+    public TransferSagaCoordinator(TransferSagaSteps steps, ObjectProvider<TransferSagaHook> hook) {
+        this.steps = steps;
+        this.hook = hook.getIfAvailable(() -> NO_HOOK);
+    }
+
+    /**
+     * Transfers money between accounts on different shards.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @param amount the amount to transfer
+     * @return the saga, or empty if the transfer was rejected before any money moved
+     * (unknown source account or insufficient funds). An unknown target account is only detected
+     * by the credit and leads to a compensation, so callers should check it first.
+     * A saga still in state DEBITED is finished later by recovery.
+     */
+    public Optional<TransferSaga> transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        Optional<TransferSaga> sagaOpt = steps.debit(fromAccountNumber, toAccountNumber, amount);
+        if (sagaOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        TransferSaga saga = sagaOpt.get();
+        hook.afterDebit(saga.getId());
+        try {
+            saga.transitionTo(resume(saga));
+        } catch (RuntimeException e) {
+            log.warn("Transfer saga {} interrupted after the debit, leaving it to recovery", saga.getId(), e);
+        }
+        return Optional.of(saga);
+    }
+
+    /**
+     * Drives a debited saga to its final state: credits the target account and completes the saga,
+     * or refunds the source account if the target account cannot be credited.
+     *
+     * @param saga the saga, in state DEBITED
+     * @return the final state of the saga
+     */
+    public TransferSaga.State resume(TransferSaga saga) {
+        if (!steps.credit(saga.getToAccountNumber(), saga)) {
+            return steps.compensate(saga.getFromAccountNumber(), saga.getId());
+        }
+        hook.afterCredit(saga.getId());
+        return steps.complete(saga.getFromAccountNumber(), saga.getId());
+    }
+}
@@ -0,0 +1,27 @@
+package isolation_levels.saga;
+
+/**
+ * Callback invoked between the steps of a transfer saga.
+ * The default implementation does nothing; tests provide a bean of this type to
+ * simulate a crash at a given point of the saga.
+ *
+ * @author JetBrains Junie
+ */
+public interface TransferSagaHook {
+
+    /**
+     * Called after the source account has been debited and the saga recorded.
+     *
+     * @param sagaId the ID of the saga
+     */
+    default void afterDebit(String sagaId) {
+    }
+
+    /**
+     * Called after the target account has been credited, before the saga is marked as completed.
+     *
+     * @param sagaId the ID of the saga
+     */
+    default void afterCredit(String sagaId) {
+    }
+}
@@ -0,0 +1,133 @@
+package isolation_levels.saga;
+
+import isolation_levels.model.Account;
+import isolation_levels.model.Transaction;
+import isolation_levels.model.TransferSaga;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.repository.TransferSagaRepository;
+import isolation_levels.service.LedgerWriter;
+import isolation_levels.sharding.ShardKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * The local transactions of a cross-shard transfer saga.
+ * Each step runs on exactly one shard, selected by its {@link ShardKey} parameter, and can be
+ * replayed: ledger entries carry the transfer ID, and the unique constraint on
+ * (transfer ID, type) rejects a second entry of the same kind.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+public class TransferSagaSteps {
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransferSagaRepository transferSagaRepository;
+    private final LedgerWriter ledgerWriter;
+
+    @Autowired
+    public TransferSagaSteps(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                             TransferSagaRepository transferSagaRepository, LedgerWriter ledgerWriter) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transferSagaRepository = transferSagaRepository;
+        this.ledgerWriter = ledgerWriter;
+    }
+
+    /**
+     * Debits the source account and records the saga, on the source shard.
+     * The source account is locked while the funds are checked, so the debit also reserves the amount:
+     * it cannot be spent by another transaction while the credit is pending.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @param amount the amount to transfer
+     * @return the new saga in state DEBITED, or empty if the source account was not found or has insufficient funds
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public Optional<TransferSaga> debit(@ShardKey String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        Optional<Account> fromAccountOpt = accountRepository.findByAccountNumberWithPessimisticWriteLock(fromAccountNumber);
+        if (fromAccountOpt.isEmpty() || fromAccountOpt.get().getBalance().compareTo(amount) < 0) {
+            return Optional.empty();
+        }
+
+        TransferSaga saga = transferSagaRepository.save(new TransferSaga(fromAccountNumber, toAccountNumber, amount));
+        Transaction debitTransaction = new Transaction(amount, "Transfer to " + toAccountNumber, Transaction.TransactionType.DEBIT);
+        debitTransaction.setTransferId(saga.getId());
+        ledgerWriter.post(fromAccountOpt.get(), amount.negate(), debitTransaction);
+        return Optional.of(saga);
+    }
+
+    /**
+     * Credits the target account, on the target shard.
+     * If the credit of this transfer has already been posted, nothing is changed.
+     *
+     * @param toAccountNumber the account number to transfer to
+     * @param saga the saga of the transfer
+     * @return true if the target account is credited, false if it was not found
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public boolean credit(@ShardKey String toAccountNumber, TransferSaga saga) {
+        if (transactionRepository.existsByTransferIdAndType(saga.getId(), Transaction.TransactionType.CREDIT)) {
+            return true;
+        }
+
+        Optional<Account> toAccountOpt = accountRepository.findByAccountNumberWithPessimisticWriteLock(toAccountNumber);
+        if (toAccountOpt.isEmpty()) {
+            return false;
+        }
+
+        Transaction creditTransaction = new Transaction(saga.getAmount(),
+                "Transfer from " + saga.getFromAccountNumber(), Transaction.TransactionType.CREDIT);
+        creditTransaction.setTransferId(saga.getId());
+        ledgerWriter.post(toAccountOpt.get(), saga.getAmount(), creditTransaction);
+        return true;
+    }
+
+    /**
+     * Marks the saga as completed, on the source shard.
+     *
+     * @param fromAccountNumber the account number the transfer is from
+     * @param sagaId the ID of the saga
+     * @return the state of the saga afterwards
+     */
+    @Transactional
+    public TransferSaga.State complete(@ShardKey String fromAccountNumber, String sagaId) {
+        TransferSaga saga = transferSagaRepository.findByIdWithPessimisticWriteLock(sagaId).orElseThrow();
+        if (saga.getState() == TransferSaga.State.DEBITED) {
+            saga.transitionTo(TransferSaga.State.COMPLETED);
+        }
+        return saga.getState();
+    }
+
+    /**
+     * Refunds the debit of a saga whose credit failed and marks it as compensated, on the source shard.
+     * The saga row is locked first, so a refund is posted at most once.
+     *
+     * @param fromAccountNumber the account number the transfer is from
+     * @param sagaId the ID of the saga
+     * @return the state of the saga afterwards
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public TransferSaga.State compensate(@ShardKey String fromAccountNumber, String sagaId) {
+        TransferSaga saga = transferSagaRepository.findByIdWithPessimisticWriteLock(sagaId).orElseThrow();
+        if (saga.getState() != TransferSaga.State.DEBITED) {
+            return saga.getState();
+        }
+
+        Account fromAccount = accountRepository.findByAccountNumberWithPessimisticWriteLock(fromAccountNumber).orElseThrow();
+        Transaction refundTransaction = new Transaction(saga.getAmount(),
+                "Refund of transfer to " + saga.getToAccountNumber(), Transaction.TransactionType.CREDIT);
+        refundTransaction.setTransferId(saga.getId());
+        ledgerWriter.post(fromAccount, saga.getAmount(), refundTransaction);
+        saga.transitionTo(TransferSaga.State.COMPENSATED);
+        return saga.getState();
+    }
+}
@@ -1,9 +1,18 @@
 package isolation_levels.service;
 
+import isolation_levels.cache.AccountCache;
+import isolation_levels.datasource.DataSourceRole;
+import isolation_levels.datasource.UseDataSource;
+import isolation_levels.dto.AccountDTO;
 import isolation_levels.model.Account;
+import isolation_levels.model.BalanceSlot;
 import isolation_levels.model.Transaction;
 import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.BalanceSlotRepository;
 import isolation_levels.repository.TransactionRepository;
+import isolation_levels.retry.RetryOnConflict;
+import isolation_levels.sharding.ShardKey;
+import isolation_levels.sharding.ShardTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
@@ -11,6 +20,7 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,11 +35,21 @@ public class AccountService {
 
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final BalanceSlotRepository balanceSlotRepository;
+    private final LedgerWriter ledgerWriter;
+    private final AccountCache accountCache;
+    private final ShardTemplate shardTemplate;
 
     @Autowired
-    public AccountService(AccountRepository accountRepository, TransactionRepository transactionRepository) {
+    public AccountService(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                          BalanceSlotRepository balanceSlotRepository, LedgerWriter ledgerWriter,
+                          AccountCache accountCache, ShardTemplate shardTemplate) {
         this.accountRepository = accountRepository;
         this.transactionRepository = transactionRepository;
+        this.balanceSlotRepository = balanceSlotRepository;
+        this.ledgerWriter = ledgerWriter;
+        this.accountCache = accountCache;
+        this.shardTemplate = shardTemplate;
     }
 
     /**
@@ -41,7 +61,7 @@ public class AccountService {
      * @return the created account
      */
     @Transactional
-    public Account createAccount(String accountNumber, String ownerName, BigDecimal initialBalance) {
+    public Account createAccount(@ShardKey String accountNumber, String ownerName, BigDecimal initialBalance) {
         Account account = new Account(accountNumber, ownerName, initialBalance);
         return accountRepository.save(account);
     }
@@ -51,23 +71,37 @@ public class AccountService {
      * This can lead to dirty reads.
      *
      * @param accountNumber the account number to search for
-     * @return an Optional containing the account if found, or empty if not found
+     * @return an Optional containing the account DTO if found, or empty if not found
      */
     @Transactional(isolation = Isolation.READ_UNCOMMITTED)
-    public Optional<Account> getAccountReadUncommitted(String accountNumber) {
-        return accountRepository.findByAccountNumber(accountNumber);
+    public Optional<AccountDTO> getAccountReadUncommitted(@ShardKey String accountNumber) {
+        return accountRepository.findDTOByAccountNumber(accountNumber);
     }
 
     /**
      * Retrieves an account by its account number using READ_COMMITTED isolation level.
      * This prevents dirty reads but allows non-repeatable reads and phantom reads.
+     * Since any committed state may be returned at this level, the account is served from the
+     * {@link AccountCache} when possible. The stricter isolation levels always read the database.
+     * The transaction is read-only but pinned to the primary: a lagging replica could return a state older
+     * than the write that just evicted the account, and the cache would keep serving it for its whole
+     * time to live. Cache hits are what take these reads off the primary.
      *
      * @param accountNumber the account number to search for
-     * @return an Optional containing the account if found, or empty if not found
+     * @return an Optional containing the account DTO if found, or empty if not found
      */
-    @Transactional(isolation = Isolation.READ_COMMITTED)
-    public Optional<Account> getAccountReadCommitted(String accountNumber) {
-        return accountRepository.findByAccountNumber(accountNumber);
+    @UseDataSource(DataSourceRole.PRIMARY)
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public Optional<AccountDTO> getAccountReadCommitted(@ShardKey String accountNumber) {
+        Optional<AccountDTO> cached = accountCache.get(accountNumber);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        long stamp = accountCache.stamp(accountNumber);
+        Optional<AccountDTO> accountOpt = accountRepository.findDTOByAccountNumber(accountNumber);
+        accountOpt.ifPresent(account -> accountCache.put(account, stamp));
+        return accountOpt;
     }
 
     /**
@@ -75,11 +109,11 @@ public class AccountService {
      * This prevents dirty reads and non-repeatable reads but allows phantom reads.
      *
      * @param accountNumber the account number to search for
-     * @return an Optional containing the account if found, or empty if not found
+     * @return an Optional containing the account DTO if found, or empty if not found
      */
     @Transactional(isolation = Isolation.REPEATABLE_READ)
-    public Optional<Account> getAccountRepeatableRead(String accountNumber) {
-        return accountRepository.findByAccountNumber(accountNumber);
+    public Optional<AccountDTO> getAccountRepeatableRead(@ShardKey String accountNumber) {
+        return accountRepository.findDTOByAccountNumber(accountNumber);
     }
 
     /**
@@ -87,11 +121,11 @@ public class AccountService {
      * This prevents dirty reads, non-repeatable reads, and phantom reads.
      *
      * @param accountNumber the account number to search for
-     * @return an Optional containing the account if found, or empty if not found
+     * @return an Optional containing the account DTO if found, or empty if not found
      */
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public Optional<Account> getAccountSerializable(String accountNumber) {
-        return accountRepository.findByAccountNumber(accountNumber);
+    public Optional<AccountDTO> getAccountSerializable(@ShardKey String accountNumber) {
+        return accountRepository.findDTOByAccountNumber(accountNumber);
     }
 
     /**
@@ -103,11 +137,11 @@ public class AccountService {
      * @return the updated account, or empty if the account was not found
      */
     @Transactional(isolation = Isolation.READ_UNCOMMITTED)
-    public Optional<Account> updateBalanceReadUncommitted(String accountNumber, BigDecimal newBalance) {
+    public Optional<Account> updateBalanceReadUncommitted(@ShardKey String accountNumber, BigDecimal newBalance) {
         Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
         if (accountOpt.isPresent()) {
             Account account = accountOpt.get();
-            account.setBalance(newBalance);
+            ledgerWriter.replaceBalance(account, newBalance);
             return Optional.of(accountRepository.save(account));
         }
         return Optional.empty();
@@ -122,11 +156,11 @@ public class AccountService {
      * @return the updated account, or empty if the account was not found
      */
     @Transactional(isolation = Isolation.READ_COMMITTED)
-    public Optional<Account> updateBalanceReadCommitted(String accountNumber, BigDecimal newBalance) {
+    public Optional<Account> updateBalanceReadCommitted(@ShardKey String accountNumber, BigDecimal newBalance) {
         Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
         if (accountOpt.isPresent()) {
             Account account = accountOpt.get();
-            account.setBalance(newBalance);
+            ledgerWriter.replaceBalance(account, newBalance);
             return Optional.of(accountRepository.save(account));
         }
         return Optional.empty();
@@ -141,11 +175,11 @@ public class AccountService {
      * @return the updated account, or empty if the account was not found
      */
     @Transactional(isolation = Isolation.REPEATABLE_READ)
-    public Optional<Account> updateBalanceRepeatableRead(String accountNumber, BigDecimal newBalance) {
+    public Optional<Account> updateBalanceRepeatableRead(@ShardKey String accountNumber, BigDecimal newBalance) {
         Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
         if (accountOpt.isPresent()) {
             Account account = accountOpt.get();
-            account.setBalance(newBalance);
+            ledgerWriter.replaceBalance(account, newBalance);
             return Optional.of(accountRepository.save(account));
         }
         return Optional.empty();
@@ -160,11 +194,11 @@ public class AccountService {
      * @return the updated account, or empty if the account was not found
      */
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public Optional<Account> updateBalanceSerializable(String accountNumber, BigDecimal newBalance) {
+    public Optional<Account> updateBalanceSerializable(@ShardKey String accountNumber, BigDecimal newBalance) {
         Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
         if (accountOpt.isPresent()) {
             Account account = accountOpt.get();
-            account.setBalance(newBalance);
+            ledgerWriter.replaceBalance(account, newBalance);
             return Optional.of(accountRepository.save(account));
         }
         return Optional.empty();
@@ -172,12 +206,12 @@ public class AccountService {
 
     /**
      * Retrieves all accounts.
+     * The query runs on all shards in parallel and the results are returned in shard order.
      *
-     * @return a list of all accounts
+     * @return a list of all account DTOs
      */
-    @Transactional(readOnly = true)
-    public List<Account> getAllAccounts() {
-        return accountRepository.findAll();
+    public List<AccountDTO> getAllAccounts() {
+        return shardTemplate.scatterGather("getAllAccounts", accountRepository::findAllDTOs);
     }
 
     /**
@@ -188,23 +222,22 @@ public class AccountService {
      * @param amount the amount to add to the balance (can be negative)
      * @return the updated account, or empty if the account was not found
      */
+    @RetryOnConflict
     @Transactional
-    public Optional<Account> updateBalanceWithOptimisticLock(String accountNumber, BigDecimal amount) {
+    public Optional<Account> updateBalanceWithOptimisticLock(@ShardKey String accountNumber, BigDecimal amount) {
         Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
         if (accountOpt.isPresent()) {
             Account account = accountOpt.get();
-            BigDecimal newBalance = account.getBalance().add(amount);
-            account.setBalance(newBalance);
             
-            // Create a transaction record
+            // Create a transaction record and apply the balance change
             Transaction transaction = new Transaction(
                 amount,
                 amount.compareTo(BigDecimal.ZERO) >= 0 ? "Deposit" : "Withdrawal",
                 amount.compareTo(BigDecimal.ZERO) >= 0 ? Transaction.TransactionType.CREDIT : Transaction.TransactionType.DEBIT
             );
-            account.addTransaction(transaction);
+            ledgerWriter.post(account, amount, transaction);
             
-            return Optional.of(accountRepository.save(account));
+            return Optional.of(account);
         }
         return Optional.empty();
     }
@@ -217,24 +250,81 @@ public class AccountService {
      * @param amount the amount to add to the balance (can be negative)
      * @return the updated account, or empty if the account was not found
      */
+    @RetryOnConflict
     @Transactional
-    public Optional<Account> updateBalanceWithPessimisticLock(String accountNumber, BigDecimal amount) {
+    public Optional<Account> updateBalanceWithPessimisticLock(@ShardKey String accountNumber, BigDecimal amount) {
         Optional<Account> accountOpt = accountRepository.findByAccountNumberWithPessimisticWriteLock(accountNumber);
         if (accountOpt.isPresent()) {
             Account account = accountOpt.get();
-            BigDecimal newBalance = account.getBalance().add(amount);
-            account.setBalance(newBalance);
             
-            // Create a transaction record
+            // Create a transaction record and apply the balance change
             Transaction transaction = new Transaction(
                 amount,
                 amount.compareTo(BigDecimal.ZERO) >= 0 ? "Deposit" : "Withdrawal",
                 amount.compareTo(BigDecimal.ZERO) >= 0 ? Transaction.TransactionType.CREDIT : Transaction.TransactionType.DEBIT
             );
-            account.addTransaction(transaction);
+            ledgerWriter.post(account, amount, transaction);
             
-            return Optional.of(accountRepository.save(account));
+            return Optional.of(account);
         }
         return Optional.empty();
     }
-}
\ No newline at end of file
+
+    /**
+     * Updates an account's balance with a single atomic UPDATE statement.
+     * Unlike the optimistic and pessimistic variants, the balance is never read into the
+     * application before it is changed, so concurrent updates neither conflict nor wait on
+     * a lock taken by a preceding SELECT.
+     *
+     * @param accountNumber the account number to update
+     * @param amount the amount to add to the balance (can be negative)
+     * @return the updated account, or empty if the account was not found
+     * @throws InsufficientFundsException if the update would make the balance negative
+     */
+    @RetryOnConflict
+    @Transactional
+    public Optional<Account> updateBalanceAtomically(@ShardKey String accountNumber, BigDecimal amount) {
+        Transaction transaction = new Transaction(
+            amount,
+            amount.compareTo(BigDecimal.ZERO) >= 0 ? "Deposit" : "Withdrawal",
+            amount.compareTo(BigDecimal.ZERO) >= 0 ? Transaction.TransactionType.CREDIT : Transaction.TransactionType.DEBIT
+        );
+        return ledgerWriter.postAtomically(accountNumber, amount, transaction);
+    }
+
+    /**
+     * Splits an account's balance over a number of slots, for accounts with too many concurrent updates
+     * for a single row. The current balance moves to the first slot; later balance changes go to the slots
+     * through the {@link LedgerWriter}, and reads return the sum of the slots. A split account can be given
+     * more slots, but never fewer.
+     *
+     * @param accountNumber the account number to split
+     * @param slotCount the number of slots
+     * @return the split account, or empty if the account was not found
+     * @throws IllegalArgumentException if the account already has more slots
+     */
+    @Transactional
+    public Optional<Account> splitBalance(@ShardKey String accountNumber, int slotCount) {
+        Optional<Account> accountOpt = accountRepository.findByAccountNumberWithPessimisticWriteLock(accountNumber);
+        if (accountOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        Account account = accountOpt.get();
+        if (slotCount < account.getSlotCount()) {
+            throw new IllegalArgumentException("Account " + accountNumber + " already has " + account.getSlotCount() + " slots");
+        }
+
+        List<BalanceSlot> slots = new ArrayList<>();
+        for (int slot = account.getSlotCount(); slot < slotCount; slot++) {
+            slots.add(new BalanceSlot(account, slot, slot == 0 ? account.getBalance() : BigDecimal.ZERO));
+        }
+        balanceSlotRepository.saveAll(slots);
+        if (account.getSlotCount() == 0) {
+            account.setSlotBalance(account.getBalance());
+            account.setBalance(BigDecimal.ZERO);
+        }
+        account.setSlotCount(slotCount);
+        accountCache.evictAfterCommit(accountNumber);
+        return Optional.of(account);
+    }
+}
@@ -0,0 +1,129 @@
+package isolation_levels.service;
+
+import isolation_levels.dto.BatchPaymentResultDTO;
+import isolation_levels.dto.PaymentDTO;
+import isolation_levels.dto.PaymentOutcomeDTO;
+import isolation_levels.sharding.CrossShardException;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point for batch payments.
+ * A batch is a list of transfers applied all-or-nothing in one local transaction
+ * ({@link TransactionService#applyPayments}), so all of its accounts must be on the same shard.
+ * With netting, the batch is settled on each account's net position instead
+ * ({@link TransactionService#applyNettedPayments}), which locks and updates only the accounts whose balance changes.
+ * <p>
+ * Batches are validated before the transaction starts, and the result reports the time taken
+ * by the whole batch, so clients can measure the throughput of different batch sizes.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+public class BatchPaymentService {
+
+    private final TransactionService transactionService;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+    private final int maxSize;
+
+    @Autowired
+    public BatchPaymentService(TransactionService transactionService, ShardRouter shardRouter,
+                               ShardTemplate shardTemplate,
+                               @Value("${isolation-levels.batch.max-size:5000}") int maxSize) {
+        this.transactionService = transactionService;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Applies a batch of transfers, all-or-nothing.
+     *
+     * @param payments the transfers to apply, in order (1 to {@link #getMaxSize()} transfers)
+     * @param netting whether to check funds and update balances on net positions rather than transfer by transfer
+     * @return the outcome of each transfer and the elapsed time
+     * @throws IllegalArgumentException if the batch is empty or larger than the maximum size
+     * @throws CrossShardException if the accounts of the batch are on different shards
+     */
+    public BatchPaymentResultDTO applyPayments(List<PaymentDTO> payments, boolean netting) {
+        if (payments.isEmpty() || payments.size() > maxSize) {
+            throw new IllegalArgumentException("A batch must contain 1 to " + maxSize + " payments");
+        }
+        long start = System.nanoTime();
+
+        List<PaymentOutcomeDTO> outcomes;
+        if (payments.stream().anyMatch(payment -> !isValid(payment))) {
+            outcomes = new ArrayList<>(payments.size());
+            for (int i = 0; i < payments.size(); i++) {
+                outcomes.add(new PaymentOutcomeDTO(i, payments.get(i), isValid(payments.get(i))
+                        ? PaymentOutcomeDTO.Outcome.NOT_APPLIED
+                        : PaymentOutcomeDTO.Outcome.INVALID));
+            }
+        } else {
+            int shard = shardOf(payments);
+            try {
+                outcomes = shardTemplate.onShard(shard, () -> netting
+                        ? transactionService.applyNettedPayments(payments)
+                        : transactionService.applyPayments(payments));
+            } catch (InsufficientFundsException e) {
+                // The slots of a split account were drained concurrently, after its funds were checked
+                outcomes = new ArrayList<>(payments.size());
+                for (int i = 0; i < payments.size(); i++) {
+                    outcomes.add(new PaymentOutcomeDTO(i, payments.get(i),
+                            payments.get(i).getFromAccountNumber().equals(e.getAccountNumber())
+                                    ? PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS
+                                    : PaymentOutcomeDTO.Outcome.NOT_APPLIED));
+                }
+            }
+        }
+
+        boolean applied = outcomes.stream().allMatch(outcome -> outcome.getOutcome() == PaymentOutcomeDTO.Outcome.APPLIED);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new BatchPaymentResultDTO(applied, elapsedMillis, outcomes);
+    }
+
+    /**
+     * Returns the maximum number of transfers in a batch.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Checks a transfer without touching the database.
+     */
+    private static boolean isValid(PaymentDTO payment) {
+        return payment.getFromAccountNumber() != null
+                && payment.getToAccountNumber() != null
+                && payment.getAmount() != null
+                && payment.getAmount().compareTo(BigDecimal.ZERO) > 0
+                && !payment.getFromAccountNumber().equals(payment.getToAccountNumber());
+    }
+
+    /**
+     * Returns the shard of all accounts of a batch.
+     */
+    private int shardOf(List<PaymentDTO> payments) {
+        String firstAccountNumber = payments.get(0).getFromAccountNumber();
+        int shard = shardRouter.shardOf(firstAccountNumber);
+        for (PaymentDTO payment : payments) {
+            for (String accountNumber : List.of(payment.getFromAccountNumber(), payment.getToAccountNumber())) {
+                if (shardRouter.shardOf(accountNumber) != shard) {
+                    throw new CrossShardException(firstAccountNumber, accountNumber);
+                }
+            }
+        }
+        return shard;
+    }
+}
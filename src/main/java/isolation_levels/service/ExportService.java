@@ -0,0 +1,147 @@
+package isolation_levels.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import isolation_levels.mapper.EntityDTOMapper;
+import isolation_levels.model.Account;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.sharding.ShardKey;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Service class for exporting accounts and transactions as newline-delimited JSON.
+ * Rows are streamed from the database, written one at a time and detached from the
+ * persistence context as soon as they are written, so memory use does not grow
+ * with the number of exported rows.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+public class ExportService {
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ObjectWriter objectWriter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public ExportService(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                         ShardRouter shardRouter, ShardTemplate shardTemplate,
+                         PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.objectWriter = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+    }
+
+    /**
+     * Writes all accounts to the output stream, one JSON object per line.
+     * Shards are exported one after another, each in its own read-only transaction.
+     *
+     * @param out the output stream to write to; it is not closed
+     * @throws IOException if writing fails
+     */
+    public void exportAccounts(OutputStream out) throws IOException {
+        long count = 0;
+        try (SequenceWriter writer = objectWriter.writeValues(out)) {
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                count += shardTemplate.onShard(shard,
+                        () -> readOnlyTransactionTemplate.execute(status -> writeAccounts(writer)));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        endLastLine(out, count);
+    }
+
+    /**
+     * Writes the accounts of the current shard.
+     *
+     * @return the number of accounts written
+     */
+    private long writeAccounts(SequenceWriter writer) {
+        try (Stream<Account> accounts = accountRepository.streamAll()) {
+            Iterator<Account> iterator = accounts.iterator();
+            long count = 0;
+            while (iterator.hasNext()) {
+                Account account = iterator.next();
+                writer.write(EntityDTOMapper.toAccountDTO(account));
+                entityManager.detach(account);
+                count++;
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes all transactions of an account to the output stream, one JSON object per line,
+     * ordered by timestamp (oldest first).
+     *
+     * @param accountNumber the account number
+     * @param out the output stream to write to; it is not closed
+     * @return true if the account was found, false otherwise (nothing is written)
+     * @throws IOException if writing fails
+     */
+    @Transactional(readOnly = true)
+    public boolean exportTransactions(@ShardKey String accountNumber, OutputStream out) throws IOException {
+        if (!accountRepository.existsByAccountNumber(accountNumber)) {
+            return false;
+        }
+
+        try (Stream<Transaction> transactions = transactionRepository.streamByAccountNumber(accountNumber)) {
+            Iterator<Transaction> iterator = transactions.iterator();
+            long count = 0;
+            try (SequenceWriter writer = objectWriter.writeValues(out)) {
+                while (iterator.hasNext()) {
+                    Transaction transaction = iterator.next();
+                    writer.write(EntityDTOMapper.toTransactionDTO(transaction));
+                    // Only the transaction is detached; all rows share the same account
+                    entityManager.detach(transaction);
+                    count++;
+                }
+            }
+            endLastLine(out, count);
+        }
+        return true;
+    }
+
+    /**
+     * Terminates the last line, since the writer only separates values.
+     */
+    private void endLastLine(OutputStream out, long count) throws IOException {
+        if (count > 0) {
+            out.write('\n');
+        }
+        out.flush();
+    }
+}
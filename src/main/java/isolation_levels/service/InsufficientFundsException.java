@@ -0,0 +1,25 @@
+package isolation_levels.service;
+
+/**
+ * Thrown when a balance change would leave an account with a negative balance.
+ *
+ * @author JetBrains Junie
+ */
+public class InsufficientFundsException extends RuntimeException {
+
+    private final String accountNumber;
+
+    /**
+     * Creates a new exception for the specified account.
+     *
+     * @param accountNumber the account number that has insufficient funds
+     */
+    public InsufficientFundsException(String accountNumber) {
+        super("Insufficient funds in account " + accountNumber);
+        this.accountNumber = accountNumber;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+}
@@ -0,0 +1,208 @@
+package isolation_levels.service;
+
+import isolation_levels.cache.AccountCache;
+import isolation_levels.model.Account;
+import isolation_levels.model.BalanceSlot;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.BalanceSlotRepository;
+import isolation_levels.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Append-only writer for the account ledger.
+ * Ledger entries are persisted directly through the {@link TransactionRepository}
+ * instead of being added to {@link Account#getTransactions()}, so a write never
+ * loads or grows the account's history and costs the same for old and new accounts.
+ * <p>
+ * The balance of a split account ({@link Account#getSlotCount()} above zero) is changed in its
+ * {@link BalanceSlot} rows instead of the account row: credits go to a random slot, and debits go to
+ * a slot that covers the whole amount, or sweep the amount from all slots, locked in index order,
+ * if no single slot does.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+public class LedgerWriter {
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceSlotRepository balanceSlotRepository;
+    private final AccountCache accountCache;
+
+    @Autowired
+    public LedgerWriter(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                        BalanceSlotRepository balanceSlotRepository, AccountCache accountCache) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.balanceSlotRepository = balanceSlotRepository;
+        this.accountCache = accountCache;
+    }
+
+    /**
+     * Applies a balance change to a managed account and appends the matching ledger entry.
+     * The balance change is written by Hibernate's dirty checking when the surrounding
+     * transaction flushes, so the account does not need to be saved (and merged) again.
+     * An already initialized {@code transactions} collection of the account is not updated.
+     * The account is evicted from the {@link AccountCache} when the transaction completes.
+     *
+     * @param account the managed account to post to
+     * @param delta the amount to add to the balance (negative for withdrawals)
+     * @param entry the new ledger entry to append
+     * @return the persisted ledger entry
+     * @throws InsufficientFundsException if the account is split and its slots do not cover a withdrawal
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Transaction post(Account account, BigDecimal delta, Transaction entry) {
+        applyDelta(account, delta);
+        accountCache.evictAfterCommit(account.getAccountNumber());
+        entry.setAccount(account);
+        return transactionRepository.save(entry);
+    }
+
+    /**
+     * Applies a balance change with a single atomic UPDATE statement and appends the matching
+     * ledger entry in the same transaction. The account row is locked by the UPDATE itself,
+     * so no read-modify-write cycle or dirty check is needed and the lock is held only until commit.
+     * The balance of a split account is changed in its slots instead.
+     * <p>
+     * The account is read once, after the UPDATE: the UPDATE cannot return the new balance, which
+     * includes the changes committed by other transactions before it, and the caller reports that
+     * balance. The read finds the row already locked by this transaction, so it does not wait. Since
+     * the UPDATE bypasses the persistence context, the account must not have been loaded earlier in
+     * the surrounding transaction.
+     *
+     * @param accountNumber the account number to post to
+     * @param delta the amount to add to the balance (negative for withdrawals)
+     * @param entry the new ledger entry to append
+     * @return the updated account, or empty if the account was not found
+     * @throws InsufficientFundsException if the change would make the balance negative
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Account> postAtomically(String accountNumber, BigDecimal delta, Transaction entry) {
+        boolean adjusted = accountRepository.adjustBalance(accountNumber, delta) > 0;
+        Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
+        if (accountOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        Account account = accountOpt.get();
+        if (!adjusted) {
+            if (account.getSlotCount() == 0) {
+                throw new InsufficientFundsException(accountNumber);
+            }
+            applyDelta(account, delta);
+        }
+
+        accountCache.evictAfterCommit(accountNumber);
+        entry.setAccount(account);
+        transactionRepository.save(entry);
+        return Optional.of(account);
+    }
+
+    /**
+     * Applies one balance change per account and appends many ledger entries at once.
+     * Each account is updated once however many entries it has, and the entries are
+     * saved together, so they are written in JDBC batches when the transaction flushes.
+     *
+     * @param deltas the total amount to add to the balance of each managed account
+     * @param entries the new ledger entries to append, already linked to their accounts
+     * @return the persisted ledger entries
+     * @throws InsufficientFundsException if an account is split and its slots do not cover a withdrawal
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Transaction> postAll(Map<Account, BigDecimal> deltas, List<Transaction> entries) {
+        deltas.forEach((account, delta) -> {
+            applyDelta(account, delta);
+            accountCache.evictAfterCommit(account.getAccountNumber());
+        });
+        return transactionRepository.saveAll(entries);
+    }
+
+    /**
+     * Replaces the balance of a managed account without appending a ledger entry.
+     * The new balance of a split account is put in its first slot and its other slots are emptied.
+     * The account is evicted from the {@link AccountCache} when the transaction completes.
+     *
+     * @param account the managed account to change
+     * @param newBalance the new balance
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void replaceBalance(Account account, BigDecimal newBalance) {
+        if (account.getSlotCount() == 0) {
+            account.setBalance(newBalance);
+        } else {
+            for (BalanceSlot slot : balanceSlotRepository.findAllByAccountIdWithPessimisticWriteLock(account.getId())) {
+                slot.setBalance(slot.getSlot() == 0 ? newBalance : BigDecimal.ZERO);
+            }
+            account.setBalance(BigDecimal.ZERO);
+            account.setSlotBalance(newBalance);
+        }
+        accountCache.evictAfterCommit(account.getAccountNumber());
+    }
+
+    /**
+     * Adds a delta to the balance of a managed account, or to its slots if it is split.
+     */
+    private void applyDelta(Account account, BigDecimal delta) {
+        if (account.getSlotCount() == 0) {
+            account.setBalance(account.getBalance().add(delta));
+            return;
+        }
+
+        if (delta.signum() >= 0) {
+            // Credits never fail, so any slot will do
+            int slot = ThreadLocalRandom.current().nextInt(account.getSlotCount());
+            balanceSlotRepository.adjustBalance(account.getId(), slot, delta);
+        } else if (!debitOneSlot(account, delta.negate())) {
+            sweepSlots(account, delta.negate());
+        }
+        account.setSlotBalance(account.getSlotBalance().add(delta));
+    }
+
+    /**
+     * Debits a single slot that covers the whole amount, starting from a random one,
+     * so concurrent debits spread over the slots.
+     */
+    private boolean debitOneSlot(Account account, BigDecimal amount) {
+        List<Integer> candidates = balanceSlotRepository.findSlotsWithBalanceAtLeast(account.getId(), amount);
+        int start = candidates.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            // Guarded, since a concurrent debit may have drained the slot since it was read
+            int slot = candidates.get((start + i) % candidates.size());
+            if (balanceSlotRepository.adjustBalance(account.getId(), slot, amount.negate()) == 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Debits an amount spread over several slots, with all slots of the account locked.
+     */
+    private void sweepSlots(Account account, BigDecimal amount) {
+        List<BalanceSlot> slots = balanceSlotRepository.findAllByAccountIdWithPessimisticWriteLock(account.getId());
+        BigDecimal total = slots.stream().map(BalanceSlot::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (total.compareTo(amount) < 0) {
+            throw new InsufficientFundsException(account.getAccountNumber());
+        }
+
+        BigDecimal remaining = amount;
+        for (BalanceSlot slot : slots) {
+            BigDecimal taken = slot.getBalance().min(remaining);
+            slot.setBalance(slot.getBalance().subtract(taken));
+            remaining = remaining.subtract(taken);
+            if (remaining.signum() == 0) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package isolation_levels.service;
+
+import isolation_levels.dto.PaymentDTO;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Multilateral netting of a batch of transfers.
+ * Offsetting flows cancel out (A→B 100 and B→A 80 leave A at -20 and B at +20), so a batch
+ * can be settled with one balance change per account, whatever the number of transfers.
+ *
+ * @author JetBrains Junie
+ */
+public final class PaymentNetting {
+
+    private PaymentNetting() {
+    }
+
+    /**
+     * Computes the net position of every account of a batch.
+     * The positions are ordered by account number, which is the order in which accounts are locked.
+     * Positions always sum to zero; an account whose flows cancel out has a zero position.
+     *
+     * @param payments the transfers of the batch
+     * @return the net change of each account's balance, by account number
+     */
+    public static SortedMap<String, BigDecimal> netPositions(List<PaymentDTO> payments) {
+        SortedMap<String, BigDecimal> positions = new TreeMap<>();
+        for (PaymentDTO payment : payments) {
+            positions.merge(payment.getFromAccountNumber(), payment.getAmount().negate(), BigDecimal::add);
+            positions.merge(payment.getToAccountNumber(), payment.getAmount(), BigDecimal::add);
+        }
+        return positions;
+    }
+}
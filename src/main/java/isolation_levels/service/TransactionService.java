@@ -1,17 +1,33 @@
 package isolation_levels.service;
 
+import isolation_levels.dto.PaymentDTO;
+import isolation_levels.dto.PaymentOutcomeDTO;
+import isolation_levels.dto.TransactionCursor;
+import isolation_levels.dto.TransactionDTO;
 import isolation_levels.model.Account;
 import isolation_levels.model.Transaction;
 import isolation_levels.repository.AccountRepository;
 import isolation_levels.repository.TransactionRepository;
+import isolation_levels.retry.RetryOnConflict;
+import isolation_levels.sharding.ShardKey;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 /**
  * Service class for managing {@link Transaction} entities.
@@ -24,11 +40,14 @@ public class TransactionService {
 
     private final TransactionRepository transactionRepository;
     private final AccountRepository accountRepository;
+    private final LedgerWriter ledgerWriter;
 
     @Autowired
-    public TransactionService(TransactionRepository transactionRepository, AccountRepository accountRepository) {
+    public TransactionService(TransactionRepository transactionRepository, AccountRepository accountRepository,
+                              LedgerWriter ledgerWriter) {
         this.transactionRepository = transactionRepository;
         this.accountRepository = accountRepository;
+        this.ledgerWriter = ledgerWriter;
     }
 
     /**
@@ -40,26 +59,19 @@ public class TransactionService {
      * @param type the transaction type (DEBIT or CREDIT)
      * @return the created transaction, or empty if the account was not found
      */
+    @RetryOnConflict
     @Transactional
-    public Optional<Transaction> createTransaction(String accountNumber, BigDecimal amount, 
+    public Optional<Transaction> createTransaction(@ShardKey String accountNumber, BigDecimal amount, 
                                                   String description, Transaction.TransactionType type) {
         Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
         if (accountOpt.isPresent()) {
             Account account = accountOpt.get();
             
-            // Update account balance
-            if (type == Transaction.TransactionType.CREDIT) {
-                account.setBalance(account.getBalance().add(amount));
-            } else {
-                account.setBalance(account.getBalance().subtract(amount));
-            }
-            
-            // Create and save transaction
+            // Update account balance and save transaction
+            BigDecimal delta = type == Transaction.TransactionType.CREDIT ? amount : amount.negate();
             Transaction transaction = new Transaction(amount, description, type);
-            account.addTransaction(transaction);
             
-            accountRepository.save(account);
-            return Optional.of(transaction);
+            return Optional.of(ledgerWriter.post(account, delta, transaction));
         }
         return Optional.empty();
     }
@@ -69,12 +81,11 @@ public class TransactionService {
      * This can lead to dirty reads.
      *
      * @param accountNumber the account number
-     * @return a list of transactions for the account, or empty list if the account was not found
+     * @return a list of transaction DTOs for the account, or empty list if the account was not found
      */
     @Transactional(isolation = Isolation.READ_UNCOMMITTED)
-    public List<Transaction> getTransactionsReadUncommitted(String accountNumber) {
-        Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
-        return accountOpt.map(transactionRepository::findByAccount).orElse(List.of());
+    public List<TransactionDTO> getTransactionsReadUncommitted(@ShardKey String accountNumber) {
+        return transactionRepository.findDTOsByAccountNumber(accountNumber);
     }
 
     /**
@@ -82,12 +93,11 @@ public class TransactionService {
      * This prevents dirty reads but allows non-repeatable reads and phantom reads.
      *
      * @param accountNumber the account number
-     * @return a list of transactions for the account, or empty list if the account was not found
+     * @return a list of transaction DTOs for the account, or empty list if the account was not found
      */
     @Transactional(isolation = Isolation.READ_COMMITTED)
-    public List<Transaction> getTransactionsReadCommitted(String accountNumber) {
-        Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
-        return accountOpt.map(transactionRepository::findByAccount).orElse(List.of());
+    public List<TransactionDTO> getTransactionsReadCommitted(@ShardKey String accountNumber) {
+        return transactionRepository.findDTOsByAccountNumber(accountNumber);
     }
 
     /**
@@ -95,12 +105,11 @@ public class TransactionService {
      * This prevents dirty reads and non-repeatable reads but allows phantom reads.
      *
      * @param accountNumber the account number
-     * @return a list of transactions for the account, or empty list if the account was not found
+     * @return a list of transaction DTOs for the account, or empty list if the account was not found
      */
     @Transactional(isolation = Isolation.REPEATABLE_READ)
-    public List<Transaction> getTransactionsRepeatableRead(String accountNumber) {
-        Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
-        return accountOpt.map(transactionRepository::findByAccount).orElse(List.of());
+    public List<TransactionDTO> getTransactionsRepeatableRead(@ShardKey String accountNumber) {
+        return transactionRepository.findDTOsByAccountNumber(accountNumber);
     }
 
     /**
@@ -108,70 +117,322 @@ public class TransactionService {
      * This prevents dirty reads, non-repeatable reads, and phantom reads.
      *
      * @param accountNumber the account number
-     * @return a list of transactions for the account, or empty list if the account was not found
+     * @return a list of transaction DTOs for the account, or empty list if the account was not found
      */
     @Transactional(isolation = Isolation.SERIALIZABLE)
-    public List<Transaction> getTransactionsSerializable(String accountNumber) {
-        Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
-        return accountOpt.map(transactionRepository::findByAccount).orElse(List.of());
+    public List<TransactionDTO> getTransactionsSerializable(@ShardKey String accountNumber) {
+        return transactionRepository.findDTOsByAccountNumber(accountNumber);
     }
 
     /**
      * Retrieves all transactions for an account, ordered by timestamp (newest first).
      *
      * @param accountNumber the account number
-     * @return a list of transactions for the account, ordered by timestamp, or empty list if the account was not found
+     * @return a list of transaction DTOs for the account, ordered by timestamp, or empty list if the account was not found
      */
     @Transactional(readOnly = true)
-    public List<Transaction> getTransactionsByAccountNumberOrderByTimestampDesc(String accountNumber) {
-        Optional<Account> accountOpt = accountRepository.findByAccountNumber(accountNumber);
-        return accountOpt.map(transactionRepository::findByAccountOrderByTimestampDesc).orElse(List.of());
+    public List<TransactionDTO> getTransactionsByAccountNumberOrderByTimestampDesc(@ShardKey String accountNumber) {
+        return transactionRepository.findDTOsByAccountNumberOrderByTimestampDesc(accountNumber);
+    }
+
+    /**
+     * Retrieves one page of an account's transactions, ordered by timestamp and ID (newest first).
+     * Pages are addressed by a keyset cursor instead of an offset, so reading a deep page
+     * costs the same as reading the first one.
+     *
+     * @param accountNumber the account number
+     * @param cursor the position of the last transaction of the previous page, or null for the first page
+     * @param limit the maximum number of transactions to return
+     * @return up to limit transactions older than the cursor, or empty list if the account was not found
+     */
+    @Transactional(readOnly = true)
+    public List<TransactionDTO> getTransactionPage(@ShardKey String accountNumber, TransactionCursor cursor, int limit) {
+        PageRequest pageRequest = PageRequest.of(0, limit);
+        if (cursor == null) {
+            return transactionRepository.findFirstPageByAccountNumber(accountNumber, pageRequest);
+        }
+        return transactionRepository.findPageByAccountNumberBefore(
+                accountNumber, cursor.getTimestamp(), cursor.getId(), pageRequest);
     }
 
     /**
-     * Transfers money between two accounts using SERIALIZABLE isolation level to ensure consistency.
+     * Transfers money between two accounts on the same shard using READ_COMMITTED isolation level.
+     * Both accounts are locked with a pessimistic write lock, always in ascending account number order
+     * (see {@link #lockAccounts}), so that concurrent transfers in opposite directions queue on the same
+     * first lock instead of deadlocking. The locks make SERIALIZABLE unnecessary: no other transaction can change either
+     * balance until this one commits. Requests rejected before the first lock never take a physical connection,
+     * since the DataSource is lazy; {@link TransferService} also validates them before the transaction starts.
      *
      * @param fromAccountNumber the account number to transfer from
      * @param toAccountNumber the account number to transfer to
      * @param amount the amount to transfer
      * @return true if the transfer was successful, false otherwise
+     * @throws isolation_levels.sharding.CrossShardException if the accounts are on different shards
+     * @throws InsufficientFundsException if the source account is split and its slots were drained concurrently
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE)
-    public boolean transferMoney(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+    @RetryOnConflict
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public boolean transferMoney(@ShardKey String fromAccountNumber, @ShardKey String toAccountNumber, BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             return false; // Amount must be positive
         }
-        
-        Optional<Account> fromAccountOpt = accountRepository.findByAccountNumber(fromAccountNumber);
-        Optional<Account> toAccountOpt = accountRepository.findByAccountNumber(toAccountNumber);
-        
-        if (fromAccountOpt.isEmpty() || toAccountOpt.isEmpty()) {
-            return false; // One or both accounts not found
+        if (fromAccountNumber.equals(toAccountNumber)) {
+            return false; // Cannot transfer to the same account
         }
         
-        Account fromAccount = fromAccountOpt.get();
-        Account toAccount = toAccountOpt.get();
+        // Lock both accounts in a canonical order
+        Map<String, Account> accounts = lockAccounts(new TreeSet<>(List.of(fromAccountNumber, toAccountNumber)));
+        Account fromAccount = accounts.get(fromAccountNumber);
+        Account toAccount = accounts.get(toAccountNumber);
+        if (fromAccount == null || toAccount == null) {
+            return false; // Account not found
+        }
         
         // Check if the from account has sufficient funds
         if (fromAccount.getBalance().compareTo(amount) < 0) {
             return false; // Insufficient funds
         }
         
-        // Update balances
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
-        
-        // Create transactions
-        Transaction debitTransaction = new Transaction(amount, "Transfer to " + toAccountNumber, Transaction.TransactionType.DEBIT);
-        Transaction creditTransaction = new Transaction(amount, "Transfer from " + fromAccountNumber, Transaction.TransactionType.CREDIT);
-        
-        fromAccount.addTransaction(debitTransaction);
-        toAccount.addTransaction(creditTransaction);
-        
-        // Save accounts
-        accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
+        // Create transactions and update balances
+        ledgerWriter.post(fromAccount, amount.negate(), transferEntry(fromAccount, toAccount, amount, Transaction.TransactionType.DEBIT));
+        ledgerWriter.post(toAccount, amount, transferEntry(toAccount, fromAccount, amount, Transaction.TransactionType.CREDIT));
         
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Applies a group of independent transfers between accounts on the same shard in one transaction,
+     * using READ_COMMITTED isolation level. Each transfer follows the rules of {@link #transferMoney} and succeeds
+     * or fails on its own, against the balances left by the transfers before it; unlike {@link #applyPayments},
+     * a failed transfer does not stop the others. Every account of the group is locked once, in ascending account
+     * number order, and the successful transfers are written with one balance update per account, so the group
+     * shares a single commit.
+     *
+     * @param payments the transfers to apply, in order
+     * @return the outcome of each transfer, in group order: APPLIED, INVALID, ACCOUNT_NOT_FOUND or INSUFFICIENT_FUNDS
+     * @throws InsufficientFundsException if a split source account had its slots drained concurrently;
+     * nothing is written then
+     */
+    @RetryOnConflict
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<PaymentOutcomeDTO> transferMoneyInGroup(List<PaymentDTO> payments) {
+        // Lock all accounts in a canonical order
+        Map<String, Account> accounts = lockAccounts(accountNumbersOf(payments));
+
+        // Apply the transfers in order; a failed transfer is skipped and leaves the balances unchanged
+        Map<Account, BigDecimal> deltas = new LinkedHashMap<>();
+        List<Transaction> entries = new ArrayList<>(payments.size() * 2);
+        List<PaymentOutcomeDTO> result = new ArrayList<>(payments.size());
+        for (int i = 0; i < payments.size(); i++) {
+            PaymentDTO payment = payments.get(i);
+            Account fromAccount = accounts.get(payment.getFromAccountNumber());
+            Account toAccount = accounts.get(payment.getToAccountNumber());
+            PaymentOutcomeDTO.Outcome outcome;
+            if (payment.getAmount().compareTo(BigDecimal.ZERO) <= 0
+                    || payment.getFromAccountNumber().equals(payment.getToAccountNumber())) {
+                outcome = PaymentOutcomeDTO.Outcome.INVALID;
+            } else if (fromAccount == null || toAccount == null) {
+                outcome = PaymentOutcomeDTO.Outcome.ACCOUNT_NOT_FOUND;
+            } else if (fromAccount.getBalance().add(deltas.getOrDefault(fromAccount, BigDecimal.ZERO))
+                    .compareTo(payment.getAmount()) < 0) {
+                outcome = PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS;
+            } else {
+                deltas.merge(fromAccount, payment.getAmount().negate(), BigDecimal::add);
+                deltas.merge(toAccount, payment.getAmount(), BigDecimal::add);
+                addTransferEntries(entries, fromAccount, toAccount, payment.getAmount());
+                outcome = PaymentOutcomeDTO.Outcome.APPLIED;
+            }
+            result.add(new PaymentOutcomeDTO(i, payment, outcome));
+        }
+
+        if (!entries.isEmpty()) {
+            ledgerWriter.postAll(deltas, entries);
+        }
+        return result;
+    }
+
+    /**
+     * Applies a batch of transfers between accounts on the same shard, all-or-nothing, using READ_COMMITTED isolation level.
+     * Every account of the batch is locked once, in ascending account number order (see {@link #lockAccounts}),
+     * so concurrent batches cannot deadlock on each other or on the other transfers of this service. The transfers are then
+     * replayed in batch order against the locked balances in memory; if all of them succeed, each account's balance
+     * is updated once with its net change and the ledger entries are inserted together in JDBC batches.
+     * If any transfer fails, nothing is written: the failing transfers carry their reason and the others are NOT_APPLIED.
+     * The transfers are expected to be validated already (see {@link BatchPaymentService}).
+     *
+     * @param payments the transfers to apply, in order
+     * @return the outcome of each transfer, in batch order
+     */
+    @RetryOnConflict
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<PaymentOutcomeDTO> applyPayments(List<PaymentDTO> payments) {
+        // Lock all accounts in a canonical order
+        Map<String, Account> accounts = lockAccounts(accountNumbersOf(payments));
+
+        // Replay the transfers in order, aggregating the balance changes per account
+        Map<Account, BigDecimal> deltas = new LinkedHashMap<>();
+        List<PaymentOutcomeDTO.Outcome> outcomes = new ArrayList<>(payments.size());
+        for (PaymentDTO payment : payments) {
+            Account fromAccount = accounts.get(payment.getFromAccountNumber());
+            Account toAccount = accounts.get(payment.getToAccountNumber());
+            if (fromAccount == null || toAccount == null) {
+                outcomes.add(PaymentOutcomeDTO.Outcome.ACCOUNT_NOT_FOUND);
+            } else if (fromAccount.getBalance().add(deltas.getOrDefault(fromAccount, BigDecimal.ZERO))
+                    .compareTo(payment.getAmount()) < 0) {
+                outcomes.add(PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS);
+            } else {
+                deltas.merge(fromAccount, payment.getAmount().negate(), BigDecimal::add);
+                deltas.merge(toAccount, payment.getAmount(), BigDecimal::add);
+                outcomes.add(PaymentOutcomeDTO.Outcome.APPLIED);
+            }
+        }
+
+        return settle(payments, outcomes, accounts, deltas);
+    }
+
+    /**
+     * Applies a batch of transfers between accounts on the same shard, all-or-nothing, after multilateral netting,
+     * using READ_COMMITTED isolation level. Only the accounts whose net position is not zero are locked, with a single
+     * pessimistic write query in ascending account number order; accounts whose flows cancel out are read without a
+     * lock, since their balance does not change. Funds are checked against the net positions, so a hub account only
+     * needs to cover what it pays out beyond what it receives, whatever the order of the transfers in the batch.
+     * Each changed account gets one balance update and every transfer still gets its own pair of ledger entries.
+     * If any account lacks funds, nothing is written: the transfers paid from it are INSUFFICIENT_FUNDS and the others
+     * are NOT_APPLIED. The transfers are expected to be validated already (see {@link BatchPaymentService}).
+     *
+     * @param payments the transfers to apply
+     * @return the outcome of each transfer, in batch order
+     */
+    @RetryOnConflict
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<PaymentOutcomeDTO> applyNettedPayments(List<PaymentDTO> payments) {
+        SortedMap<String, BigDecimal> positions = PaymentNetting.netPositions(payments);
+
+        // Lock the accounts whose balance changes in a canonical order, and read the others
+        SortedSet<String> changedAccountNumbers = new TreeSet<>();
+        List<String> unchangedAccountNumbers = new ArrayList<>();
+        positions.forEach((accountNumber, position) ->
+                (position.signum() != 0 ? changedAccountNumbers : unchangedAccountNumbers).add(accountNumber));
+        Map<String, Account> accounts = lockAccounts(changedAccountNumbers);
+        if (!unchangedAccountNumbers.isEmpty()) {
+            for (Account account : accountRepository.findAllByAccountNumberIn(unchangedAccountNumbers)) {
+                accounts.put(account.getAccountNumber(), account);
+            }
+        }
+
+        // Check the funds of each account against its net position
+        Map<Account, BigDecimal> deltas = new LinkedHashMap<>();
+        Set<String> overdrawnAccountNumbers = new HashSet<>();
+        positions.forEach((accountNumber, position) -> {
+            Account account = accounts.get(accountNumber);
+            if (account == null || position.signum() == 0) {
+                return;
+            }
+            if (account.getBalance().add(position).signum() < 0) {
+                overdrawnAccountNumbers.add(accountNumber);
+            }
+            deltas.put(account, position);
+        });
+
+        List<PaymentOutcomeDTO.Outcome> outcomes = new ArrayList<>(payments.size());
+        for (PaymentDTO payment : payments) {
+            if (!accounts.containsKey(payment.getFromAccountNumber()) || !accounts.containsKey(payment.getToAccountNumber())) {
+                outcomes.add(PaymentOutcomeDTO.Outcome.ACCOUNT_NOT_FOUND);
+            } else if (overdrawnAccountNumbers.contains(payment.getFromAccountNumber())) {
+                outcomes.add(PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS);
+            } else {
+                outcomes.add(PaymentOutcomeDTO.Outcome.APPLIED);
+            }
+        }
+
+        return settle(payments, outcomes, accounts, deltas);
+    }
+
+    /**
+     * Writes a checked batch: one balance update per account and a debit and a credit entry per transfer.
+     * If any transfer did not pass its checks, nothing is written and the transfers that did are NOT_APPLIED.
+     */
+    private List<PaymentOutcomeDTO> settle(List<PaymentDTO> payments, List<PaymentOutcomeDTO.Outcome> outcomes,
+                                           Map<String, Account> accounts, Map<Account, BigDecimal> deltas) {
+        List<PaymentOutcomeDTO> result = new ArrayList<>(payments.size());
+        if (outcomes.stream().anyMatch(outcome -> outcome != PaymentOutcomeDTO.Outcome.APPLIED)) {
+            for (int i = 0; i < payments.size(); i++) {
+                PaymentOutcomeDTO.Outcome outcome = outcomes.get(i) == PaymentOutcomeDTO.Outcome.APPLIED
+                        ? PaymentOutcomeDTO.Outcome.NOT_APPLIED
+                        : outcomes.get(i);
+                result.add(new PaymentOutcomeDTO(i, payments.get(i), outcome));
+            }
+            return result;
+        }
+
+        // Create all ledger entries and write them with one balance update per account
+        List<Transaction> entries = new ArrayList<>(payments.size() * 2);
+        for (int i = 0; i < payments.size(); i++) {
+            PaymentDTO payment = payments.get(i);
+            addTransferEntries(entries, accounts.get(payment.getFromAccountNumber()),
+                    accounts.get(payment.getToAccountNumber()), payment.getAmount());
+            result.add(new PaymentOutcomeDTO(i, payment, PaymentOutcomeDTO.Outcome.APPLIED));
+        }
+        ledgerWriter.postAll(deltas, entries);
+
+        return result;
+    }
+
+    /**
+     * Collects the source and target account numbers of a list of transfers, in ascending order.
+     */
+    private static SortedSet<String> accountNumbersOf(List<PaymentDTO> payments) {
+        SortedSet<String> accountNumbers = new TreeSet<>();
+        for (PaymentDTO payment : payments) {
+            accountNumbers.add(payment.getFromAccountNumber());
+            accountNumbers.add(payment.getToAccountNumber());
+        }
+        return accountNumbers;
+    }
+
+    /**
+     * Locks accounts with a pessimistic write lock each, one after the other in the order of the set, so that
+     * transactions locking overlapping accounts cannot deadlock. Every caller passes the account numbers in
+     * Java's {@link String} order; the accounts are not locked with one ordered query, since the database
+     * collation may order account numbers differently and the order the rows are locked in is then not the
+     * order of the other callers.
+     *
+     * @param accountNumbers the account numbers to lock, in ascending order
+     * @return the accounts found, by account number
+     */
+    private Map<String, Account> lockAccounts(SortedSet<String> accountNumbers) {
+        Map<String, Account> accounts = new HashMap<>();
+        for (String accountNumber : accountNumbers) {
+            accountRepository.findByAccountNumberWithPessimisticWriteLock(accountNumber)
+                    .ifPresent(account -> accounts.put(accountNumber, account));
+        }
+        return accounts;
+    }
+
+    /**
+     * Adds the debit entry of the source account and the credit entry of the target account of a transfer.
+     */
+    private static void addTransferEntries(List<Transaction> entries, Account fromAccount, Account toAccount,
+                                           BigDecimal amount) {
+        entries.add(transferEntry(fromAccount, toAccount, amount, Transaction.TransactionType.DEBIT));
+        entries.add(transferEntry(toAccount, fromAccount, amount, Transaction.TransactionType.CREDIT));
+    }
+
+    /**
+     * Creates the ledger entry of one side of a transfer.
+     *
+     * @param account the account of the entry
+     * @param counterparty the other account of the transfer
+     * @param amount the amount transferred
+     * @param type DEBIT for the source account, CREDIT for the target account
+     * @return the entry, assigned to the account
+     */
+    private static Transaction transferEntry(Account account, Account counterparty, BigDecimal amount,
+                                             Transaction.TransactionType type) {
+        String description = (type == Transaction.TransactionType.DEBIT ? "Transfer to " : "Transfer from ")
+                + counterparty.getAccountNumber();
+        Transaction entry = new Transaction(amount, description, type);
+        entry.setAccount(account);
+        return entry;
+    }
+}
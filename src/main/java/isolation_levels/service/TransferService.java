@@ -0,0 +1,130 @@
+package isolation_levels.service;
+
+import isolation_levels.cache.AccountCache;
+import isolation_levels.model.TransferSaga;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.saga.TransferSagaCoordinator;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Entry point for money transfers.
+ * Transfers between accounts on the same shard run as one local transaction
+ * ({@link TransactionService#transferMoney}); transfers across shards run as a saga
+ * ({@link TransferSagaCoordinator}).
+ * <p>
+ * Requests are validated before any transaction starts: invalid amounts and same-account transfers
+ * are rejected without touching the database, and unknown accounts cost at most a short existence
+ * query (none if the account is in the {@link AccountCache}), instead of a locking transaction.
+ * <p>
+ * With the in-memory ledger engine enabled, {@link isolation_levels.engine.EngineTransferService} is used instead.
+ *
+ * @author JetBrains Junie
+ */
+@Service
+public class TransferService {
+
+    private final TransactionService transactionService;
+    private final TransferSagaCoordinator transferSagaCoordinator;
+    private final AccountRepository accountRepository;
+    private final AccountCache accountCache;
+    private final ShardRouter shardRouter;
+    private final ShardTemplate shardTemplate;
+
+    @Autowired
+    public TransferService(TransactionService transactionService, TransferSagaCoordinator transferSagaCoordinator,
+                           AccountRepository accountRepository, AccountCache accountCache,
+                           ShardRouter shardRouter, ShardTemplate shardTemplate) {
+        this.transactionService = transactionService;
+        this.transferSagaCoordinator = transferSagaCoordinator;
+        this.accountRepository = accountRepository;
+        this.accountCache = accountCache;
+        this.shardRouter = shardRouter;
+        this.shardTemplate = shardTemplate;
+    }
+
+    /**
+     * Transfers money between two accounts.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @param amount the amount to transfer
+     * @return the outcome of the transfer
+     */
+    public TransferStatus transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            return TransferStatus.FAILED; // Amount must be positive
+        }
+        if (fromAccountNumber.equals(toAccountNumber)) {
+            return TransferStatus.FAILED; // Cannot transfer to the same account
+        }
+        if (!accountsExist(fromAccountNumber, toAccountNumber)) {
+            return TransferStatus.FAILED; // Account not found
+        }
+
+        if (shardRouter.shardOf(fromAccountNumber) == shardRouter.shardOf(toAccountNumber)) {
+            try {
+                return transactionService.transferMoney(fromAccountNumber, toAccountNumber, amount)
+                        ? TransferStatus.COMPLETED
+                        : TransferStatus.FAILED;
+            } catch (InsufficientFundsException e) {
+                return TransferStatus.FAILED; // The slots of a split account were drained concurrently
+            }
+        }
+
+        Optional<TransferSaga> sagaOpt;
+        try {
+            sagaOpt = transferSagaCoordinator.transfer(fromAccountNumber, toAccountNumber, amount);
+        } catch (InsufficientFundsException e) {
+            return TransferStatus.FAILED; // The slots of a split account were drained concurrently
+        }
+        if (sagaOpt.isEmpty()) {
+            return TransferStatus.FAILED;
+        }
+        return switch (sagaOpt.get().getState()) {
+            case COMPLETED -> TransferStatus.COMPLETED;
+            case COMPENSATED -> TransferStatus.FAILED;
+            case DEBITED -> TransferStatus.PENDING;
+        };
+    }
+
+    /**
+     * Checks whether both accounts of a transfer exist, outside of any transaction.
+     * Accounts are never deleted, so a cached account is known to exist.
+     *
+     * @param fromAccountNumber the account number to transfer from
+     * @param toAccountNumber the account number to transfer to
+     * @return true if both accounts exist, false otherwise
+     */
+    public boolean accountsExist(String fromAccountNumber, String toAccountNumber) {
+        return accountExists(fromAccountNumber) && accountExists(toAccountNumber);
+    }
+
+    /**
+     * Checks whether an account exists, outside of any transaction.
+     * Accounts are never deleted, so a cached account is known to exist.
+     */
+    private boolean accountExists(String accountNumber) {
+        if (accountCache.get(accountNumber).isPresent()) {
+            return true;
+        }
+        return shardTemplate.onShardOf(accountNumber, () -> accountRepository.existsByAccountNumber(accountNumber));
+    }
+
+    /**
+     * Enum representing the outcome of a transfer.
+     */
+    public enum TransferStatus {
+        /** The money has moved. */
+        COMPLETED,
+        /** The source account is debited and the credit will be finished by recovery. */
+        PENDING,
+        /** No money has moved, or the debit has been refunded. */
+        FAILED
+    }
+}
@@ -0,0 +1,19 @@
+package isolation_levels.sharding;
+
+/**
+ * Exception thrown when a single local transaction would have to touch accounts on different shards.
+ *
+ * @author JetBrains Junie
+ */
+public class CrossShardException extends RuntimeException {
+
+    /**
+     * Creates a new exception for two accounts on different shards.
+     *
+     * @param accountNumber the first account number
+     * @param otherAccountNumber the account number on another shard
+     */
+    public CrossShardException(String accountNumber, String otherAccountNumber) {
+        super("Accounts " + accountNumber + " and " + otherAccountNumber + " are on different shards");
+    }
+}
@@ -0,0 +1,36 @@
+package isolation_levels.sharding;
+
+/**
+ * Holds the shard of the current thread, as set by {@link ShardKeyAspect} and {@link ShardTemplate}.
+ *
+ * @author JetBrains Junie
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Returns the shard of the current thread.
+     *
+     * @return the shard index, or null if no shard is selected
+     */
+    public static Integer getShard() {
+        return SHARD.get();
+    }
+
+    /**
+     * Sets the shard of the current thread.
+     *
+     * @param shard the shard index, or null to clear the selection
+     */
+    public static void setShard(Integer shard) {
+        if (shard == null) {
+            SHARD.remove();
+        } else {
+            SHARD.set(shard);
+        }
+    }
+}
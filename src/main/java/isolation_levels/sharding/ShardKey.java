@@ -0,0 +1,20 @@
+package isolation_levels.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service method parameter holding the account number that selects the shard.
+ * The method runs on the shard that owns the account. If several parameters are marked,
+ * they must all map to the same shard, otherwise a {@link CrossShardException} is thrown.
+ *
+ * @author JetBrains Junie
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ShardKey {
+}
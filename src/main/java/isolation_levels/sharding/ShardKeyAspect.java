@@ -0,0 +1,93 @@
+package isolation_levels.sharding;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * Aspect that selects the shard of service methods with a {@link ShardKey} parameter.
+ * It runs after {@link isolation_levels.retry.RetryOnConflictAspect} but before the transaction interceptor,
+ * so every retry attempt and its transaction use the shard of the account.
+ *
+ * @author JetBrains Junie
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class ShardKeyAspect {
+
+    /** The shard that connections go to when no shard is selected, see {@link ShardRoutingDataSource}. */
+    private static final int DEFAULT_SHARD = 0;
+
+    private final ShardRouter shardRouter;
+
+    public ShardKeyAspect(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Invokes the method on the shard of its {@link ShardKey} parameters.
+     *
+     * @param joinPoint the method invocation
+     * @return the result of the method
+     * @throws Throwable any failure of the method
+     * @throws CrossShardException if the keys map to different shards, or if a transaction
+     * is already active on another shard
+     */
+    @Around("execution(* isolation_levels..*(.., @isolation_levels.sharding.ShardKey (*), ..))")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        Annotation[][] parameterAnnotations =
+                ((MethodSignature) joinPoint.getSignature()).getMethod().getParameterAnnotations();
+        Object[] args = joinPoint.getArgs();
+
+        String shardKey = null;
+        Integer shard = null;
+        for (int i = 0; i < args.length; i++) {
+            if (!isShardKey(parameterAnnotations[i]) || args[i] == null) {
+                continue;
+            }
+            String accountNumber = (String) args[i];
+            int accountShard = shardRouter.shardOf(accountNumber);
+            if (shard == null) {
+                shardKey = accountNumber;
+                shard = accountShard;
+            } else if (shard != accountShard) {
+                throw new CrossShardException(shardKey, accountNumber);
+            }
+        }
+
+        Integer previous = ShardContext.getShard();
+        if (shard == null || shard.equals(previous)) {
+            return joinPoint.proceed();
+        }
+        // Without a selected shard, the surrounding transaction runs on the default shard
+        int current = previous != null ? previous : DEFAULT_SHARD;
+        if (shard != current && TransactionSynchronizationManager.isActualTransactionActive()) {
+            // The surrounding transaction is bound to a connection of another shard
+            throw new CrossShardException(shardKey, "the current transaction");
+        }
+
+        ShardContext.setShard(shard);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardContext.setShard(previous);
+        }
+    }
+
+    private static boolean isShardKey(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof ShardKey) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
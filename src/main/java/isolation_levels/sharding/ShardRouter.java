@@ -0,0 +1,40 @@
+package isolation_levels.sharding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps account numbers to shards.
+ * An account and all of its transactions live on the shard chosen by a hash of the account number,
+ * so every single-account operation runs against exactly one database.
+ * With the default of one shard every account maps to shard 0.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+public class ShardRouter {
+
+    private final int shardCount;
+
+    public ShardRouter(@Value("${isolation-levels.sharding.shard-count:1}") int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+        }
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Returns the shard that owns an account.
+     * The hash must stay stable across releases, otherwise existing accounts would be looked up on the wrong shard.
+     *
+     * @param accountNumber the account number
+     * @return the shard index, between 0 and {@code shardCount - 1}
+     */
+    public int shardOf(String accountNumber) {
+        return Math.floorMod(accountNumber.hashCode(), shardCount);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+}
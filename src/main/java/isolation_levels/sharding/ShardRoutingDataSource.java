@@ -0,0 +1,54 @@
+package isolation_levels.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource that routes connections to the shard selected in the {@link ShardContext}.
+ * Connections fetched without a selected shard go to shard 0, which is also where Hibernate
+ * reads the database metadata at startup.
+ * Closing this DataSource closes the pools of all shards.
+ *
+ * @author JetBrains Junie
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private final List<? extends DataSource> shards;
+
+    /**
+     * Creates a routing DataSource over the given shards.
+     *
+     * @param shards the DataSource of each shard, indexed by shard
+     */
+    public ShardRoutingDataSource(List<? extends DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targetDataSources.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.getShard();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource shard : shards) {
+            if (shard instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
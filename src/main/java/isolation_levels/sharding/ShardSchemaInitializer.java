@@ -0,0 +1,45 @@
+package isolation_levels.sharding;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the mapped tables on every shard but the first at startup.
+ * Hibernate's {@code ddl-auto} only reaches shard 0, the default target of the
+ * {@link ShardRoutingDataSource}. Enabled with {@code isolation-levels.sharding.initialize-schema=true},
+ * which is meant for local runs and tests against empty in-memory databases.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+@ConditionalOnProperty("isolation-levels.sharding.initialize-schema")
+public class ShardSchemaInitializer {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ShardTemplate shardTemplate;
+    private final ShardRouter shardRouter;
+
+    public ShardSchemaInitializer(EntityManagerFactory entityManagerFactory, ShardTemplate shardTemplate,
+                                  ShardRouter shardRouter) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.shardTemplate = shardTemplate;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Exports the mapped tables to shards 1 to N-1.
+     */
+    @PostConstruct
+    public void initializeSchema() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        for (int shard = 1; shard < shardRouter.getShardCount(); shard++) {
+            shardTemplate.onShard(shard, () -> {
+                sessionFactory.getSchemaManager().exportMappedObjects(true);
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package isolation_levels.sharding;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs work on specific shards and fans queries out to all shards.
+ * Scatter-gather queries run on every shard in parallel, each in its own read-only transaction,
+ * and their latency is recorded in the {@code isolation_levels.sharding.fan_out} timer.
+ *
+ * @author JetBrains Junie
+ */
+@Component
+public class ShardTemplate {
+
+    private static final String FAN_OUT_TIMER = "isolation_levels.sharding.fan_out";
+
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+
+    @Autowired
+    public ShardTemplate(ShardRouter shardRouter, PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry) {
+        this.shardRouter = shardRouter;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.executor = shardRouter.getShardCount() > 1 ? newExecutor(shardRouter.getShardCount()) : null;
+    }
+
+    private static ExecutorService newExecutor(int shardCount) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs an action on the shard that owns an account.
+     * The action must open its own transaction; a transaction that is already active stays on its shard.
+     *
+     * @param accountNumber the account number selecting the shard
+     * @param action the action to run
+     * @return the result of the action
+     */
+    public <T> T onShardOf(String accountNumber, Supplier<T> action) {
+        return onShard(shardRouter.shardOf(accountNumber), action);
+    }
+
+    /**
+     * Runs an action on a shard.
+     * The action must open its own transaction; a transaction that is already active stays on its shard.
+     *
+     * @param shard the shard index
+     * @param action the action to run
+     * @return the result of the action
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = ShardContext.getShard();
+        ShardContext.setShard(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.setShard(previous);
+        }
+    }
+
+    /**
+     * Runs a query on every shard in parallel and concatenates the results in shard order.
+     *
+     * @param operation the name of the operation, used to tag the fan-out timer
+     * @param query the query to run on each shard, inside a read-only transaction
+     * @return the results of all shards
+     */
+    public <T> List<T> scatterGather(String operation, Supplier<List<T>> query) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (executor == null) {
+                return new ArrayList<>(onShard(0, () -> readOnlyTransactionTemplate.execute(status -> query.get())));
+            }
+
+            List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                int target = shard;
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> onShard(target, () -> readOnlyTransactionTemplate.execute(status -> query.get())),
+                        executor));
+            }
+
+            List<T> results = new ArrayList<>();
+            for (CompletableFuture<List<T>> future : futures) {
+                results.addAll(join(future));
+            }
+            return results;
+        } finally {
+            sample.stop(meterRegistry.timer(FAN_OUT_TIMER, "operation", operation));
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
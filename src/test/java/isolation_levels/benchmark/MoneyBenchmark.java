@@ -0,0 +1,93 @@
+package isolation_levels.benchmark;
+
+import isolation_levels.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the {@link BigDecimal} balance path used by the services
+ * with the {@code long} minor-unit path of {@link Money}.
+ * Each benchmark performs the same withdrawal step: parse the amount, check the funds, update the balance.
+ * <p>
+ * Run {@link #main(String[])} from the test classpath; JMH options such as {@code -prof gc}
+ * can be passed as arguments to compare allocation rates.
+ *
+ * @author JetBrains Junie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final String AMOUNT = "12.34";
+
+    private BigDecimal bigDecimalBalance;
+    private BigDecimal bigDecimalAmount;
+    private long minorBalance;
+    private long minorAmount;
+
+    @Setup
+    public void setUp() {
+        bigDecimalBalance = new BigDecimal("1000000000.00");
+        bigDecimalAmount = new BigDecimal(AMOUNT);
+        minorBalance = Money.parseMinor("1000000000.00");
+        minorAmount = Money.parseMinor(AMOUNT);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalWithdraw() {
+        BigDecimal newBalance = bigDecimalBalance.subtract(bigDecimalAmount);
+        if (newBalance.compareTo(BigDecimal.ZERO) >= 0) {
+            bigDecimalBalance = newBalance.add(bigDecimalAmount);
+        }
+        return bigDecimalBalance;
+    }
+
+    @Benchmark
+    public long minorUnitsWithdraw() {
+        if (Money.covers(minorBalance, minorAmount)) {
+            minorBalance = Money.add(Money.subtract(minorBalance, minorAmount), minorAmount);
+        }
+        return minorBalance;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalParseAndWithdraw() {
+        BigDecimal amount = new BigDecimal(AMOUNT);
+        BigDecimal newBalance = bigDecimalBalance.subtract(amount);
+        if (newBalance.compareTo(BigDecimal.ZERO) >= 0) {
+            bigDecimalBalance = newBalance.add(amount);
+        }
+        return bigDecimalBalance;
+    }
+
+    @Benchmark
+    public long minorUnitsParseAndWithdraw() {
+        long amount = Money.parseMinor(AMOUNT);
+        if (Money.covers(minorBalance, amount)) {
+            minorBalance = Money.add(Money.subtract(minorBalance, amount), amount);
+        }
+        return minorBalance;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] jmhArgs = new String[args.length + 1];
+        jmhArgs[0] = MoneyBenchmark.class.getSimpleName();
+        System.arraycopy(args, 0, jmhArgs, 1, args.length);
+        org.openjdk.jmh.Main.main(jmhArgs);
+    }
+}
@@ -0,0 +1,293 @@
+package isolation_levels.benchmark;
+
+import isolation_levels.App;
+import isolation_levels.dto.AccountDTO;
+import isolation_levels.dto.TransactionDTO;
+import isolation_levels.model.Account;
+import isolation_levels.model.Transaction;
+import isolation_levels.service.AccountService;
+import isolation_levels.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the {@link AccountService} and {@link TransactionService} methods against a real
+ * Spring context, comparing the isolation levels and locking strategies under load.
+ * Each trial boots the application on an embedded H2 database ({@code -p database=h2}, the default)
+ * or on a local MySQL database ({@code -p database=mysql}, see {@link #MYSQL_URL_PROPERTY}), and creates
+ * the given number of hot accounts. Every call picks one of them at random, so fewer hot accounts
+ * mean more contention on the same rows.
+ * <p>
+ * Throughput and the latency distribution (including p99 and p99.9) are measured for every method.
+ * Calls that give up on a conflict after their retries are counted as completed operations.
+ * The account cache is disabled, so {@link #getAccountReadCommitted()} reads from the database like the other reads.
+ * Run {@link #main(String[])} from the test classpath, or {@code mvn -Pbenchmark test-compile exec:exec};
+ * it runs the benchmark once per thread count in {@code -Dbenchmark.threads} (default {@code 1,4,16})
+ * and writes the results of each run as JSON to {@code -Dbenchmark.result-dir} (default {@code target/jmh}).
+ * The databases and hot account counts can be chosen with {@code -Dbenchmark.databases=h2,mysql} and
+ * {@code -Dbenchmark.hot-accounts=1,16}; other JMH options, such as a benchmark name pattern, are passed through.
+ *
+ * @author JetBrains Junie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    /** The system property with the JDBC URL of the MySQL database, used with {@code -p database=mysql}. */
+    public static final String MYSQL_URL_PROPERTY = "benchmark.mysql.url";
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"h2"})
+    public String database;
+
+    @Param({"1", "16", "1024"})
+    public int hotAccounts;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private TransactionService transactionService;
+    private String[] hotAccountNumbers;
+    private String runId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Passed as command line arguments, which take precedence over the test application.properties
+        String[] args = properties(database).entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        context = new SpringApplicationBuilder(App.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+        accountService = context.getBean(AccountService.class);
+        transactionService = context.getBean(TransactionService.class);
+
+        // Account numbers are unique per run, so a MySQL database can be reused across runs
+        runId = UUID.randomUUID().toString().substring(0, 8);
+        hotAccountNumbers = new String[hotAccounts];
+        for (int i = 0; i < hotAccounts; i++) {
+            hotAccountNumbers[i] = "HOT-" + runId + "-" + i;
+            accountService.createAccount(hotAccountNumbers[i], "Benchmark Account " + i, INITIAL_BALANCE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private static Map<String, String> properties(String database) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.format_sql", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.org.hibernate.SQL", "WARN");
+        properties.put("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN");
+        properties.put("logging.level.org.springframework.transaction", "WARN");
+        // The reads are meant to hit the database at their isolation level, not the account cache
+        properties.put("isolation-levels.cache.accounts.max-size", "0");
+
+        switch (database) {
+            case "h2" -> properties.put("spring.datasource.url",
+                    "jdbc:h2:mem:benchdb;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE");
+            case "mysql" -> {
+                properties.put("spring.datasource.url", System.getProperty(MYSQL_URL_PROPERTY,
+                        "jdbc:mysql://localhost:3306/isolation_levels?useCursorFetch=true&rewriteBatchedStatements=true"));
+                properties.put("spring.datasource.username", System.getProperty("benchmark.mysql.username", "junie"));
+                properties.put("spring.datasource.password", System.getProperty("benchmark.mysql.password", "junie"));
+                properties.put("spring.datasource.driver-class-name", "com.mysql.cj.jdbc.Driver");
+                properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
+                properties.put("spring.jpa.hibernate.ddl-auto", "update");
+            }
+            default -> throw new IllegalArgumentException("Unknown database: " + database);
+        }
+        return properties;
+    }
+
+    private String hotAccount() {
+        return hotAccountNumbers[ThreadLocalRandom.current().nextInt(hotAccountNumbers.length)];
+    }
+
+    /**
+     * The account of a benchmark thread, which receives its transfers from the hot accounts.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private String accountNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(ServiceBenchmark benchmark) {
+            accountNumber = "COLD-" + benchmark.runId + "-" + UUID.randomUUID().toString().substring(0, 8);
+            benchmark.accountService.createAccount(accountNumber, "Benchmark Thread", BigDecimal.ZERO);
+        }
+    }
+
+    @Benchmark
+    public Optional<AccountDTO> getAccountReadUncommitted() {
+        return accountService.getAccountReadUncommitted(hotAccount());
+    }
+
+    @Benchmark
+    public Optional<AccountDTO> getAccountReadCommitted() {
+        return accountService.getAccountReadCommitted(hotAccount());
+    }
+
+    @Benchmark
+    public Optional<AccountDTO> getAccountRepeatableRead() {
+        return accountService.getAccountRepeatableRead(hotAccount());
+    }
+
+    @Benchmark
+    public Optional<AccountDTO> getAccountSerializable() {
+        return accountService.getAccountSerializable(hotAccount());
+    }
+
+    @Benchmark
+    public Optional<Account> updateBalanceReadUncommitted() {
+        try {
+            return accountService.updateBalanceReadUncommitted(hotAccount(), INITIAL_BALANCE);
+        } catch (ConcurrencyFailureException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> updateBalanceReadCommitted() {
+        try {
+            return accountService.updateBalanceReadCommitted(hotAccount(), INITIAL_BALANCE);
+        } catch (ConcurrencyFailureException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> updateBalanceRepeatableRead() {
+        try {
+            return accountService.updateBalanceRepeatableRead(hotAccount(), INITIAL_BALANCE);
+        } catch (ConcurrencyFailureException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> updateBalanceSerializable() {
+        try {
+            return accountService.updateBalanceSerializable(hotAccount(), INITIAL_BALANCE);
+        } catch (ConcurrencyFailureException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> updateBalanceWithOptimisticLock() {
+        try {
+            return accountService.updateBalanceWithOptimisticLock(hotAccount(), AMOUNT);
+        } catch (ConcurrencyFailureException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> updateBalanceWithPessimisticLock() {
+        try {
+            return accountService.updateBalanceWithPessimisticLock(hotAccount(), AMOUNT);
+        } catch (ConcurrencyFailureException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public Optional<Account> updateBalanceAtomically() {
+        try {
+            return accountService.updateBalanceAtomically(hotAccount(), AMOUNT);
+        } catch (ConcurrencyFailureException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public Optional<Transaction> createTransaction() {
+        try {
+            return transactionService.createTransaction(hotAccount(), AMOUNT, "Benchmark", Transaction.TransactionType.CREDIT);
+        } catch (ConcurrencyFailureException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public boolean transferMoney(ThreadState threadState) {
+        try {
+            return transactionService.transferMoney(hotAccount(), threadState.accountNumber, AMOUNT);
+        } catch (ConcurrencyFailureException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public List<TransactionDTO> getTransactionPage() {
+        return transactionService.getTransactionPage(hotAccount(), null, 50);
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        Path resultDir = Path.of(System.getProperty("benchmark.result-dir", "target/jmh"));
+        Files.createDirectories(resultDir);
+
+        for (String threads : System.getProperty("benchmark.threads", "1,4,16").split(",")) {
+            OptionsBuilder options = new OptionsBuilder();
+            options.parent(commandLineOptions);
+            if (commandLineOptions.getIncludes().isEmpty()) {
+                options.include(ServiceBenchmark.class.getSimpleName());
+            }
+            String databases = System.getProperty("benchmark.databases");
+            if (databases != null) {
+                options.param("database", databases.split(","));
+            }
+            String hotAccounts = System.getProperty("benchmark.hot-accounts");
+            if (hotAccounts != null) {
+                options.param("hotAccounts", hotAccounts.split(","));
+            }
+            options.threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDir.resolve("service-benchmark-" + threads.trim() + "-threads.json").toString());
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package isolation_levels.cache;
+
+import isolation_levels.dto.AccountDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link AccountCache}.
+ * Tests expiry, size bounds and version-aware invalidation.
+ *
+ * @author JetBrains Junie
+ */
+public class AccountCacheTest {
+
+    @Test
+    public void testPutAndGet() {
+        AccountCache cache = new AccountCache(10, Duration.ofMinutes(1));
+
+        cache.put(account("ACC001", "100.00", 1L), cache.stamp("ACC001"));
+
+        Optional<AccountDTO> cached = cache.get("ACC001");
+        assertTrue(cached.isPresent());
+        assertEquals(new BigDecimal("100.00"), cached.get().getBalance());
+        assertTrue(cache.get("ACC002").isEmpty());
+    }
+
+    @Test
+    public void testEvictionInvalidatesStaleReads() {
+        AccountCache cache = new AccountCache(10, Duration.ofMinutes(1));
+
+        // A reader takes a stamp, then a writer commits and evicts before the reader caches its result
+        long stamp = cache.stamp("ACC001");
+        cache.evict("ACC001");
+        cache.put(account("ACC001", "100.00", 1L), stamp);
+
+        assertTrue(cache.get("ACC001").isEmpty());
+    }
+
+    @Test
+    public void testNewerVersionWins() {
+        AccountCache cache = new AccountCache(10, Duration.ofMinutes(1));
+
+        cache.put(account("ACC001", "200.00", 2L), cache.stamp("ACC001"));
+        cache.put(account("ACC001", "100.00", 1L), cache.stamp("ACC001"));
+
+        assertEquals(Long.valueOf(2L), cache.get("ACC001").orElseThrow().getVersion());
+    }
+
+    @Test
+    public void testExpiry() {
+        AccountCache cache = new AccountCache(10, Duration.ZERO);
+
+        cache.put(account("ACC001", "100.00", 1L), cache.stamp("ACC001"));
+
+        assertTrue(cache.get("ACC001").isEmpty());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        AccountCache cache = new AccountCache(3, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 10; i++) {
+            String accountNumber = "ACC" + i;
+            cache.put(account(accountNumber, "100.00", 1L), cache.stamp(accountNumber));
+        }
+
+        assertTrue(cache.size() <= 3);
+        assertTrue(cache.get("ACC9").isPresent());
+    }
+
+    @Test
+    public void testOldestEntryIsEvictedFirst() {
+        AccountCache cache = new AccountCache(3, Duration.ofMinutes(1));
+        for (String accountNumber : new String[]{"ACC1", "ACC2", "ACC3"}) {
+            cache.put(account(accountNumber, "100.00", 1L), cache.stamp(accountNumber));
+        }
+
+        cache.put(account("ACC4", "100.00", 1L), cache.stamp("ACC4"));
+
+        assertTrue(cache.get("ACC1").isEmpty());
+        assertTrue(cache.get("ACC2").isPresent());
+        assertTrue(cache.get("ACC3").isPresent());
+        assertTrue(cache.get("ACC4").isPresent());
+    }
+
+    @Test
+    public void testChurnOfOneAccountStaysBounded() {
+        AccountCache cache = new AccountCache(3, Duration.ofMinutes(1));
+        cache.put(account("ACC1", "100.00", 1L), cache.stamp("ACC1"));
+        cache.put(account("ACC2", "100.00", 1L), cache.stamp("ACC2"));
+
+        // Every write evicts the account and the next read caches it again
+        for (long version = 1; version <= 100; version++) {
+            cache.evict("HOT");
+            cache.put(account("HOT", "100.00", version), cache.stamp("HOT"));
+        }
+
+        assertTrue(cache.size() <= 3);
+        assertEquals(100L, cache.get("HOT").orElseThrow().getVersion());
+    }
+
+    private static AccountDTO account(String accountNumber, String balance, Long version) {
+        return new AccountDTO(1L, accountNumber, "Test User", new BigDecimal(balance), version);
+    }
+}
@@ -0,0 +1,108 @@
+package isolation_levels.combining;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CreditCombiner}.
+ * Tests that concurrent credits to one account are combined into fewer writes without losing any of them.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest
+public class CreditCombinerTest {
+
+    @Autowired
+    private CreditCombiner creditCombiner;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testConcurrentCreditsAreCombined() throws Exception {
+        // Given a hot account credited by many threads at once
+        String accountNumber = "HOT" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(accountNumber, "Hot Merchant", BigDecimal.ZERO);
+        DistributionSummary batchSize = meterRegistry.get("isolation_levels.combining.batch_size").summary();
+        long flushesBefore = batchSize.count();
+
+        int threads = 8;
+        int creditsPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(1);
+        ConcurrentLinkedQueue<CompletableFuture<Optional<Transaction>>> futures = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> submitters = new ArrayList<>();
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            submitters.add(CompletableFuture.runAsync(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < creditsPerThread; i++) {
+                    futures.add(creditCombiner.credit(accountNumber, new BigDecimal("1.00"), "Sale"));
+                }
+            }, executor));
+        }
+        latch.countDown();
+        CompletableFuture.allOf(submitters.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // Then every caller gets its own ledger entry and every credit is applied once
+        int credits = threads * creditsPerThread;
+        assertEquals(credits, futures.stream().map(CompletableFuture::join)
+                .map(transactionOpt -> transactionOpt.orElseThrow().getId())
+                .distinct()
+                .count());
+        assertEquals(0, new BigDecimal(credits).compareTo(
+                accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance()));
+        assertEquals(credits, transactionRepository.findDTOsByAccountNumber(accountNumber).size());
+
+        // And the credits were written in fewer transactions than there were callers
+        long flushes = batchSize.count() - flushesBefore;
+        assertTrue(flushes < credits, "Expected combined flushes, got " + flushes + " for " + credits + " credits");
+    }
+
+    @Test
+    public void testCreditToUnknownAccount() throws Exception {
+        // When
+        Optional<Transaction> transactionOpt = creditCombiner.credit("UNKNOWN", new BigDecimal("1.00"), "Sale")
+                .get(10, TimeUnit.SECONDS);
+
+        // Then
+        assertTrue(transactionOpt.isEmpty());
+    }
+}
@@ -0,0 +1,52 @@
+package isolation_levels.config;
+
+import isolation_levels.App;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the startup check of the DataSource modes.
+ * Checks that an application combining two modes fails before any bean is created, naming the conflicting properties.
+ *
+ * @author JetBrains Junie
+ */
+public class DataSourceModeCheckTest {
+
+    @Test
+    public void testShardingAndIsolationPoolsCannotBeCombined() {
+        // When
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> start(
+                "isolation-levels.sharding.shard-count=2",
+                "isolation-levels.datasource.isolation-pools.enabled=true"));
+
+        // Then
+        assertTrue(exception.getMessage().contains(DataSourceModeCheck.SHARDING_PROPERTY), exception.getMessage());
+        assertTrue(exception.getMessage().contains(DataSourceModeCheck.ISOLATION_POOLS_PROPERTY), exception.getMessage());
+        assertFalse(exception.getMessage().contains(DataSourceModeCheck.REPLICA_PROPERTY), exception.getMessage());
+    }
+
+    @Test
+    public void testReplicaAndShardingCannotBeCombined() {
+        // When
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> start(
+                "isolation-levels.datasource.replica.jdbc-url=jdbc:h2:mem:modecheckreplicadb",
+                "isolation-levels.sharding.shard-count=2",
+                "isolation-levels.datasource.isolation-pools.enabled=false"));
+
+        // Then
+        assertTrue(exception.getMessage().contains(DataSourceModeCheck.REPLICA_PROPERTY), exception.getMessage());
+        assertTrue(exception.getMessage().contains(DataSourceModeCheck.SHARDING_PROPERTY), exception.getMessage());
+        assertFalse(exception.getMessage().contains(DataSourceModeCheck.ISOLATION_POOLS_PROPERTY), exception.getMessage());
+    }
+
+    private static void start(String... properties) {
+        new SpringApplicationBuilder(App.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties)
+                .run()
+                .close();
+    }
+}
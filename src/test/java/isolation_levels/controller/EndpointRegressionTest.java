@@ -0,0 +1,132 @@
+package isolation_levels.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Regression test for the REST endpoints without open-session-in-view.
+ * Every endpoint is called once; since the persistence context closes with the service transaction,
+ * any lazy load while mapping or rendering a response throws a LazyInitializationException
+ * and fails the request.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class EndpointRegressionTest {
+
+    private static final List<String> ISOLATION_LEVELS =
+            List.of("READ_UNCOMMITTED", "READ_COMMITTED", "REPEATABLE_READ", "SERIALIZABLE");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private String accountNumber;
+    private String otherAccountNumber;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        accountNumber = "WEB" + UUID.randomUUID().toString().substring(0, 8);
+        otherAccountNumber = "WEB" + UUID.randomUUID().toString().substring(0, 8);
+        for (String number : List.of(accountNumber, otherAccountNumber)) {
+            mockMvc.perform(json(post("/api/accounts"),
+                            "{\"accountNumber\":\"" + number + "\",\"ownerName\":\"Web User\",\"initialBalance\":\"1000.00\"}"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.accountNumber").value(number));
+        }
+    }
+
+    @Test
+    public void testOpenInViewIsDisabled() {
+        assertTrue(applicationContext.getBeansOfType(OpenEntityManagerInViewInterceptor.class).isEmpty());
+    }
+
+    @Test
+    public void testAccountEndpoints() throws Exception {
+        mockMvc.perform(get("/api/accounts")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/accounts/export")).andExpect(status().isOk());
+
+        for (String isolationLevel : ISOLATION_LEVELS) {
+            mockMvc.perform(get("/api/accounts/" + accountNumber).param("isolationLevel", isolationLevel))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.accountNumber").value(accountNumber));
+            mockMvc.perform(json(put("/api/accounts/" + accountNumber + "/balance").param("isolationLevel", isolationLevel),
+                            "{\"balance\":\"1000.00\"}"))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(json(put("/api/accounts/" + accountNumber + "/balance/optimistic"), "{\"amount\":\"10.00\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(json(put("/api/accounts/" + accountNumber + "/balance/pessimistic"), "{\"amount\":\"10.00\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(json(put("/api/accounts/" + accountNumber + "/balance/atomic"), "{\"amount\":\"10.00\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(1030.00));
+    }
+
+    @Test
+    public void testTransactionEndpoints() throws Exception {
+        mockMvc.perform(json(post("/api/transactions"),
+                        "{\"accountNumber\":\"" + accountNumber + "\",\"amount\":\"25.00\","
+                                + "\"description\":\"Web deposit\",\"type\":\"CREDIT\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountNumber").value(accountNumber));
+        MvcResult combined = mockMvc.perform(json(post("/api/transactions").param("combine", "true"),
+                        "{\"accountNumber\":\"" + accountNumber + "\",\"amount\":\"5.00\","
+                                + "\"description\":\"Combined deposit\",\"type\":\"CREDIT\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(combined))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accountNumber").value(accountNumber));
+        mockMvc.perform(json(post("/api/transactions/transfer"),
+                        "{\"fromAccountNumber\":\"" + accountNumber + "\",\"toAccountNumber\":\"" + otherAccountNumber
+                                + "\",\"amount\":\"5.00\"}"))
+                .andExpect(status().isOk());
+
+        for (String isolationLevel : ISOLATION_LEVELS) {
+            mockMvc.perform(get("/api/transactions/account/" + accountNumber).param("isolationLevel", isolationLevel))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(3));
+        }
+        mockMvc.perform(get("/api/transactions/account/" + accountNumber + "/recent"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].accountNumber").value(accountNumber));
+        mockMvc.perform(get("/api/transactions/account/" + accountNumber + "/page").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").exists());
+        mockMvc.perform(get("/api/transactions/account/" + accountNumber + "/export"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(json(post("/api/transactions/batch"),
+                        "[{\"fromAccountNumber\":\"" + accountNumber + "\",\"toAccountNumber\":\"" + otherAccountNumber
+                                + "\",\"amount\":\"5.00\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.outcomes[0].outcome").value("APPLIED"));
+        mockMvc.perform(json(post("/api/transactions/batch"), "[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static MockHttpServletRequestBuilder json(MockHttpServletRequestBuilder request, String body) {
+        return request.contentType(MediaType.APPLICATION_JSON).content(body);
+    }
+}
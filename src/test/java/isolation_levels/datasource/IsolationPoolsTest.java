@@ -0,0 +1,175 @@
+package isolation_levels.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import isolation_levels.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for per-isolation-level connection pools.
+ * Checks that transactions are routed to the pool of their isolation level and that
+ * an exhausted pool does not block transactions at other isolation levels, and that the pools' connections
+ * skip the isolation changes of their transactions.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:isolationpoolsdb;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "isolation-levels.datasource.isolation-pools.enabled=true",
+        "isolation-levels.datasource.isolation-pools.serializable.maximum-pool-size=1",
+        "isolation-levels.datasource.isolation-pools.serializable.connection-timeout=250"
+})
+public class IsolationPoolsTest {
+
+    @Autowired
+    private IsolationRoutingDataSource isolationRoutingDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Test
+    public void testTransactionsUseThePoolOfTheirIsolationLevel() {
+        // Given
+        TransactionTemplate template = transactionTemplate(TransactionDefinition.ISOLATION_SERIALIZABLE);
+
+        // When
+        int activeInTransaction = template.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            return pool(TransactionDefinition.ISOLATION_SERIALIZABLE).getHikariPoolMXBean().getActiveConnections();
+        });
+
+        // Then
+        assertEquals(1, activeInTransaction);
+        assertEquals(0, pool(TransactionDefinition.ISOLATION_READ_COMMITTED).getHikariPoolMXBean().getActiveConnections());
+        assertTrue(accountService.getAccountSerializable("ACC001").isPresent());
+    }
+
+    @Test
+    public void testExhaustedPoolDoesNotBlockOtherIsolationLevels() throws Exception {
+        // Given a SERIALIZABLE transaction holding the only connection of its pool
+        CountDownLatch connectionTaken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() ->
+                transactionTemplate(TransactionDefinition.ISOLATION_SERIALIZABLE).executeWithoutResult(status -> {
+                    jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                    connectionTaken.countDown();
+                    awaitQuietly(release);
+                }));
+        assertTrue(connectionTaken.await(10, TimeUnit.SECONDS));
+
+        try {
+            // When / Then READ_COMMITTED reads still get connections
+            assertTrue(accountService.getAccountReadCommitted("ACC001").isPresent());
+
+            // And another SERIALIZABLE transaction times out on its own pool
+            assertThrows(RuntimeException.class, () ->
+                    transactionTemplate(TransactionDefinition.ISOLATION_SERIALIZABLE).executeWithoutResult(
+                            status -> jdbcTemplate.queryForObject("SELECT 1", Integer.class)));
+        } finally {
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPinnedConnectionsSkipIsolationChanges() {
+        // Given the SERIALIZABLE pool behind a lazy proxy whose default level is the one of the default pool,
+        // counting the isolation changes sent to the pinned connections and those that reach the pool
+        CountingDataSource pooled = new CountingDataSource(pool(TransactionDefinition.ISOLATION_SERIALIZABLE));
+        CountingDataSource pinned = new CountingDataSource(
+                new IsolationPinnedDataSource(pooled, TransactionDefinition.ISOLATION_SERIALIZABLE));
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(pinned);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        TransactionTemplate template = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+
+        // When
+        template.executeWithoutResult(status -> new JdbcTemplate(dataSource).queryForObject("SELECT 1", Integer.class));
+
+        // Then the level is set when the transaction starts and reset when it ends, but neither reaches the pool
+        assertEquals(2, pinned.isolationChanges.get());
+        assertEquals(0, pooled.isolationChanges.get());
+    }
+
+    private TransactionTemplate transactionTemplate(int isolationLevel) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(isolationLevel);
+        return template;
+    }
+
+    private HikariDataSource pool(int isolationLevel) {
+        IsolationPinnedDataSource pinned =
+                (IsolationPinnedDataSource) isolationRoutingDataSource.getResolvedDataSources().get(isolationLevel);
+        return (HikariDataSource) pinned.getTargetDataSource();
+    }
+
+    /**
+     * DataSource that counts the calls to {@link Connection#setTransactionIsolation(int)} on its connections.
+     */
+    private static class CountingDataSource extends DelegatingDataSource {
+
+        private final AtomicInteger isolationChanges = new AtomicInteger();
+
+        CountingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection target = obtainTargetDataSource().getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "setTransactionIsolation":
+                                isolationChanges.incrementAndGet();
+                                break;
+                            default:
+                                break;
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
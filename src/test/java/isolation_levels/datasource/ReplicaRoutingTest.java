@@ -0,0 +1,129 @@
+package isolation_levels.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.cache.AccountCache;
+import isolation_levels.dto.AccountDTO;
+import isolation_levels.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for read replica routing.
+ * Uses two in-memory H2 databases standing in for the primary and the replica,
+ * and checks which one each kind of transaction is routed to.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primarydb;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "isolation-levels.datasource.replica.jdbc-url=jdbc:h2:mem:replicadb;DB_CLOSE_DELAY=-1;MODE=MySQL;"
+                + "DB_CLOSE_ON_EXIT=FALSE;INIT=RUNSCRIPT FROM 'classpath:replica-schema.sql'",
+        "isolation-levels.datasource.replica.username=sa",
+        "isolation-levels.datasource.replica.driver-class-name=org.h2.Driver",
+        "isolation-levels.datasource.replica.auto-commit=false",
+        "isolation-levels.datasource.replica-lag.query=SELECT 3"
+})
+@Import(ReplicaRoutingTest.PrimaryReader.class)
+public class ReplicaRoutingTest {
+
+    private static final String DATABASE_NAME_QUERY = "SELECT DATABASE()";
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PrimaryReader primaryReader;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountCache accountCache;
+
+    @Test
+    public void testReadOnlyTransactionsUseReplica() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+
+        String database = template.execute(status -> jdbcTemplate.queryForObject(DATABASE_NAME_QUERY, String.class));
+
+        assertEquals("REPLICADB", database.toUpperCase());
+    }
+
+    @Test
+    public void testReadWriteTransactionsUsePrimary() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+
+        String database = template.execute(status -> jdbcTemplate.queryForObject(DATABASE_NAME_QUERY, String.class));
+
+        assertEquals("PRIMARYDB", database.toUpperCase());
+    }
+
+    @Test
+    public void testUseDataSourceOverridesRouting() {
+        assertEquals("PRIMARYDB", primaryReader.databaseName().toUpperCase());
+    }
+
+    @Test
+    public void testCachedReadsComeFromPrimary() {
+        // Given an account that the replica has not caught up with yet
+        String accountNumber = "REP" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(accountNumber, "Replica User", new BigDecimal("100.00"));
+
+        // When
+        Optional<AccountDTO> accountOpt = accountService.getAccountReadCommitted(accountNumber);
+
+        // Then the read sees the primary, and only that state is cached
+        assertTrue(accountOpt.isPresent());
+        assertTrue(accountCache.get(accountNumber).isPresent());
+    }
+
+    @Test
+    public void testReplicaLagIsPublished() {
+        replicaLagMonitor.refresh();
+
+        assertEquals(3, replicaLagMonitor.getLagSeconds());
+        assertEquals(3.0, meterRegistry.get("isolation_levels.datasource.replica.lag").gauge().value());
+    }
+
+    /**
+     * A read-only method that is pinned to the primary.
+     */
+    @Component
+    static class PrimaryReader {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        PrimaryReader(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @UseDataSource(DataSourceRole.PRIMARY)
+        @Transactional(readOnly = true)
+        public String databaseName() {
+            return jdbcTemplate.queryForObject(DATABASE_NAME_QUERY, String.class);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package isolation_levels.engine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import isolation_levels.dto.AccountDTO;
+import isolation_levels.model.Account;
+import isolation_levels.model.EngineCheckpoint;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.EngineCheckpointRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.service.AccountService;
+import isolation_levels.service.LedgerWriter;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the recovery of the {@link LedgerEngine} on restart.
+ * Runs engines of its own over a temporary journal, with the engine of the application context disabled,
+ * so that it alone writes the checkpoints. A restarted engine must load the checkpoint, replay the journal
+ * events after it, and bring the balances and ledger entries in the database up to date again; an event the
+ * database rejected must not be replayed, and must not lose its balance change either.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:enginerecoverydb;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "isolation-levels.engine.enabled=false"
+})
+public class LedgerEngineRecoveryTest {
+
+    private static final int TRANSFERS_BEFORE_CHECKPOINT = 20;
+    private static final int TRANSFERS_AFTER_CHECKPOINT = 30;
+    private static final String REJECTED_DESCRIPTION = "Rejected by the database";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EngineCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private LedgerWriter ledgerWriter;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path journalDir;
+
+    @Test
+    public void testRestartReplaysTheJournalAfterTheCheckpoint() {
+        // Given an engine that persisted some transfers
+        String from = newAccount("1000.00");
+        String to = newAccount("0.00");
+        MeterRegistry firstRegistry = new SimpleMeterRegistry();
+        LedgerEngine first = newEngine(firstRegistry);
+        first.start();
+        transfer(first, from, to, TRANSFERS_BEFORE_CHECKPOINT);
+        awaitPersisted(firstRegistry);
+        long checkpoint = checkpointRepository.findById(0).map(EngineCheckpoint::getSequence).orElseThrow();
+        Long lastEntryId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM transactions", Long.class);
+
+        // And then journaled more transfers, which the database lost in a crash
+        transfer(first, from, to, TRANSFERS_AFTER_CHECKPOINT);
+        awaitPersisted(firstRegistry);
+        first.stop();
+        BigDecimal fromBalance = new BigDecimal("1000.00").subtract(total(TRANSFERS_BEFORE_CHECKPOINT + TRANSFERS_AFTER_CHECKPOINT));
+        BigDecimal toBalance = total(TRANSFERS_BEFORE_CHECKPOINT + TRANSFERS_AFTER_CHECKPOINT);
+        rollBackDatabase(checkpoint, lastEntryId, from, new BigDecimal("1000.00").subtract(total(TRANSFERS_BEFORE_CHECKPOINT)),
+                to, total(TRANSFERS_BEFORE_CHECKPOINT));
+
+        // When the engine restarts
+        MeterRegistry secondRegistry = new SimpleMeterRegistry();
+        LedgerEngine second = newEngine(secondRegistry);
+        second.start();
+        try {
+            // Then the balances are recovered from the journal at once
+            assertEquals(0, fromBalance.compareTo(second.find(from).map(AccountDTO::getBalance).orElseThrow()));
+            assertEquals(0, toBalance.compareTo(second.find(to).map(AccountDTO::getBalance).orElseThrow()));
+
+            // And the lost transfers are persisted again, once each
+            awaitPersisted(secondRegistry);
+            assertEquals(0, fromBalance.compareTo(accountRepository.findByAccountNumber(from).orElseThrow().getBalance()));
+            assertEquals(0, toBalance.compareTo(accountRepository.findByAccountNumber(to).orElseThrow().getBalance()));
+            int transfers = TRANSFERS_BEFORE_CHECKPOINT + TRANSFERS_AFTER_CHECKPOINT;
+            assertEquals(transfers, transactionRepository.findDTOsByAccountNumber(from).size());
+            assertEquals(transfers, transactionRepository.findDTOsByAccountNumber(to).size());
+            assertEquals(checkpoint + TRANSFERS_AFTER_CHECKPOINT,
+                    checkpointRepository.findById(0).map(EngineCheckpoint::getSequence).orElseThrow());
+        } finally {
+            second.stop();
+        }
+    }
+
+    @Test
+    public void testRestartKeepsTheBalancesOfARejectedEvent() {
+        // Given an entry the database rejects for good
+        String accountNumber = newAccount("100.00");
+        jdbcTemplate.execute("ALTER TABLE transactions ADD CONSTRAINT chk_rejected_entry CHECK (description <> '"
+                + REJECTED_DESCRIPTION + "')");
+        MeterRegistry firstRegistry = new SimpleMeterRegistry();
+        LedgerEngine first = newEngine(firstRegistry);
+        first.start();
+        try {
+            assertEquals(LedgerEngine.Outcome.APPLIED, first.post(accountNumber, new BigDecimal("5.00"),
+                    REJECTED_DESCRIPTION, true, false).outcome());
+
+            // When the persister skips it
+            awaitPersisted(firstRegistry);
+        } finally {
+            first.stop();
+            jdbcTemplate.execute("ALTER TABLE transactions DROP CONSTRAINT chk_rejected_entry");
+        }
+
+        // Then its ledger entry is dropped, but its balance is stored with the checkpoint that covers it
+        assertEquals(1.0, firstRegistry.get("isolation_levels.engine.skipped_events").counter().count());
+        assertTrue(transactionRepository.findDTOsByAccountNumber(accountNumber).isEmpty());
+        assertEquals(0, new BigDecimal("105.00").compareTo(
+                accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance()));
+
+        // And a restarted engine, which does not replay the event, continues from that balance
+        MeterRegistry secondRegistry = new SimpleMeterRegistry();
+        LedgerEngine second = newEngine(secondRegistry);
+        second.start();
+        try {
+            LedgerEngine.Result result = second.post(accountNumber, new BigDecimal("1.00"), "Deposit", true, false);
+            assertEquals(10_600, result.event().getBalanceAfterMinor());
+            awaitPersisted(secondRegistry);
+            assertEquals(0, new BigDecimal("106.00").compareTo(
+                    accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance()));
+            assertEquals(1, transactionRepository.findDTOsByAccountNumber(accountNumber).size());
+        } finally {
+            second.stop();
+        }
+    }
+
+    private LedgerEngine newEngine(MeterRegistry meterRegistry) {
+        return new LedgerEngine(accountRepository, transactionRepository, checkpointRepository, ledgerWriter,
+                shardRouter, shardTemplate, transactionManager, meterRegistry,
+                journalDir.toString(), 64L * 1024 * 1024, false, 1024, 5000, Duration.ofMillis(10));
+    }
+
+    private static void transfer(LedgerEngine engine, String from, String to, int count) {
+        for (int i = 0; i < count; i++) {
+            assertEquals(LedgerEngine.Outcome.APPLIED, engine.transfer(from, to, new BigDecimal("1.00")).outcome());
+        }
+    }
+
+    private static BigDecimal total(int transfers) {
+        return new BigDecimal("1.00").multiply(BigDecimal.valueOf(transfers));
+    }
+
+    /**
+     * Resets the checkpoint, the balances and the ledger entries to their state at the checkpoint.
+     */
+    private void rollBackDatabase(long checkpoint, Long lastEntryId,
+                                  String from, BigDecimal fromBalance, String to, BigDecimal toBalance) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            checkpointRepository.findById(0).orElseThrow().setSequence(checkpoint);
+            setBalance(from, fromBalance);
+            setBalance(to, toBalance);
+            jdbcTemplate.update("DELETE FROM transactions WHERE id > ?", lastEntryId);
+        });
+    }
+
+    private void setBalance(String accountNumber, BigDecimal balance) {
+        Account account = accountRepository.findByAccountNumber(accountNumber).orElseThrow();
+        account.setBalance(balance);
+    }
+
+    private String newAccount(String balance) {
+        String accountNumber = "REC" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(accountNumber, "Recovery User", new BigDecimal(balance));
+        return accountNumber;
+    }
+
+    private static void awaitPersisted(MeterRegistry meterRegistry) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (meterRegistry.get("isolation_levels.engine.persist_lag").gauge().value() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Persister did not catch up");
+            Thread.onSpinWait();
+        }
+    }
+}
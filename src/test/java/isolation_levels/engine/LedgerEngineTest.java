@@ -0,0 +1,247 @@
+package isolation_levels.engine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.dto.AccountDTO;
+import isolation_levels.dto.PaymentDTO;
+import isolation_levels.dto.PaymentOutcomeDTO;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.service.AccountService;
+import isolation_levels.service.InsufficientFundsException;
+import isolation_levels.service.TransactionService;
+import isolation_levels.service.TransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for {@link LedgerEngine} behind {@link AccountService} and {@link TransactionService}.
+ * Tests that balance changes are applied in memory at once and reach the database through the persister,
+ * and that the operations that would change balances behind the engine are rejected or routed through it.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:enginedb;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "isolation-levels.engine.enabled=true",
+        "isolation-levels.engine.journal-dir=${java.io.tmpdir}/ledger-journal-${random.uuid}",
+        "isolation-levels.engine.fsync=false"
+})
+@AutoConfigureMockMvc
+public class LedgerEngineTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testServicesAreBackedByTheEngine() {
+        assertInstanceOf(EngineAccountService.class, accountService);
+        assertInstanceOf(EngineTransactionService.class, transactionService);
+        assertInstanceOf(EngineTransferService.class, transferService);
+    }
+
+    @Test
+    public void testGroupedTransfersAreAppliedByTheEngine() {
+        // Given
+        String first = newAccount("10.00");
+        String second = newAccount("0.00");
+        List<PaymentDTO> payments = List.of(
+                new PaymentDTO(first, second, new BigDecimal("6.00")),
+                new PaymentDTO(first, second, new BigDecimal("6.00")),
+                new PaymentDTO(first, "UNKNOWN", new BigDecimal("1.00")),
+                new PaymentDTO(first, first, new BigDecimal("1.00")));
+
+        // When
+        List<PaymentOutcomeDTO> outcomes = transactionService.transferMoneyInGroup(payments);
+
+        // Then each transfer is applied or rejected on its own
+        assertEquals(List.of(PaymentOutcomeDTO.Outcome.APPLIED, PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS,
+                        PaymentOutcomeDTO.Outcome.ACCOUNT_NOT_FOUND, PaymentOutcomeDTO.Outcome.INVALID),
+                outcomes.stream().map(PaymentOutcomeDTO::getOutcome).toList());
+        assertEquals(0, new BigDecimal("4.00").compareTo(balanceOf(first)));
+        assertEquals(0, new BigDecimal("6.00").compareTo(balanceOf(second)));
+    }
+
+    @Test
+    public void testOperationsThatBypassTheEngineAreRejected() {
+        // Given
+        String first = newAccount("100.00");
+        String second = newAccount("0.00");
+        List<PaymentDTO> payments = List.of(new PaymentDTO(first, second, new BigDecimal("10.00")));
+
+        // When / Then
+        assertThrows(EngineBypassException.class, () -> transactionService.applyPayments(payments));
+        assertThrows(EngineBypassException.class, () -> transactionService.applyNettedPayments(payments));
+        assertThrows(EngineBypassException.class, () -> accountService.splitBalance(first, 4));
+        assertEquals(0, new BigDecimal("100.00").compareTo(
+                accountRepository.findByAccountNumber(first).orElseThrow().getBalance()));
+    }
+
+    @Test
+    public void testConcurrentTransfersArePersisted() throws Exception {
+        // Given two accounts and transfers in both directions from many threads
+        String first = newAccount("1000.00");
+        String second = newAccount("1000.00");
+        int threads = 8;
+        int transfersPerThread = 100;
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<TransferService.TransferStatus>> results = new ArrayList<>();
+        for (int i = 0; i < threads * transfersPerThread; i++) {
+            boolean forward = i % 2 == 0;
+            results.add(executor.submit(() -> transferService.transfer(
+                    forward ? first : second, forward ? second : first, new BigDecimal("1.00"))));
+        }
+        for (Future<TransferService.TransferStatus> result : results) {
+            assertEquals(TransferService.TransferStatus.COMPLETED, result.get());
+        }
+        executor.shutdown();
+
+        // Then the engine's balances are current at once
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balanceOf(first)));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balanceOf(second)));
+
+        // And every transfer reaches the database
+        awaitPersisted();
+        assertEquals(0, new BigDecimal("1000.00").compareTo(accountRepository.findByAccountNumber(first).orElseThrow().getBalance()));
+        assertEquals(threads * transfersPerThread, transactionRepository.findDTOsByAccountNumber(first).size());
+        assertEquals(threads * transfersPerThread, transactionRepository.findDTOsByAccountNumber(second).size());
+    }
+
+    @Test
+    public void testOverdraftsAreRejected() {
+        // Given
+        String first = newAccount("10.00");
+        String second = newAccount("0.00");
+
+        // When / Then
+        assertEquals(TransferService.TransferStatus.FAILED, transferService.transfer(first, second, new BigDecimal("10.01")));
+        assertThrows(InsufficientFundsException.class,
+                () -> accountService.updateBalanceAtomically(first, new BigDecimal("-10.01")));
+        assertEquals(TransferService.TransferStatus.FAILED, transferService.transfer(first, "UNKNOWN", new BigDecimal("1.00")));
+        assertEquals(0, new BigDecimal("10.00").compareTo(balanceOf(first)));
+    }
+
+    @Test
+    public void testBalanceUpdatesArePersisted() {
+        // Given
+        String accountNumber = newAccount("100.00");
+
+        // When
+        accountService.updateBalanceReadCommitted(accountNumber, new BigDecimal("50.00"));
+        accountService.updateBalanceWithOptimisticLock(accountNumber, new BigDecimal("-20.00"));
+        assertTrue(transactionService.createTransaction(accountNumber, new BigDecimal("5.00"), "Deposit",
+                Transaction.TransactionType.CREDIT).isPresent());
+
+        // Then
+        assertEquals(0, new BigDecimal("35.00").compareTo(balanceOf(accountNumber)));
+        awaitPersisted();
+        assertEquals(0, new BigDecimal("35.00").compareTo(
+                accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance()));
+        assertEquals(2, transactionRepository.findDTOsByAccountNumber(accountNumber).size());
+    }
+
+    @Test
+    public void testEntriesTheDatabaseWouldRejectAreNotJournaled() {
+        // Given
+        String accountNumber = newAccount("100.00");
+
+        // When / Then a missing or too long description is rejected before it reaches the journal
+        assertThrows(IllegalArgumentException.class, () -> transactionService.createTransaction(accountNumber,
+                new BigDecimal("5.00"), null, Transaction.TransactionType.CREDIT));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.createTransaction(accountNumber,
+                new BigDecimal("5.00"), "x".repeat(256), Transaction.TransactionType.CREDIT));
+        assertEquals(0, new BigDecimal("100.00").compareTo(balanceOf(accountNumber)));
+
+        // And later entries are still persisted
+        assertTrue(transactionService.createTransaction(accountNumber, new BigDecimal("5.00"), "x".repeat(255),
+                Transaction.TransactionType.CREDIT).isPresent());
+        awaitPersisted();
+        assertEquals(0, new BigDecimal("105.00").compareTo(
+                accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance()));
+    }
+
+    @Test
+    public void testEndpointsThatBypassTheEngineAreRejectedOrRouted() throws Exception {
+        // Given
+        String first = newAccount("100.00");
+        String second = newAccount("0.00");
+
+        // When / Then
+        mockMvc.perform(put("/api/accounts/" + first + "/slots")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"slotCount\":\"4\"}"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/api/transactions/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"fromAccountNumber\":\"" + first + "\",\"toAccountNumber\":\"" + second
+                                + "\",\"amount\":\"10.00\"}]"))
+                .andExpect(status().isConflict());
+        MvcResult combined = mockMvc.perform(post("/api/transactions").param("combine", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"accountNumber\":\"" + first + "\",\"amount\":\"10.00\",\"description\":\"Deposit\",\"type\":\"CREDIT\"}"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(combined))
+                .andExpect(status().isOk());
+
+        // And only the combined credit, posted through the engine, changed a balance
+        assertEquals(0, new BigDecimal("110.00").compareTo(balanceOf(first)));
+        assertEquals(0, new BigDecimal("0.00").compareTo(balanceOf(second)));
+        assertEquals(0, accountRepository.findByAccountNumber(first).orElseThrow().getSlotCount());
+        awaitPersisted();
+        assertEquals(0, new BigDecimal("110.00").compareTo(
+                accountRepository.findByAccountNumber(first).orElseThrow().getBalance()));
+    }
+
+    private String newAccount(String balance) {
+        String accountNumber = "ENG" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(accountNumber, "Engine User", new BigDecimal(balance));
+        return accountNumber;
+    }
+
+    private BigDecimal balanceOf(String accountNumber) {
+        return accountService.getAccountReadCommitted(accountNumber).map(AccountDTO::getBalance).orElseThrow();
+    }
+
+    private void awaitPersisted() {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (meterRegistry.get("isolation_levels.engine.persist_lag").gauge().value() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Persister did not catch up");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package isolation_levels.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link LedgerJournal}.
+ * Tests that journaled events are replayed after a restart, that a torn record is cut off,
+ * and that persisted segments are released.
+ *
+ * @author JetBrains Junie
+ */
+public class LedgerJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testEventsAreReplayedAndTornTailIsCutOff() throws IOException {
+        // Given three synced events followed by a torn record
+        try (LedgerJournal journal = new LedgerJournal(directory, 1 << 20, false)) {
+            for (long sequence = 1; sequence <= 3; sequence++) {
+                journal.append(event(sequence));
+            }
+            journal.sync();
+        }
+        Path segment = segments().get(0);
+        Files.write(segment, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+        long tornSize = Files.size(segment);
+
+        // When
+        List<LedgerEvent> replayed = new ArrayList<>();
+        long lastSequence;
+        try (LedgerJournal journal = new LedgerJournal(directory, 1 << 20, false)) {
+            lastSequence = journal.replay(replayed::add);
+            journal.append(event(4));
+            journal.sync();
+        }
+
+        // Then
+        assertEquals(3, lastSequence);
+        assertEquals(3, replayed.size());
+        LedgerEvent transfer = replayed.get(1);
+        assertEquals(LedgerEvent.Kind.TRANSFER, transfer.getKind());
+        assertEquals("A", transfer.getAccountNumber());
+        assertEquals("B", transfer.getOtherAccountNumber());
+        assertEquals(1000L - 200L, transfer.getBalanceAfterMinor());
+        assertEquals(event(2).getTimestamp(), transfer.getTimestamp());
+        assertTrue(Files.size(segment) < tornSize);
+
+        // And the events appended after recovery follow the last good one
+        List<LedgerEvent> afterRestart = new ArrayList<>();
+        try (LedgerJournal journal = new LedgerJournal(directory, 1 << 20, false)) {
+            assertEquals(4, journal.replay(afterRestart::add));
+        }
+        assertEquals(4, afterRestart.size());
+    }
+
+    @Test
+    public void testPersistedSegmentsAreReleased() throws IOException {
+        // Given segments so small that every sync starts a new one
+        try (LedgerJournal journal = new LedgerJournal(directory, 1, false)) {
+            for (long sequence = 1; sequence <= 3; sequence++) {
+                journal.append(event(sequence));
+                journal.sync();
+            }
+            assertEquals(3, segments().size());
+
+            // When
+            journal.release(2);
+
+            // Then only the segment with the unpersisted event is kept
+            assertEquals(1, segments().size());
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static LedgerEvent event(long sequence) {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 12, 0).plus(sequence, ChronoUnit.MICROS);
+        return new LedgerEvent(sequence, timestamp, LedgerEvent.Kind.TRANSFER, "A", "B",
+                200L, null, 1000L - 200L * (sequence - 1), 200L * sequence);
+    }
+}
@@ -0,0 +1,92 @@
+package isolation_levels.id;
+
+import isolation_levels.model.Account;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.TransactionRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for JDBC batching of application-generated IDs.
+ * Uses the Hibernate statistics to check that the inserts and updates of one flush
+ * are sent with one prepared statement per table instead of one per row.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:batchingdb;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional
+public class JdbcBatchingTest {
+
+    private static final int TRANSACTION_COUNT = 10;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void testTransactionInsertsAreBatched() {
+        // Given
+        Account account = accountRepository.saveAndFlush(new Account("BATCH001", "Batch User", new BigDecimal("1000.00")));
+        statistics.clear();
+
+        // When
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < TRANSACTION_COUNT; i++) {
+            Transaction transaction = new Transaction(new BigDecimal("1.00"), "Batch " + i, Transaction.TransactionType.CREDIT);
+            transaction.setAccount(account);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+        transactionRepository.flush();
+
+        // Then all rows are inserted with a single prepared statement
+        assertEquals(TRANSACTION_COUNT, statistics.getEntityInsertCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testAccountUpdatesAreBatched() {
+        // Given
+        Account from = accountRepository.save(new Account("BATCH002", "Batch From", new BigDecimal("1000.00")));
+        Account to = accountRepository.save(new Account("BATCH003", "Batch To", new BigDecimal("1000.00")));
+        accountRepository.flush();
+        statistics.clear();
+
+        // When
+        from.setBalance(new BigDecimal("900.00"));
+        to.setBalance(new BigDecimal("1100.00"));
+        accountRepository.flush();
+
+        // Then both versioned updates are sent with a single prepared statement
+        assertEquals(2, statistics.getEntityUpdateCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,60 @@
+package isolation_levels.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link SnowflakeIdGenerator}.
+ * Tests ordering, uniqueness across nodes and the ID layout.
+ *
+ * @author JetBrains Junie
+ */
+public class SnowflakeIdGeneratorTest {
+
+    @Test
+    public void testIdsAreStrictlyIncreasing() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    public void testNodesDoNotCollide() {
+        SnowflakeIdGenerator first = new SnowflakeIdGenerator(1);
+        SnowflakeIdGenerator second = new SnowflakeIdGenerator(2);
+        Set<Long> ids = new HashSet<>();
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(ids.add(first.nextId()));
+            assertTrue(ids.add(second.nextId()));
+        }
+    }
+
+    @Test
+    public void testLayout() {
+        long before = System.currentTimeMillis() - SnowflakeIdGenerator.EPOCH;
+        long id = new SnowflakeIdGenerator(1023).nextId();
+        long after = System.currentTimeMillis() - SnowflakeIdGenerator.EPOCH;
+
+        long timestamp = id >>> (SnowflakeIdGenerator.NODE_ID_BITS + SnowflakeIdGenerator.SEQUENCE_BITS);
+        long nodeId = (id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_NODE_ID;
+        assertTrue(id > 0);
+        assertTrue(timestamp >= before && timestamp <= after);
+        assertEquals(1023, nodeId);
+    }
+
+    @Test
+    public void testInvalidNodeIdIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+    }
+}
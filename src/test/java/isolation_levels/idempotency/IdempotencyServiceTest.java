@@ -0,0 +1,248 @@
+package isolation_levels.idempotency;
+
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.IdempotencyRecordRepository;
+import isolation_levels.repository.TransactionRepository;
+import isolation_levels.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for {@link IdempotencyService}.
+ * Tests that a request repeated with the same idempotency key is processed only once,
+ * also while the first request is still in progress.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testRepeatedTransferIsAppliedOnce() throws Exception {
+        // Given
+        String from = "IDM" + UUID.randomUUID().toString().substring(0, 8);
+        String to = "IDM" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(from, "Idempotency Sender", new BigDecimal("100.00"));
+        accountService.createAccount(to, "Idempotency Receiver", BigDecimal.ZERO);
+        String key = UUID.randomUUID().toString();
+        String body = "{\"fromAccountNumber\":\"" + from + "\",\"toAccountNumber\":\"" + to + "\",\"amount\":\"30.00\"}";
+
+        // When
+        mockMvc.perform(post("/api/transactions/transfer").header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyService.REPLAYED_HEADER));
+        mockMvc.perform(post("/api/transactions/transfer").header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andExpect(content().string("Transfer successful"));
+
+        // Then the money moved once
+        assertEquals(0, new BigDecimal("70.00").compareTo(
+                accountRepository.findByAccountNumber(from).orElseThrow().getBalance()));
+        assertEquals(0, new BigDecimal("30.00").compareTo(
+                accountRepository.findByAccountNumber(to).orElseThrow().getBalance()));
+        assertEquals(1, transactionRepository.findDTOsByAccountNumber(from).size());
+        assertTrue(idempotencyRecordRepository.findById(key).orElseThrow().isCompleted());
+    }
+
+    @Test
+    public void testRepeatedTransactionReturnsStoredResponse() throws Exception {
+        // Given
+        String accountNumber = "IDM" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(accountNumber, "Idempotency User", new BigDecimal("100.00"));
+        String key = UUID.randomUUID().toString();
+        String body = "{\"accountNumber\":\"" + accountNumber + "\",\"amount\":\"25.00\",\"description\":\"Deposit\",\"type\":\"CREDIT\"}";
+
+        // When
+        String first = mockMvc.perform(post("/api/transactions").header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String second = mockMvc.perform(post("/api/transactions").header(IdempotencyService.IDEMPOTENCY_KEY_HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andReturn().getResponse().getContentAsString();
+
+        // Then
+        assertEquals(first, second);
+        assertEquals(0, new BigDecimal("125.00").compareTo(
+                accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance()));
+        assertEquals(1, transactionRepository.findDTOsByAccountNumber(accountNumber).size());
+    }
+
+    @Test
+    public void testRepeatIsNotProcessed() {
+        // Given
+        String key = UUID.randomUUID().toString();
+        Map<String, String> request = Map.of("amount", "10.00");
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        ResponseEntity<String> first = idempotencyService.execute(key, "test", request, String.class,
+                () -> ResponseEntity.ok("call " + calls.incrementAndGet()));
+        ResponseEntity<String> second = idempotencyService.execute(key, "test", request, String.class,
+                () -> ResponseEntity.ok("call " + calls.incrementAndGet()));
+
+        // Then
+        assertEquals(1, calls.get());
+        assertEquals("call 1", first.getBody());
+        assertEquals("call 1", second.getBody());
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+    }
+
+    @Test
+    public void testKeyIsDeduplicatedAfterItLeavesTheStore() {
+        // Given a key that is only in the table, as after a restart
+        String key = UUID.randomUUID().toString();
+        Map<String, String> request = Map.of("amount", "10.00");
+        AtomicInteger calls = new AtomicInteger();
+        idempotencyService.execute(key, "test", request, String.class,
+                () -> ResponseEntity.ok("call " + calls.incrementAndGet()));
+        idempotencyStore.remove(key);
+
+        // When
+        ResponseEntity<String> second = idempotencyService.execute(key, "test", request, String.class,
+                () -> ResponseEntity.ok("call " + calls.incrementAndGet()));
+
+        // Then
+        assertEquals(1, calls.get());
+        assertEquals("call 1", second.getBody());
+        assertTrue(idempotencyStore.get(key).orElseThrow().isCompleted());
+    }
+
+    @Test
+    public void testConcurrentRepeatIsRejectedWhileInProgress() throws Exception {
+        // Given a request that is being processed
+        String key = UUID.randomUUID().toString();
+        Map<String, String> request = Map.of("amount", "10.00");
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute(key, "test", request, String.class, () -> {
+                    calls.incrementAndGet();
+                    processing.countDown();
+                    awaitQuietly(release);
+                    return ResponseEntity.ok("done");
+                }));
+        assertTrue(processing.await(10, TimeUnit.SECONDS));
+
+        // When the same request arrives at this instance, and at another one that only shares the table
+        ResponseEntity<String> repeat;
+        ResponseEntity<String> repeatElsewhere;
+        try {
+            repeat = idempotencyService.execute(key, "test", request, String.class,
+                    () -> ResponseEntity.ok("call " + calls.incrementAndGet()));
+            idempotencyStore.remove(key);
+            repeatElsewhere = idempotencyService.execute(key, "test", request, String.class,
+                    () -> ResponseEntity.ok("call " + calls.incrementAndGet()));
+        } finally {
+            release.countDown();
+        }
+
+        // Then the request is processed exactly once and the repeats get 409 Conflict
+        assertEquals("done", first.get(10, TimeUnit.SECONDS).getBody());
+        assertEquals(HttpStatus.CONFLICT, repeat.getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, repeatElsewhere.getStatusCode());
+        assertEquals(1, calls.get());
+        assertTrue(idempotencyRecordRepository.findById(key).orElseThrow().isCompleted());
+    }
+
+    @Test
+    public void testRequestsThatPrintAlikeHaveDifferentHashes() {
+        // Given a key used for a request whose value looks like two fields
+        String key = UUID.randomUUID().toString();
+        idempotencyService.execute(key, "test", Map.of("a", "1, b=2"), String.class, () -> ResponseEntity.ok("done"));
+
+        // When the key is reused for the two fields
+        ResponseEntity<String> response = idempotencyService.execute(key, "test", Map.of("a", "1", "b", "2"),
+                String.class, () -> ResponseEntity.ok("done again"));
+
+        // Then
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+    }
+
+    @Test
+    public void testKeyReusedForDifferentRequest() {
+        // Given
+        String key = UUID.randomUUID().toString();
+        idempotencyService.execute(key, "test", Map.of("amount", "10.00"), String.class, () -> ResponseEntity.ok("done"));
+
+        // When
+        ResponseEntity<String> response = idempotencyService.execute(key, "test", Map.of("amount", "20.00"), String.class,
+                () -> ResponseEntity.ok("done again"));
+
+        // Then
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+    }
+
+    @Test
+    public void testFailedRequestReleasesKey() {
+        // Given
+        String key = UUID.randomUUID().toString();
+        Map<String, String> request = Map.of("amount", "10.00");
+
+        // When
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(key, "test", request, String.class,
+                () -> {
+                    throw new IllegalStateException("Processing failed");
+                }));
+        ResponseEntity<String> retry = idempotencyService.execute(key, "test", request, String.class,
+                () -> ResponseEntity.ok("done"));
+
+        // Then
+        assertEquals("done", retry.getBody());
+        assertTrue(idempotencyRecordRepository.findById(key).orElseThrow().isCompleted());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
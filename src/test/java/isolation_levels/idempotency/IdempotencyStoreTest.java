@@ -0,0 +1,68 @@
+package isolation_levels.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link IdempotencyStore}.
+ * Tests reservations, expiry and the size bound.
+ *
+ * @author JetBrains Junie
+ */
+public class IdempotencyStoreTest {
+
+    @Test
+    public void testReserveOnlyOnce() {
+        IdempotencyStore store = new IdempotencyStore(10, Duration.ofMinutes(1));
+
+        assertTrue(store.reserve("KEY1", "hash"));
+        assertFalse(store.reserve("KEY1", "hash"));
+        assertFalse(store.get("KEY1").orElseThrow().isCompleted());
+
+        store.put("KEY1", new StoredResponse("hash", 200, "\"done\""));
+        assertTrue(store.get("KEY1").orElseThrow().isCompleted());
+    }
+
+    @Test
+    public void testExpiredKeyCanBeReservedAgain() {
+        IdempotencyStore store = new IdempotencyStore(10, Duration.ZERO);
+
+        assertTrue(store.reserve("KEY1", "hash"));
+        assertTrue(store.get("KEY1").isEmpty());
+        assertTrue(store.reserve("KEY1", "hash"));
+    }
+
+    @Test
+    public void testOldestEntryIsEvictedFirst() {
+        IdempotencyStore store = new IdempotencyStore(3, Duration.ofMinutes(1));
+        for (String key : new String[]{"KEY1", "KEY2", "KEY3"}) {
+            store.put(key, new StoredResponse("hash", 200, null));
+        }
+
+        store.put("KEY4", new StoredResponse("hash", 200, null));
+
+        assertEquals(3, store.size());
+        assertTrue(store.get("KEY1").isEmpty());
+        assertTrue(store.get("KEY2").isPresent());
+        assertTrue(store.get("KEY3").isPresent());
+        assertTrue(store.get("KEY4").isPresent());
+    }
+
+    @Test
+    public void testChurnOfOneKeyStaysBounded() {
+        IdempotencyStore store = new IdempotencyStore(3, Duration.ofMinutes(1));
+
+        // Every request reserves its key and then replaces the reservation with its response
+        for (int i = 0; i < 100; i++) {
+            store.remove("HOT");
+            store.reserve("HOT", "hash");
+            store.put("HOT", new StoredResponse("hash", 200, String.valueOf(i)));
+        }
+
+        assertTrue(store.size() <= 3);
+        assertEquals("99", store.get("HOT").orElseThrow().body());
+    }
+}
@@ -0,0 +1,73 @@
+package isolation_levels.money;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link Money} and {@link MoneyConverter}.
+ * Tests parsing, formatting, overflow checks and exact JSON encoding.
+ *
+ * @author JetBrains Junie
+ */
+public class MoneyTest {
+
+    @Test
+    public void testParseAndFormat() {
+        assertEquals(1234L, Money.parseMinor("12.34"));
+        assertEquals(50L, Money.parseMinor("0.5"));
+        assertEquals(-500L, Money.parseMinor("-5"));
+        assertEquals("12.34", Money.parse("12.34").toString());
+        assertEquals("-0.05", Money.ofMinor(-5L).toString());
+        assertEquals("0.00", Money.ZERO.toString());
+    }
+
+    @Test
+    public void testInvalidAmountsAreRejected() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.234"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1."));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+        assertThrows(NumberFormatException.class, () -> Money.parse(""));
+        assertThrows(ArithmeticException.class, () -> Money.parse("999999999999999999999"));
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("1.005")));
+    }
+
+    @Test
+    public void testArithmeticChecksOverflow() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+
+        assertEquals(Money.parse("15.00"), Money.parse("10.50").plus(Money.parse("4.50")));
+        assertEquals(Money.parse("-1.00"), Money.parse("1.00").minus(Money.parse("2.00")));
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(1L)));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1L));
+        assertTrue(Money.covers(1000L, 1000L));
+        assertFalse(Money.covers(999L, 1000L));
+    }
+
+    @Test
+    public void testBigDecimalConversion() {
+        assertEquals(Money.parse("100.00"), Money.of(new BigDecimal("100")));
+        assertEquals(new BigDecimal("12.34"), Money.parse("12.34").toBigDecimal());
+    }
+
+    @Test
+    public void testJsonIsExact() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertEquals("\"90071992547409.93\"", objectMapper.writeValueAsString(Money.ofMinor(9007199254740993L)));
+        assertEquals(Money.ofMinor(9007199254740993L), objectMapper.readValue("\"90071992547409.93\"", Money.class));
+    }
+
+    @Test
+    public void testConverter() {
+        MoneyConverter converter = new MoneyConverter();
+
+        assertEquals(1234L, converter.convertToDatabaseColumn(Money.parse("12.34")));
+        assertEquals(Money.parse("12.34"), converter.convertToEntityAttribute(1234L));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
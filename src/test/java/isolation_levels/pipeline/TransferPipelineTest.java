@@ -0,0 +1,135 @@
+package isolation_levels.pipeline;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.dto.PaymentDTO;
+import isolation_levels.dto.PaymentOutcomeDTO;
+import isolation_levels.dto.TransferSubmissionDTO;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link TransferPipeline}.
+ * Tests that submitted transfers are committed in groups, and that each transfer in a group succeeds or fails on its own.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest
+public class TransferPipelineTest {
+
+    @Autowired
+    private TransferPipeline transferPipeline;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testSubmittedTransfersAreGrouped() throws Exception {
+        // Given
+        String from = "PIP" + UUID.randomUUID().toString().substring(0, 8);
+        String to = "PIP" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(from, "Pipeline Sender", new BigDecimal("1000.00"));
+        accountService.createAccount(to, "Pipeline Receiver", BigDecimal.ZERO);
+        DistributionSummary groupSize = meterRegistry.get("isolation_levels.pipeline.group_size").summary();
+        long groupsBefore = groupSize.count();
+
+        // When
+        int transfers = 200;
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < transfers; i++) {
+            ids.add(transferPipeline.submit(new PaymentDTO(from, to, new BigDecimal("1.00"))).orElseThrow().getId());
+        }
+        List<TransferSubmissionDTO> submissions = awaitAll(ids);
+
+        // Then every transfer is applied once
+        assertTrue(submissions.stream().allMatch(submission ->
+                submission.getStatus() == TransferSubmissionDTO.Status.COMPLETED
+                        && submission.getOutcome() == PaymentOutcomeDTO.Outcome.APPLIED
+                        && submission.getCompletedAt() != null));
+        assertEquals(0, new BigDecimal("800.00").compareTo(
+                accountRepository.findByAccountNumber(from).orElseThrow().getBalance()));
+        assertEquals(0, new BigDecimal("200.00").compareTo(
+                accountRepository.findByAccountNumber(to).orElseThrow().getBalance()));
+
+        // And they were committed in fewer groups than there were transfers
+        long groups = groupSize.count() - groupsBefore;
+        assertTrue(groups < transfers, "Expected grouped commits, got " + groups + " for " + transfers + " transfers");
+    }
+
+    @Test
+    public void testFailedTransferDoesNotFailItsGroup() throws Exception {
+        // Given an account that can only cover the first of two transfers
+        String from = "PIP" + UUID.randomUUID().toString().substring(0, 8);
+        String to = "PIP" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(from, "Pipeline Sender", new BigDecimal("100.00"));
+        accountService.createAccount(to, "Pipeline Receiver", BigDecimal.ZERO);
+
+        // When
+        String first = transferPipeline.submit(new PaymentDTO(from, to, new BigDecimal("80.00"))).orElseThrow().getId();
+        String second = transferPipeline.submit(new PaymentDTO(from, to, new BigDecimal("80.00"))).orElseThrow().getId();
+        String unknown = transferPipeline.submit(new PaymentDTO(from, "UNKNOWN", new BigDecimal("1.00"))).orElseThrow().getId();
+        List<TransferSubmissionDTO> submissions = awaitAll(List.of(first, second, unknown));
+
+        // Then
+        assertEquals(TransferSubmissionDTO.Status.COMPLETED, submissions.get(0).getStatus());
+        assertEquals(TransferSubmissionDTO.Status.FAILED, submissions.get(1).getStatus());
+        assertEquals(PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS, submissions.get(1).getOutcome());
+        assertEquals(TransferSubmissionDTO.Status.FAILED, submissions.get(2).getStatus());
+        assertEquals(PaymentOutcomeDTO.Outcome.ACCOUNT_NOT_FOUND, submissions.get(2).getOutcome());
+        assertEquals(0, new BigDecimal("20.00").compareTo(
+                accountRepository.findByAccountNumber(from).orElseThrow().getBalance()));
+        assertEquals(0, new BigDecimal("80.00").compareTo(
+                accountRepository.findByAccountNumber(to).orElseThrow().getBalance()));
+    }
+
+    @Test
+    public void testInvalidTransferFailsImmediately() {
+        // When
+        Optional<TransferSubmissionDTO> submission = transferPipeline.submit(
+                new PaymentDTO("ACC001", "ACC001", new BigDecimal("10.00")));
+
+        // Then
+        assertTrue(submission.isPresent());
+        assertEquals(TransferSubmissionDTO.Status.FAILED, submission.get().getStatus());
+        assertEquals(PaymentOutcomeDTO.Outcome.INVALID, submission.get().getOutcome());
+        assertTrue(transferPipeline.getSubmission(submission.get().getId()).isEmpty());
+    }
+
+    @Test
+    public void testUnknownSubmission() {
+        // When/Then
+        assertTrue(transferPipeline.getSubmission("UNKNOWN").isEmpty());
+    }
+
+    private List<TransferSubmissionDTO> awaitAll(List<String> ids) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (true) {
+            List<TransferSubmissionDTO> submissions = ids.stream()
+                    .map(id -> transferPipeline.getSubmission(id).orElseThrow())
+                    .toList();
+            if (submissions.stream().noneMatch(submission -> submission.getStatus() == TransferSubmissionDTO.Status.QUEUED)) {
+                return submissions;
+            }
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for submitted transfers");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package isolation_levels.repository;
+
+import isolation_levels.model.Account;
+import isolation_levels.model.Transaction;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the indexes of the transactions table.
+ * Records the SQL that Hibernate generates for the history queries and checks its H2 query plan,
+ * so that the queries keep reading an account's transactions through the covering index, in its order,
+ * instead of a table scan or a sort.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:indexdb;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "isolation_levels.repository.TransactionIndexTest$SqlRecorder"
+})
+@Transactional
+public class TransactionIndexTest {
+
+    private static final String ACCOUNT_NUMBER = "INDEX001";
+    private static final String COVERING_INDEX = "IDX_TRANSACTIONS_ACCOUNT_TIMESTAMP_COVERING";
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        Account account = accountRepository.save(new Account(ACCOUNT_NUMBER, "Index User", new BigDecimal("1000.00")));
+        for (int i = 0; i < 10; i++) {
+            Transaction transaction = new Transaction(new BigDecimal(i), "Transaction " + i, Transaction.TransactionType.CREDIT);
+            transaction.setAccount(account);
+            transactionRepository.save(transaction);
+        }
+        transactionRepository.flush();
+        SqlRecorder.STATEMENTS.clear();
+    }
+
+    @Test
+    public void testHistoryQueryUsesCoveringIndex() {
+        // When
+        transactionRepository.findDTOsByAccountNumberOrderByTimestampDesc(ACCOUNT_NUMBER);
+        String plan = explain(lastQuery(), ACCOUNT_NUMBER);
+
+        // Then
+        assertUsesCoveringIndex(plan);
+    }
+
+    @Test
+    public void testFirstPageQueryUsesCoveringIndex() {
+        // When
+        transactionRepository.findFirstPageByAccountNumber(ACCOUNT_NUMBER, PageRequest.of(0, 2));
+        String plan = explain(lastQuery(), ACCOUNT_NUMBER, 2);
+
+        // Then
+        assertUsesCoveringIndex(plan);
+    }
+
+    @Test
+    public void testKeysetPageQueryUsesCoveringIndex() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+
+        // When
+        transactionRepository.findPageByAccountNumberBefore(ACCOUNT_NUMBER, now, 5L, PageRequest.of(0, 2));
+        String plan = explain(lastQuery(), ACCOUNT_NUMBER, now, now, 5L, 2);
+
+        // Then
+        assertUsesCoveringIndex(plan);
+    }
+
+    private String lastQuery() {
+        List<String> queries = SqlRecorder.STATEMENTS.stream()
+                .filter(sql -> sql.toLowerCase().startsWith("select"))
+                .toList();
+        assertFalse(queries.isEmpty(), "Expected the repository to run a query");
+        return queries.get(queries.size() - 1);
+    }
+
+    /**
+     * Explains a generated statement with its parameters bound in the order they appear in the SQL.
+     */
+    private String explain(String sql, Object... parameters) {
+        assertEquals(parameters.length, sql.chars().filter(c -> c == '?').count(),
+                "Unexpected parameters in generated SQL: " + sql);
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters);
+    }
+
+    private void assertUsesCoveringIndex(String plan) {
+        assertTrue(plan.toUpperCase().contains(COVERING_INDEX),
+                "Expected the covering (account_id, timestamp, id, ...) index to be used: " + plan);
+        assertFalse(plan.contains("tableScan"), "Expected no table scan: " + plan);
+        assertTrue(plan.contains("index sorted"), "Expected the index to provide the order: " + plan);
+    }
+
+    /**
+     * Records the SQL of every statement Hibernate prepares.
+     */
+    public static class SqlRecorder implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package isolation_levels.saga;
+
+import isolation_levels.dto.TransactionDTO;
+import isolation_levels.model.Transaction;
+import isolation_levels.model.TransferSaga;
+import isolation_levels.repository.TransferSagaRepository;
+import isolation_levels.service.AccountService;
+import isolation_levels.service.TransactionService;
+import isolation_levels.service.TransferService;
+import isolation_levels.sharding.ShardRouter;
+import isolation_levels.sharding.ShardTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for cross-shard transfer sagas.
+ * Uses two in-memory H2 shards and a {@link TransferSagaHook} that simulates crashes between saga steps.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "isolation-levels.sharding.shard-count=2",
+        "isolation-levels.sharding.initialize-schema=true",
+        "isolation-levels.sharding.shards[0].jdbc-url=jdbc:h2:mem:saga0;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "isolation-levels.sharding.shards[0].username=sa",
+        "isolation-levels.sharding.shards[0].auto-commit=false",
+        "isolation-levels.sharding.shards[1].jdbc-url=jdbc:h2:mem:saga1;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "isolation-levels.sharding.shards[1].username=sa",
+        "isolation-levels.sharding.shards[1].auto-commit=false",
+        "isolation-levels.saga.stale-after=PT0S",
+        "isolation-levels.saga.recovery-interval=PT1H"
+})
+public class TransferSagaTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransferSagaSteps steps;
+
+    @Autowired
+    private TransferSagaCoordinator coordinator;
+
+    @Autowired
+    private TransferRecoveryWorker recoveryWorker;
+
+    @Autowired
+    private TransferSagaRepository transferSagaRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private CrashingHook crashingHook;
+
+    @AfterEach
+    public void disarmHook() {
+        crashingHook.crashAfterDebit = false;
+        crashingHook.crashAfterCredit = false;
+    }
+
+    @Test
+    public void testCrossShardTransferCompletes() {
+        // Given two accounts on different shards
+        String from = createAccount(0, "100.00");
+        String to = createAccount(1, "0.00");
+
+        // When money is transferred
+        TransferService.TransferStatus status = transferService.transfer(from, to, new BigDecimal("40.00"));
+
+        // Then both balances are updated
+        assertEquals(TransferService.TransferStatus.COMPLETED, status);
+        assertEquals(new BigDecimal("60.00"), balance(from));
+        assertEquals(new BigDecimal("40.00"), balance(to));
+    }
+
+    @Test
+    public void testInsufficientFundsMovesNothing() {
+        String from = createAccount(0, "10.00");
+        String to = createAccount(1, "0.00");
+
+        TransferService.TransferStatus status = transferService.transfer(from, to, new BigDecimal("40.00"));
+
+        assertEquals(TransferService.TransferStatus.FAILED, status);
+        assertEquals(new BigDecimal("10.00"), balance(from));
+        assertEquals(new BigDecimal("0.00"), balance(to));
+    }
+
+    @Test
+    public void testFailedCreditIsCompensated() {
+        // Given a saga whose target account does not exist
+        String from = createAccount(0, "100.00");
+        String missing = accountNumberOnShard(1);
+        TransferSaga saga = steps.debit(from, missing, new BigDecimal("40.00")).orElseThrow();
+        assertEquals(new BigDecimal("60.00"), balance(from));
+
+        // When the saga is resumed
+        TransferSaga.State state = coordinator.resume(saga);
+
+        // Then the debit is refunded
+        assertEquals(TransferSaga.State.COMPENSATED, state);
+        assertEquals(new BigDecimal("100.00"), balance(from));
+        assertEquals(TransferSaga.State.COMPENSATED, sagaState(from, saga.getId()));
+    }
+
+    @Test
+    public void testRecoveryFinishesSagaAfterWorkerIsKilledMidSaga() {
+        // Given a transfer that crashes right after the debit
+        String from = createAccount(0, "100.00");
+        String to = createAccount(1, "0.00");
+        crashingHook.crashAfterDebit = true;
+        assertThrows(SimulatedCrash.class, () -> transferService.transfer(from, to, new BigDecimal("40.00")));
+        assertEquals(new BigDecimal("60.00"), balance(from));
+        assertEquals(new BigDecimal("0.00"), balance(to));
+
+        // When the recovery worker is killed after the credit but before completing the saga
+        crashingHook.crashAfterDebit = false;
+        crashingHook.crashAfterCredit = true;
+        recoveryWorker.recover();
+
+        // Then the credit is durable but the saga is still open
+        assertEquals(new BigDecimal("40.00"), balance(to));
+        String sagaId = findOpenSagaId(from);
+        assertEquals(TransferSaga.State.DEBITED, sagaState(from, sagaId));
+
+        // When the worker runs again
+        crashingHook.crashAfterCredit = false;
+        recoveryWorker.recover();
+
+        // Then the saga is completed and the target account was credited exactly once
+        assertEquals(TransferSaga.State.COMPLETED, sagaState(from, sagaId));
+        assertEquals(new BigDecimal("60.00"), balance(from));
+        assertEquals(new BigDecimal("40.00"), balance(to));
+        List<TransactionDTO> credits = transactionService.getTransactionsReadCommitted(to).stream()
+                .filter(t -> t.getType() == Transaction.TransactionType.CREDIT)
+                .toList();
+        assertEquals(1, credits.size());
+    }
+
+    private String createAccount(int shard, String balance) {
+        String accountNumber = accountNumberOnShard(shard);
+        accountService.createAccount(accountNumber, "Saga Owner", new BigDecimal(balance));
+        return accountNumber;
+    }
+
+    private String accountNumberOnShard(int shard) {
+        while (true) {
+            String accountNumber = "SAG" + UUID.randomUUID().toString().substring(0, 8);
+            if (shardRouter.shardOf(accountNumber) == shard) {
+                return accountNumber;
+            }
+        }
+    }
+
+    private BigDecimal balance(String accountNumber) {
+        return accountService.getAccountSerializable(accountNumber).orElseThrow().getBalance();
+    }
+
+    private TransferSaga.State sagaState(String fromAccountNumber, String sagaId) {
+        return shardTemplate.onShardOf(fromAccountNumber,
+                () -> transferSagaRepository.findById(sagaId).orElseThrow().getState());
+    }
+
+    private String findOpenSagaId(String fromAccountNumber) {
+        return shardTemplate.onShardOf(fromAccountNumber, () -> transferSagaRepository.findAll().stream()
+                .filter(saga -> saga.getFromAccountNumber().equals(fromAccountNumber))
+                .findFirst()
+                .orElseThrow()
+                .getId());
+    }
+
+    /**
+     * Simulated process crash thrown by the {@link CrashingHook}.
+     */
+    static class SimulatedCrash extends RuntimeException {
+    }
+
+    /**
+     * Hook that crashes the saga at the armed step.
+     */
+    static class CrashingHook implements TransferSagaHook {
+
+        volatile boolean crashAfterDebit;
+        volatile boolean crashAfterCredit;
+
+        @Override
+        public void afterDebit(String sagaId) {
+            if (crashAfterDebit) {
+                throw new SimulatedCrash();
+            }
+        }
+
+        @Override
+        public void afterCredit(String sagaId) {
+            if (crashAfterCredit) {
+                throw new SimulatedCrash();
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class HookConfig {
+
+        @Bean
+        public CrashingHook crashingHook() {
+            return new CrashingHook();
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package isolation_levels.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.dto.AccountDTO;
 import isolation_levels.model.Account;
 import isolation_levels.repository.AccountRepository;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -33,6 +35,9 @@ public class AccountServiceTest {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private static final String TEST_OWNER_NAME = "Test User";
     private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
 
@@ -106,7 +111,8 @@ public class AccountServiceTest {
     @Test
     public void testOptimisticLocking() throws InterruptedException {
         // This test simulates concurrent updates to the same account
-        // One of the updates should fail with OptimisticLockingFailureException
+        // One of the updates fails with an OptimisticLockingFailureException and is retried
+        double retriesBefore = optimisticRetries();
 
         ExecutorService executor = Executors.newFixedThreadPool(2);
         CountDownLatch latch = new CountDownLatch(1);
@@ -142,26 +148,21 @@ public class AccountServiceTest {
             Thread.sleep(100);
         }
 
-        // At least one thread should have thrown an OptimisticLockingFailureException
-        boolean optimisticLockingExceptionThrown = 
-            (thread1Exception.get() instanceof OptimisticLockingFailureException) ||
-            (thread2Exception.get() instanceof OptimisticLockingFailureException);
-
-        assertTrue(optimisticLockingExceptionThrown, 
-            "Expected at least one thread to throw OptimisticLockingFailureException");
+        // The conflicting update should have been retried instead of reaching the caller
+        assertNull(thread1Exception.get(), "Expected the conflict to be resolved by a retry");
+        assertNull(thread2Exception.get(), "Expected the conflict to be resolved by a retry");
+        assertTrue(optimisticRetries() > retriesBefore,
+            "Expected at least one update to be retried after an OptimisticLockingFailureException");
 
-        // Verify the account balance was updated by one of the threads
+        // Verify the account balance was updated by both threads
         Optional<Account> accountOpt = accountRepository.findByAccountNumber(testAccountNumber);
         assertTrue(accountOpt.isPresent());
+        assertEquals(INITIAL_BALANCE.add(new BigDecimal("300.00")), accountOpt.get().getBalance());
+    }
 
-        BigDecimal expectedBalance1 = INITIAL_BALANCE.add(new BigDecimal("100.00"));
-        BigDecimal expectedBalance2 = INITIAL_BALANCE.add(new BigDecimal("200.00"));
-        BigDecimal actualBalance = accountOpt.get().getBalance();
-
-        assertTrue(
-            actualBalance.equals(expectedBalance1) || actualBalance.equals(expectedBalance2),
-            "Expected balance to be updated by one of the threads"
-        );
+    private double optimisticRetries() {
+        return meterRegistry.counter("isolation_levels.retry.retries",
+            "operation", "updateBalanceWithOptimisticLock").count();
     }
 
     @Test
@@ -183,4 +184,88 @@ public class AccountServiceTest {
         assertTrue(updatedAccountOpt.isPresent());
         assertEquals(INITIAL_BALANCE.add(new BigDecimal("300.00")), updatedAccountOpt.get().getBalance());
     }
+
+    @Test
+    public void testBalanceUpdatesDoNotInitializeTransactions() {
+        // When
+        Optional<Account> optimisticOpt = accountService.updateBalanceWithOptimisticLock(testAccountNumber, new BigDecimal("100.00"));
+        Optional<Account> pessimisticOpt = accountService.updateBalanceWithPessimisticLock(testAccountNumber, new BigDecimal("-50.00"));
+
+        // Then
+        assertTrue(optimisticOpt.isPresent());
+        assertTrue(pessimisticOpt.isPresent());
+        assertFalse(Hibernate.isInitialized(optimisticOpt.get().getTransactions()),
+            "Ledger writes must not load the account's transaction history");
+        assertFalse(Hibernate.isInitialized(pessimisticOpt.get().getTransactions()),
+            "Ledger writes must not load the account's transaction history");
+
+        Optional<Account> accountOpt = accountRepository.findByAccountNumber(testAccountNumber);
+        assertTrue(accountOpt.isPresent());
+        assertEquals(INITIAL_BALANCE.add(new BigDecimal("50.00")), accountOpt.get().getBalance());
+    }
+
+    @Test
+    public void testAtomicBalanceUpdatesUnderContention() throws InterruptedException {
+        // Concurrent atomic updates neither conflict nor lose updates
+        int threads = 4;
+        int updatesPerThread = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                    for (int j = 0; j < updatesPerThread; j++) {
+                        accountService.updateBalanceAtomically(testAccountNumber, new BigDecimal("10.00"));
+                    }
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        while (!executor.isTerminated()) {
+            Thread.sleep(100);
+        }
+
+        assertNull(failure.get(), "Atomic updates should not fail under contention");
+
+        Optional<Account> accountOpt = accountRepository.findByAccountNumber(testAccountNumber);
+        assertTrue(accountOpt.isPresent());
+        assertEquals(0, INITIAL_BALANCE.add(new BigDecimal("400.00")).compareTo(accountOpt.get().getBalance()));
+        assertEquals(Long.valueOf(threads * updatesPerThread), accountOpt.get().getVersion());
+    }
+
+    @Test
+    public void testAtomicBalanceUpdateInsufficientFunds() {
+        // When / Then
+        assertThrows(InsufficientFundsException.class,
+            () -> accountService.updateBalanceAtomically(testAccountNumber, new BigDecimal("-1000.01")));
+        assertTrue(accountService.updateBalanceAtomically("UNKNOWN", new BigDecimal("10.00")).isEmpty());
+
+        Optional<Account> accountOpt = accountRepository.findByAccountNumber(testAccountNumber);
+        assertTrue(accountOpt.isPresent());
+        assertEquals(INITIAL_BALANCE, accountOpt.get().getBalance());
+    }
+
+    @Test
+    public void testReadCommittedCacheIsInvalidatedByUpdates() {
+        // Given: the account is cached by a READ_COMMITTED read
+        Optional<AccountDTO> beforeOpt = accountService.getAccountReadCommitted(testAccountNumber);
+        assertTrue(beforeOpt.isPresent());
+        assertEquals(INITIAL_BALANCE, beforeOpt.get().getBalance());
+
+        // When
+        accountService.updateBalanceWithOptimisticLock(testAccountNumber, new BigDecimal("25.00"));
+
+        // Then: the next read sees the committed update
+        Optional<AccountDTO> afterOpt = accountService.getAccountReadCommitted(testAccountNumber);
+        assertTrue(afterOpt.isPresent());
+        assertEquals(INITIAL_BALANCE.add(new BigDecimal("25.00")), afterOpt.get().getBalance());
+        assertTrue(afterOpt.get().getVersion() > beforeOpt.get().getVersion());
+    }
 }
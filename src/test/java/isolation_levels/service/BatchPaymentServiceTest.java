@@ -0,0 +1,172 @@
+package isolation_levels.service;
+
+import isolation_levels.dto.BatchPaymentResultDTO;
+import isolation_levels.dto.PaymentDTO;
+import isolation_levels.dto.PaymentOutcomeDTO;
+import isolation_levels.repository.AccountRepository;
+import isolation_levels.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link BatchPaymentService}.
+ * Tests that batches are applied all-or-nothing with one balance update per account,
+ * transfer by transfer or on net positions.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest
+public class BatchPaymentServiceTest {
+
+    @Autowired
+    private BatchPaymentService batchPaymentService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private static final String ACCOUNT_A = "BATCH001";
+    private static final String ACCOUNT_B = "BATCH002";
+    private static final String ACCOUNT_C = "BATCH003";
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100.00");
+
+    @BeforeEach
+    public void setUp() {
+        // Recreate the test accounts with a fresh balance and no history
+        for (String accountNumber : List.of(ACCOUNT_A, ACCOUNT_B, ACCOUNT_C)) {
+            accountRepository.findByAccountNumber(accountNumber)
+                    .ifPresent(account -> accountRepository.delete(account));
+            accountService.createAccount(accountNumber, "Batch User", INITIAL_BALANCE);
+        }
+    }
+
+    @Test
+    public void testBatchIsAppliedWithNetBalances() {
+        // Given a chain of payments where the second one needs the funds of the first
+        List<PaymentDTO> payments = List.of(
+                new PaymentDTO(ACCOUNT_A, ACCOUNT_B, new BigDecimal("80.00")),
+                new PaymentDTO(ACCOUNT_B, ACCOUNT_C, new BigDecimal("150.00")),
+                new PaymentDTO(ACCOUNT_C, ACCOUNT_A, new BigDecimal("10.00")));
+
+        // When
+        BatchPaymentResultDTO result = batchPaymentService.applyPayments(payments, false);
+
+        // Then
+        assertTrue(result.isApplied());
+        assertTrue(result.getElapsedMillis() >= 0);
+        assertEquals(3, result.getOutcomes().size());
+        assertTrue(result.getOutcomes().stream()
+                .allMatch(outcome -> outcome.getOutcome() == PaymentOutcomeDTO.Outcome.APPLIED));
+
+        assertEquals(0, new BigDecimal("30.00").compareTo(balanceOf(ACCOUNT_A)));
+        assertEquals(0, new BigDecimal("30.00").compareTo(balanceOf(ACCOUNT_B)));
+        assertEquals(0, new BigDecimal("240.00").compareTo(balanceOf(ACCOUNT_C)));
+        assertEquals(2, transactionRepository.findDTOsByAccountNumber(ACCOUNT_A).size());
+        assertEquals(2, transactionRepository.findDTOsByAccountNumber(ACCOUNT_B).size());
+        assertEquals(2, transactionRepository.findDTOsByAccountNumber(ACCOUNT_C).size());
+    }
+
+    @Test
+    public void testFailedBatchWritesNothing() {
+        // Given a batch whose second payment overdraws its account
+        List<PaymentDTO> payments = List.of(
+                new PaymentDTO(ACCOUNT_A, ACCOUNT_B, new BigDecimal("50.00")),
+                new PaymentDTO(ACCOUNT_A, ACCOUNT_C, new BigDecimal("60.00")),
+                new PaymentDTO(ACCOUNT_B, "UNKNOWN", new BigDecimal("1.00")));
+
+        // When
+        BatchPaymentResultDTO result = batchPaymentService.applyPayments(payments, false);
+
+        // Then the failing payments carry their reason and nothing is written
+        assertFalse(result.isApplied());
+        assertEquals(PaymentOutcomeDTO.Outcome.NOT_APPLIED, result.getOutcomes().get(0).getOutcome());
+        assertEquals(PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS, result.getOutcomes().get(1).getOutcome());
+        assertEquals(PaymentOutcomeDTO.Outcome.ACCOUNT_NOT_FOUND, result.getOutcomes().get(2).getOutcome());
+
+        for (String accountNumber : List.of(ACCOUNT_A, ACCOUNT_B, ACCOUNT_C)) {
+            assertEquals(0, INITIAL_BALANCE.compareTo(balanceOf(accountNumber)));
+            assertTrue(transactionRepository.findDTOsByAccountNumber(accountNumber).isEmpty());
+        }
+    }
+
+    @Test
+    public void testNettedBatchChecksFundsOnNetPositions() {
+        // Given offsetting flows where the first payment alone would overdraw its account
+        List<PaymentDTO> payments = List.of(
+                new PaymentDTO(ACCOUNT_A, ACCOUNT_B, new BigDecimal("150.00")),
+                new PaymentDTO(ACCOUNT_B, ACCOUNT_A, new BigDecimal("80.00")),
+                new PaymentDTO(ACCOUNT_B, ACCOUNT_C, new BigDecimal("70.00")));
+
+        // When
+        BatchPaymentResultDTO gross = batchPaymentService.applyPayments(payments, false);
+        BatchPaymentResultDTO netted = batchPaymentService.applyPayments(payments, true);
+
+        // Then only the netted batch is applied, and B, whose flows cancel out, keeps its balance
+        assertFalse(gross.isApplied());
+        assertEquals(PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS, gross.getOutcomes().get(0).getOutcome());
+        assertTrue(netted.isApplied());
+
+        assertEquals(0, new BigDecimal("30.00").compareTo(balanceOf(ACCOUNT_A)));
+        assertEquals(0, INITIAL_BALANCE.compareTo(balanceOf(ACCOUNT_B)));
+        assertEquals(0, new BigDecimal("170.00").compareTo(balanceOf(ACCOUNT_C)));
+
+        // And every transfer is still recorded in the ledger
+        assertEquals(2, transactionRepository.findDTOsByAccountNumber(ACCOUNT_A).size());
+        assertEquals(3, transactionRepository.findDTOsByAccountNumber(ACCOUNT_B).size());
+        assertEquals(1, transactionRepository.findDTOsByAccountNumber(ACCOUNT_C).size());
+    }
+
+    @Test
+    public void testNettedBatchRejectsOverdrawnNetPositions() {
+        // Given
+        List<PaymentDTO> payments = List.of(
+                new PaymentDTO(ACCOUNT_A, ACCOUNT_B, new BigDecimal("150.00")),
+                new PaymentDTO(ACCOUNT_B, ACCOUNT_C, new BigDecimal("10.00")),
+                new PaymentDTO(ACCOUNT_C, ACCOUNT_A, new BigDecimal("40.00")));
+
+        // When
+        BatchPaymentResultDTO result = batchPaymentService.applyPayments(payments, true);
+
+        // Then A pays out 110.00 net with a balance of 100.00, so the batch is rejected
+        assertFalse(result.isApplied());
+        assertEquals(PaymentOutcomeDTO.Outcome.INSUFFICIENT_FUNDS, result.getOutcomes().get(0).getOutcome());
+        assertEquals(PaymentOutcomeDTO.Outcome.NOT_APPLIED, result.getOutcomes().get(1).getOutcome());
+        assertEquals(PaymentOutcomeDTO.Outcome.NOT_APPLIED, result.getOutcomes().get(2).getOutcome());
+        assertEquals(0, INITIAL_BALANCE.compareTo(balanceOf(ACCOUNT_A)));
+    }
+
+    @Test
+    public void testInvalidPaymentsAreRejectedBeforeTheTransaction() {
+        // Given
+        List<PaymentDTO> payments = List.of(
+                new PaymentDTO(ACCOUNT_A, ACCOUNT_B, new BigDecimal("10.00")),
+                new PaymentDTO(ACCOUNT_A, ACCOUNT_A, new BigDecimal("10.00")),
+                new PaymentDTO(ACCOUNT_A, ACCOUNT_B, BigDecimal.ZERO));
+
+        // When
+        BatchPaymentResultDTO result = batchPaymentService.applyPayments(payments, false);
+
+        // Then
+        assertFalse(result.isApplied());
+        assertEquals(PaymentOutcomeDTO.Outcome.NOT_APPLIED, result.getOutcomes().get(0).getOutcome());
+        assertEquals(PaymentOutcomeDTO.Outcome.INVALID, result.getOutcomes().get(1).getOutcome());
+        assertEquals(PaymentOutcomeDTO.Outcome.INVALID, result.getOutcomes().get(2).getOutcome());
+        assertThrows(IllegalArgumentException.class, () -> batchPaymentService.applyPayments(List.of(), false));
+    }
+
+    private BigDecimal balanceOf(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance();
+    }
+}
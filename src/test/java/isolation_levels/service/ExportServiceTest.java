@@ -0,0 +1,85 @@
+package isolation_levels.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import isolation_levels.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link ExportService}.
+ * Tests that accounts and transactions are exported as newline-delimited JSON.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest
+public class ExportServiceTest {
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @Transactional
+    public void testExportTransactions() throws IOException {
+        // Given
+        String accountNumber = "EXPORT001";
+        accountService.createAccount(accountNumber, "Export User", new BigDecimal("1000.00"));
+        transactionService.createTransaction(accountNumber, new BigDecimal("100.00"), "First", Transaction.TransactionType.CREDIT);
+        transactionService.createTransaction(accountNumber, new BigDecimal("50.00"), "Second", Transaction.TransactionType.DEBIT);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean found = exportService.exportTransactions(accountNumber, out);
+
+        // Then
+        assertTrue(found);
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.endsWith("\n"));
+        String[] lines = ndjson.split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("First", first.get("description").asText());
+        assertEquals(accountNumber, first.get("accountNumber").asText());
+        assertEquals("Second", objectMapper.readTree(lines[1]).get("description").asText());
+    }
+
+    @Test
+    @Transactional
+    public void testExportAccounts() throws IOException {
+        // Given
+        accountService.createAccount("EXPORT002", "Export User", new BigDecimal("1000.00"));
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportAccounts(out);
+
+        // Then
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        boolean exported = false;
+        for (String line : ndjson.split("\n")) {
+            if ("EXPORT002".equals(objectMapper.readTree(line).get("accountNumber").asText())) {
+                exported = true;
+            }
+        }
+        assertTrue(exported);
+        assertFalse(exportService.exportTransactions("UNKNOWN", new ByteArrayOutputStream()));
+    }
+}
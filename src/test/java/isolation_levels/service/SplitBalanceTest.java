@@ -0,0 +1,130 @@
+package isolation_levels.service;
+
+import isolation_levels.dto.AccountDTO;
+import isolation_levels.model.Account;
+import isolation_levels.model.Transaction;
+import isolation_levels.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for split account balances.
+ * Tests that balance changes of a split account go to its slots and that reads report the exact total.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest
+public class SplitBalanceTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100.00");
+
+    private String accountNumber;
+
+    @BeforeEach
+    public void setUp() {
+        accountNumber = "SPLIT" + UUID.randomUUID().toString().substring(0, 8);
+        accountService.createAccount(accountNumber, "Settlement", INITIAL_BALANCE);
+    }
+
+    @Test
+    public void testSplitKeepsTheBalance() {
+        // When
+        Optional<Account> accountOpt = accountService.splitBalance(accountNumber, 4);
+
+        // Then
+        assertTrue(accountOpt.isPresent());
+        assertEquals(4, accountOpt.get().getSlotCount());
+        assertEquals(0, INITIAL_BALANCE.compareTo(accountOpt.get().getBalance()));
+        assertEquals(0, INITIAL_BALANCE.compareTo(accountService.getAccountReadCommitted(accountNumber)
+                .map(AccountDTO::getBalance).orElseThrow()));
+        assertThrows(IllegalArgumentException.class, () -> accountService.splitBalance(accountNumber, 2));
+    }
+
+    @Test
+    public void testConcurrentCreditsDoNotConflict() throws InterruptedException {
+        // Given
+        Long version = accountService.splitBalance(accountNumber, 8).orElseThrow().getVersion();
+        int threads = 8;
+        int creditsPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < creditsPerThread; i++) {
+                        transactionService.createTransaction(accountNumber, new BigDecimal("1.00"), "Fee",
+                                Transaction.TransactionType.CREDIT);
+                    }
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        // Then every credit is in the total, and the account row itself never changed
+        assertNull(failure.get());
+        Account account = accountRepository.findByAccountNumber(accountNumber).orElseThrow();
+        assertEquals(0, INITIAL_BALANCE.add(new BigDecimal(threads * creditsPerThread)).compareTo(account.getBalance()));
+        assertEquals(0, account.getBalance().compareTo(accountService.getAccountReadCommitted(accountNumber)
+                .map(AccountDTO::getBalance).orElseThrow()));
+        assertEquals(version, account.getVersion());
+    }
+
+    @Test
+    public void testDebitsSweepTheSlots() {
+        // Given a balance spread over several slots
+        accountService.splitBalance(accountNumber, 4);
+        for (int i = 0; i < 4; i++) {
+            accountService.updateBalanceAtomically(accountNumber, new BigDecimal("25.00"));
+        }
+
+        // When the whole balance is withdrawn at once
+        Optional<Account> accountOpt = accountService.updateBalanceAtomically(accountNumber, new BigDecimal("-200.00"));
+
+        // Then
+        assertTrue(accountOpt.isPresent());
+        assertEquals(0, BigDecimal.ZERO.compareTo(accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow().getBalance()));
+        assertThrows(InsufficientFundsException.class,
+                () -> accountService.updateBalanceAtomically(accountNumber, new BigDecimal("-0.01")));
+    }
+
+    @Test
+    public void testReplaceBalanceOfSplitAccount() {
+        // Given
+        accountService.splitBalance(accountNumber, 4);
+        accountService.updateBalanceAtomically(accountNumber, new BigDecimal("50.00"));
+
+        // When
+        accountService.updateBalanceReadCommitted(accountNumber, new BigDecimal("42.00"));
+
+        // Then
+        assertEquals(0, new BigDecimal("42.00").compareTo(accountService.getAccountReadCommitted(accountNumber)
+                .map(AccountDTO::getBalance).orElseThrow()));
+    }
+}
@@ -1,9 +1,12 @@
 package isolation_levels.service;
 
+import isolation_levels.dto.TransactionCursor;
+import isolation_levels.dto.TransactionDTO;
 import isolation_levels.model.Account;
 import isolation_levels.model.Transaction;
 import isolation_levels.repository.AccountRepository;
 import isolation_levels.repository.TransactionRepository;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,8 +14,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -96,7 +107,7 @@ public class TransactionServiceTest {
                 FROM_ACCOUNT_NUMBER, amount2, "Transaction 2", Transaction.TransactionType.CREDIT);
 
         // When
-        List<Transaction> transactions = transactionService.getTransactionsReadCommitted(FROM_ACCOUNT_NUMBER);
+        List<TransactionDTO> transactions = transactionService.getTransactionsReadCommitted(FROM_ACCOUNT_NUMBER);
 
         // Then
         assertEquals(2, transactions.size());
@@ -180,7 +191,7 @@ public class TransactionServiceTest {
                 FROM_ACCOUNT_NUMBER, new BigDecimal("200.00"), "Transaction 2", Transaction.TransactionType.CREDIT);
 
         // When
-        List<Transaction> transactions = transactionService.getTransactionsByAccountNumberOrderByTimestampDesc(FROM_ACCOUNT_NUMBER);
+        List<TransactionDTO> transactions = transactionService.getTransactionsByAccountNumberOrderByTimestampDesc(FROM_ACCOUNT_NUMBER);
 
         // Then
         assertEquals(2, transactions.size());
@@ -188,4 +199,128 @@ public class TransactionServiceTest {
         assertTrue(transactions.get(0).getTimestamp().isAfter(transactions.get(1).getTimestamp()) ||
                    transactions.get(0).getTimestamp().equals(transactions.get(1).getTimestamp()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLedgerWritesDoNotInitializeTransactions() {
+        // When
+        Optional<Transaction> transactionOpt = transactionService.createTransaction(
+                FROM_ACCOUNT_NUMBER, new BigDecimal("100.00"), "Deposit", Transaction.TransactionType.CREDIT);
+        boolean success = transactionService.transferMoney(FROM_ACCOUNT_NUMBER, TO_ACCOUNT_NUMBER, new BigDecimal("50.00"));
+
+        // Then
+        assertTrue(transactionOpt.isPresent());
+        assertTrue(success);
+        assertFalse(Hibernate.isInitialized(transactionOpt.get().getAccount().getTransactions()),
+                "Ledger writes must not load the account's transaction history");
+
+        Optional<Account> fromAccountOpt = accountRepository.findByAccountNumber(FROM_ACCOUNT_NUMBER);
+        Optional<Account> toAccountOpt = accountRepository.findByAccountNumber(TO_ACCOUNT_NUMBER);
+        assertTrue(fromAccountOpt.isPresent());
+        assertTrue(toAccountOpt.isPresent());
+        assertEquals(INITIAL_BALANCE.add(new BigDecimal("50.00")), fromAccountOpt.get().getBalance());
+        assertEquals(INITIAL_BALANCE.add(new BigDecimal("50.00")), toAccountOpt.get().getBalance());
+        assertEquals(2, transactionRepository.findByAccount(fromAccountOpt.get()).size());
+        assertEquals(1, transactionRepository.findByAccount(toAccountOpt.get()).size());
+    }
+
+    @Test
+    public void testOpposingTransfersDoNotDeadlock() throws InterruptedException {
+        // Transfers in both directions lock the accounts in the same order
+        int transfersPerThread = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger successfulTransfers = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        for (String[] direction : new String[][] {
+                {FROM_ACCOUNT_NUMBER, TO_ACCOUNT_NUMBER},
+                {TO_ACCOUNT_NUMBER, FROM_ACCOUNT_NUMBER}}) {
+            executor.submit(() -> {
+                try {
+                    latch.await();
+                    for (int i = 0; i < transfersPerThread; i++) {
+                        if (transactionService.transferMoney(direction[0], direction[1], new BigDecimal("10.00"))) {
+                            successfulTransfers.incrementAndGet();
+                        }
+                    }
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+        }
+
+        latch.countDown();
+        executor.shutdown();
+        while (!executor.isTerminated()) {
+            Thread.sleep(100);
+        }
+
+        // Then
+        assertNull(failure.get(), "Opposing transfers should not fail");
+        assertEquals(2 * transfersPerThread, successfulTransfers.get());
+
+        Optional<Account> fromAccountOpt = accountRepository.findByAccountNumber(FROM_ACCOUNT_NUMBER);
+        Optional<Account> toAccountOpt = accountRepository.findByAccountNumber(TO_ACCOUNT_NUMBER);
+        assertTrue(fromAccountOpt.isPresent());
+        assertTrue(toAccountOpt.isPresent());
+        assertEquals(0, INITIAL_BALANCE.compareTo(fromAccountOpt.get().getBalance()));
+        assertEquals(0, INITIAL_BALANCE.compareTo(toAccountOpt.get().getBalance()));
+    }
+
+    @Test
+    @Transactional
+    public void testTransferMoneyToSameAccount() {
+        // When
+        boolean success = transactionService.transferMoney(FROM_ACCOUNT_NUMBER, FROM_ACCOUNT_NUMBER, new BigDecimal("10.00"));
+
+        // Then
+        assertFalse(success);
+    }
+
+    @Test
+    @Transactional
+    public void testGetTransactionPages() {
+        // Given
+        for (int i = 1; i <= 5; i++) {
+            transactionService.createTransaction(
+                    FROM_ACCOUNT_NUMBER, new BigDecimal(i), "Transaction " + i, Transaction.TransactionType.CREDIT);
+        }
+
+        // When: walk the history two transactions at a time
+        List<TransactionDTO> allTransactions = new ArrayList<>();
+        TransactionCursor cursor = null;
+        List<TransactionDTO> page;
+        do {
+            page = transactionService.getTransactionPage(FROM_ACCOUNT_NUMBER, cursor, 2);
+            allTransactions.addAll(page);
+            if (!page.isEmpty()) {
+                TransactionDTO last = page.get(page.size() - 1);
+                cursor = new TransactionCursor(last.getTimestamp(), last.getId());
+            }
+        } while (page.size() == 2);
+
+        // Then
+        assertEquals(5, allTransactions.size());
+        assertEquals(5, new HashSet<>(allTransactions.stream().map(TransactionDTO::getId).toList()).size());
+        for (int i = 1; i < allTransactions.size(); i++) {
+            TransactionDTO newer = allTransactions.get(i - 1);
+            TransactionDTO older = allTransactions.get(i);
+            assertTrue(newer.getTimestamp().isAfter(older.getTimestamp()) ||
+                       (newer.getTimestamp().equals(older.getTimestamp()) && newer.getId() > older.getId()));
+        }
+    }
+
+    @Test
+    public void testTransactionCursorRoundTrip() {
+        // Given
+        TransactionCursor cursor = new TransactionCursor(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6000), 42L);
+
+        // When
+        TransactionCursor decoded = TransactionCursor.decode(cursor.encode());
+
+        // Then
+        assertEquals(cursor.getTimestamp(), decoded.getTimestamp());
+        assertEquals(cursor.getId(), decoded.getId());
+        assertThrows(IllegalArgumentException.class, () -> TransactionCursor.decode("not a cursor"));
+    }
+}
@@ -0,0 +1,88 @@
+package isolation_levels.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link TransferService}.
+ * Runs with a pool of a single connection, held by another transaction, to show that
+ * invalid transfers are rejected without taking a connection.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transferdb;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=250"
+})
+public class TransferServiceTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testInvalidTransfersDoNotTakeAConnection() throws Exception {
+        // Given another transaction holding the only connection of the pool
+        CountDownLatch connectionTaken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                    connectionTaken.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertTrue(connectionTaken.await(10, TimeUnit.SECONDS));
+
+        try {
+            // When / Then invalid transfers are rejected instead of timing out on the pool
+            assertEquals(TransferService.TransferStatus.FAILED,
+                    transferService.transfer("ACC001", "ACC002", new BigDecimal("-10.00")));
+            assertEquals(TransferService.TransferStatus.FAILED,
+                    transferService.transfer("ACC001", "ACC001", new BigDecimal("10.00")));
+
+            // And the transactional method itself returns before taking a connection
+            assertFalse(transactionService.transferMoney("ACC001", "ACC002", BigDecimal.ZERO));
+        } finally {
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testUnknownAccountIsRejected() {
+        assertEquals(TransferService.TransferStatus.FAILED,
+                transferService.transfer("ACC001", "UNKNOWN", new BigDecimal("10.00")));
+        assertEquals(TransferService.TransferStatus.FAILED,
+                transferService.transfer("UNKNOWN", "ACC001", new BigDecimal("10.00")));
+    }
+
+    @Test
+    public void testValidTransferCompletes() {
+        assertEquals(TransferService.TransferStatus.COMPLETED,
+                transferService.transfer("ACC002", "ACC003", new BigDecimal("1.00")));
+    }
+}
@@ -0,0 +1,168 @@
+package isolation_levels.sharding;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import isolation_levels.dto.AccountDTO;
+import isolation_levels.service.AccountService;
+import isolation_levels.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for hash-sharded accounts.
+ * Uses two in-memory H2 databases as shards and checks routing, scatter-gather and
+ * the rejection of cross-shard transfers.
+ *
+ * @author JetBrains Junie
+ */
+@SpringBootTest(properties = {
+        "isolation-levels.sharding.shard-count=2",
+        "isolation-levels.sharding.initialize-schema=true",
+        "isolation-levels.sharding.shards[0].jdbc-url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "isolation-levels.sharding.shards[0].username=sa",
+        "isolation-levels.sharding.shards[0].auto-commit=false",
+        "isolation-levels.sharding.shards[1].jdbc-url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1;MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE",
+        "isolation-levels.sharding.shards[1].username=sa",
+        "isolation-levels.sharding.shards[1].auto-commit=false"
+})
+public class ShardingTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testAccountsAreStoredOnTheirShard() {
+        // Given one account on each shard
+        String first = accountNumberOnShard(0);
+        String second = accountNumberOnShard(1);
+        accountService.createAccount(first, "Shard Zero", new BigDecimal("100.00"));
+        accountService.createAccount(second, "Shard One", new BigDecimal("200.00"));
+
+        // Then each row is in the database of its shard only
+        assertEquals(1, countAccounts(0, first));
+        assertEquals(0, countAccounts(1, first));
+        assertEquals(1, countAccounts(1, second));
+        assertEquals(0, countAccounts(0, second));
+        assertEquals(new BigDecimal("200.00"), accountService.getAccountSerializable(second).orElseThrow().getBalance());
+    }
+
+    @Test
+    public void testGetAllAccountsGathersAllShards() {
+        // Given one new account on each shard
+        String first = accountNumberOnShard(0);
+        String second = accountNumberOnShard(1);
+        accountService.createAccount(first, "Shard Zero", new BigDecimal("100.00"));
+        accountService.createAccount(second, "Shard One", new BigDecimal("200.00"));
+        long fanOuts = meterRegistry.timer("isolation_levels.sharding.fan_out", "operation", "getAllAccounts").count();
+
+        // When all accounts are retrieved
+        List<String> accountNumbers = accountService.getAllAccounts().stream()
+                .map(AccountDTO::getAccountNumber)
+                .toList();
+
+        // Then accounts of both shards are returned and the fan-out is timed
+        assertTrue(accountNumbers.contains(first));
+        assertTrue(accountNumbers.contains(second));
+        assertEquals(fanOuts + 1,
+                meterRegistry.timer("isolation_levels.sharding.fan_out", "operation", "getAllAccounts").count());
+    }
+
+    @Test
+    public void testSameShardTransferIsLocal() {
+        // Given two accounts on the same shard
+        String from = accountNumberOnShard(1);
+        String to = accountNumberOnShard(1);
+        accountService.createAccount(from, "From", new BigDecimal("100.00"));
+        accountService.createAccount(to, "To", new BigDecimal("0.00"));
+
+        // When money is transferred
+        boolean success = transactionService.transferMoney(from, to, new BigDecimal("40.00"));
+
+        // Then both balances are updated and both ledger entries are on that shard
+        assertTrue(success);
+        assertEquals(new BigDecimal("60.00"), accountService.getAccountSerializable(from).orElseThrow().getBalance());
+        assertEquals(new BigDecimal("40.00"), accountService.getAccountSerializable(to).orElseThrow().getBalance());
+        assertEquals(1, transactionService.getTransactionsReadCommitted(to).size());
+    }
+
+    @Test
+    public void testCrossShardTransferIsRejected() {
+        // Given two accounts on different shards
+        String from = accountNumberOnShard(0);
+        String to = accountNumberOnShard(1);
+        accountService.createAccount(from, "From", new BigDecimal("100.00"));
+        accountService.createAccount(to, "To", new BigDecimal("0.00"));
+
+        // When / Then the transfer is rejected and no balance changes
+        assertThrows(CrossShardException.class, () -> transactionService.transferMoney(from, to, new BigDecimal("40.00")));
+        assertEquals(new BigDecimal("100.00"), accountService.getAccountSerializable(from).orElseThrow().getBalance());
+    }
+
+    @Test
+    public void testShardSwitchInsideDefaultTransactionIsRejected() {
+        // Given an account on shard 1 and a transaction started without a selected shard
+        String accountNumber = accountNumberOnShard(1);
+        accountService.createAccount(accountNumber, "Shard One", new BigDecimal("100.00"));
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+
+        // When / Then the account cannot be read through the connection of shard 0
+        assertThrows(CrossShardException.class, () -> template.execute(status ->
+                accountService.getAccountSerializable(accountNumber)));
+    }
+
+    @Test
+    public void testDefaultShardInsideDefaultTransactionIsAllowed() {
+        // Given an account on shard 0
+        String accountNumber = accountNumberOnShard(0);
+        accountService.createAccount(accountNumber, "Shard Zero", new BigDecimal("100.00"));
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+
+        // When
+        Optional<AccountDTO> accountOpt = template.execute(status -> accountService.getAccountSerializable(accountNumber));
+
+        // Then
+        assertTrue(accountOpt.isPresent());
+    }
+
+    private String accountNumberOnShard(int shard) {
+        while (true) {
+            String accountNumber = "SHD" + UUID.randomUUID().toString().substring(0, 8);
+            if (shardRouter.shardOf(accountNumber) == shard) {
+                return accountNumber;
+            }
+        }
+    }
+
+    private int countAccounts(int shard, String accountNumber) {
+        return shardTemplate.onShard(shard, () -> jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM accounts WHERE account_number = ?", Integer.class, accountNumber));
+    }
+}
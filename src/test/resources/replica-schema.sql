@@ -0,0 +1,55 @@
+-- Schema of the H2 database standing in for the read replica in tests.
+-- Hibernate only creates the schema on the primary, so the replica gets the same tables here.
+CREATE TABLE IF NOT EXISTS accounts (
+    id BIGINT NOT NULL PRIMARY KEY,
+    account_number VARCHAR(255) NOT NULL UNIQUE,
+    owner_name VARCHAR(255) NOT NULL,
+    balance NUMERIC(38, 2) NOT NULL,
+    slot_count INTEGER NOT NULL DEFAULT 0,
+    version BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS balance_slots (
+    id BIGINT NOT NULL PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    slot INTEGER NOT NULL,
+    balance NUMERIC(38, 2) NOT NULL,
+    UNIQUE (account_id, slot)
+);
+
+CREATE TABLE IF NOT EXISTS transactions (
+    id BIGINT NOT NULL PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    amount NUMERIC(38, 2) NOT NULL,
+    description VARCHAR(255) NOT NULL,
+    timestamp TIMESTAMP(6) NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    transfer_id VARCHAR(36)
+);
+
+CREATE TABLE IF NOT EXISTS transfer_sagas (
+    id VARCHAR(36) NOT NULL PRIMARY KEY,
+    from_account_number VARCHAR(255) NOT NULL,
+    to_account_number VARCHAR(255) NOT NULL,
+    amount NUMERIC(38, 2) NOT NULL,
+    state VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
+    version BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS ledger_engine_checkpoints (
+    shard INTEGER NOT NULL PRIMARY KEY,
+    sequence BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(255) NOT NULL PRIMARY KEY,
+    operation VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    status_code INTEGER,
+    response_body CLOB,
+    created_at TIMESTAMP(6) NOT NULL,
+    completed_at TIMESTAMP(6),
+    version BIGINT
+);